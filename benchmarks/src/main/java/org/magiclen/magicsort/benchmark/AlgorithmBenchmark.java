@@ -0,0 +1,106 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 在所有的資料分布下，測試MagicSort中平均時間複雜度為O(n log n)的排序演算法。資料長度從10到10<sup>8</sup>，長度為10<sup>8</sup>時需要數GB的堆積記憶體。快速排序在大量重複值(FEW_UNIQUE和ALL_EQUAL)時會退化成O(n<sup>2</sup>)，資料很長時可以用-p參數排除這些組合。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    // -----物件變數-----
+    @Param({"AUTO", "QUICKSORT_OPTIMIZED", "QUICKSORT_3WAY", "QUICKSORT_MULTITHREAD", "MERGESORT", "NATURAL_MERGESORT", "BUCKETSORT"})
+    public Algorithm algorithm; //排序演算法
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+
+    private Integer[] source; //原始資料
+    private Integer[] work; //每次排序使用的資料
+    private MagicSort<Integer> magicSort;
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        source = MagicSort.boxArray(distribution.generate(size));
+        work = new Integer[size];
+        magicSort = new MagicSort<>(work, false);
+        magicSort.setAlgorithm(algorithm);
+    }
+
+    /**
+     * 只複製資料，用來扣除sort方法中複製資料的時間。
+     *
+     * @return 傳回資料
+     */
+    @Benchmark
+    public Integer[] copyOnly() {
+        System.arraycopy(source, 0, work, 0, size);
+        return work;
+    }
+
+    /**
+     * 複製資料之後排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public Integer[] sort() {
+        System.arraycopy(source, 0, work, 0, size);
+        magicSort.sort();
+        return magicSort.getData();
+    }
+
+    /**
+     * 複製資料之後取得排序後的索引順序，資料本身不會被搬移。
+     *
+     * @return 傳回排序後的索引順序
+     */
+    @Benchmark
+    public int[] argsort() {
+        System.arraycopy(source, 0, work, 0, size);
+        return magicSort.argsort();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import org.magiclen.magicsort.MagicSort;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基準測試的進入點。接受所有JMH的命令列參數，若沒有指定結果的格式和檔案，會將結果以JSON格式輸出到「magicsort-版本.json」，方便比較不同版本的效能。若沒有指定分析器，會啟用GC分析器來記錄每次操作配置的記憶體。
+ *
+ * @author Magic Len
+ */
+public final class BenchmarkRunner {
+
+    // -----類別方法-----
+    /**
+     * 執行基準測試。
+     *
+     * @param args 傳入JMH的命令列參數
+     * @throws RunnerException 基準測試失敗
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final CommandLineOptions cmd;
+        try {
+            cmd = new CommandLineOptions(args);
+        } catch (final CommandLineOptionException ex) {
+            System.err.println("Error parsing command line:");
+            System.err.println(" " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (cmd.shouldHelp()) {
+            try {
+                cmd.showHelp();
+            } catch (final Exception ex) {
+                throw new RunnerException(ex);
+            }
+            return;
+        }
+        if (cmd.shouldList()) {
+            new Runner(cmd).list();
+            return;
+        }
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            builder.result("magicsort-" + getVersion() + ".json");
+        }
+        if (cmd.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        new Runner(builder.build()).run();
+    }
+
+    /**
+     * 取得MagicSort的版本。
+     *
+     * @return 傳回MagicSort的版本，若無法取得，傳回「dev」
+     */
+    private static String getVersion() {
+        final String version = MagicSort.class.getPackage().getImplementationVersion();
+        return version == null ? "dev" : version;
+    }
+
+    // -----建構子-----
+    /**
+     * 私有的建構子，無法被實體化。
+     */
+    private BenchmarkRunner() {
+
+    }
+}
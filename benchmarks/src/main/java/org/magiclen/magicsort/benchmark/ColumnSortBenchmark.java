@@ -0,0 +1,119 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.ColumnSort;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 比較欄位式資料的排序方式：為每個元素建立CountingSortElement後用計數排序法排序，以及用ColumnSort直接排序int鍵值欄位並重新排列long和物件欄位。鍵值範圍為0到(長度-1)時AUTO使用計數排序法，範圍為整個int時使用基數排序法。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnSortBenchmark {
+
+    // -----物件變數-----
+    @Param({"AUTO", "QUICKSORT_OPTIMIZED"})
+    public Algorithm algorithm; //ColumnSort使用的演算法
+    @Param({"10000", "1000000"})
+    public int size; //資料長度
+    @Param({"false", "true"})
+    public boolean fullRange; //鍵值是否為整個int的範圍
+
+    private int[] keySource; //原始的鍵值欄位
+    private long[] timestampSource; //原始的long欄位
+    private Object[] payloadSource; //原始的物件欄位
+    private int[] keys; //每次排序使用的鍵值欄位
+    private long[] timestamps; //每次排序使用的long欄位
+    private Object[] payloads; //每次排序使用的物件欄位
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(size);
+        keySource = new int[size];
+        timestampSource = new long[size];
+        payloadSource = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            keySource[i] = fullRange ? random.nextInt() : random.nextInt(size);
+            timestampSource[i] = random.nextLong();
+            payloadSource[i] = Integer.toString(i);
+        }
+        keys = new int[size];
+        timestamps = new long[size];
+        payloads = new Object[size];
+    }
+
+    /**
+     * 複製欄位之後用ColumnSort排序。
+     *
+     * @return 傳回排序後的物件欄位
+     */
+    @Benchmark
+    public Object[] columnSort() {
+        System.arraycopy(keySource, 0, keys, 0, size);
+        System.arraycopy(timestampSource, 0, timestamps, 0, size);
+        System.arraycopy(payloadSource, 0, payloads, 0, size);
+        final ColumnSort columnSort = new ColumnSort(keys).addColumn(timestamps).addColumn(payloads);
+        columnSort.setAlgorithm(algorithm);
+        columnSort.sort();
+        return payloads;
+    }
+
+    /**
+     * 為每個元素建立CountingSortElement之後用計數排序法排序。鍵值為整個int的範圍時無法使用計數排序法，直接傳回null。
+     *
+     * @return 傳回排序後的元素
+     */
+    @Benchmark
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MagicSort.CountingSortElement<Object>[] wrappers() {
+        if (fullRange) {
+            return null;
+        }
+        final MagicSort.CountingSortElement<Object>[] elements = new MagicSort.CountingSortElement[size];
+        for (int i = 0; i < size; ++i) {
+            elements[i] = new MagicSort.CountingSortElement<>(keySource[i], new Object[]{timestampSource[i], payloadSource[i]});
+        }
+        return MagicSort.countingSortOutOfPlace(elements, 0, size - 1);
+    }
+}
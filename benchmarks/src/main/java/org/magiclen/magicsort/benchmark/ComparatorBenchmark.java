@@ -0,0 +1,158 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.comparators.InverseComparator;
+import org.magiclen.magicsort.comparators.OrderComparator;
+import org.magiclen.magicsort.comparators.StringWithNumberComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 在所有的資料分布下，測試使用不同的字串比較器排序的效能，以及設定鍵值前綴函數之後的效能。字串的格式為「item-數值.txt」，數值依照資料分布產生。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+
+    // -----類別列舉-----
+    /**
+     * 要測試的比較器。
+     */
+    public static enum ComparatorType {
+
+        /**
+         * String.compareTo。
+         */
+        NATURAL,
+        /**
+         * StringWithNumberComparator。
+         */
+        STRING_WITH_NUMBER,
+        /**
+         * 反轉的StringWithNumberComparator。
+         */
+        INVERSE,
+        /**
+         * 先用StringWithNumberComparator，再用String.compareTo的OrderComparator。
+         */
+        ORDER;
+
+        /**
+         * 建立比較器。
+         *
+         * @return 傳回比較器
+         */
+        @SuppressWarnings("unchecked")
+        public Comparator<String> create() {
+            switch (this) {
+                case STRING_WITH_NUMBER:
+                    return StringWithNumberComparator.getInstance();
+                case INVERSE:
+                    return InverseComparator.getInstance(StringWithNumberComparator.getInstance());
+                case ORDER:
+                    return OrderComparator.getInstance(StringWithNumberComparator.getInstance(), Comparator.<String>naturalOrder());
+                default:
+                    return Comparator.naturalOrder();
+            }
+        }
+
+        /**
+         * 建立與比較器順序一致的鍵值前綴函數。
+         *
+         * @return 傳回鍵值前綴函數，若沒有可以使用的前綴，傳回null
+         */
+        public ToLongFunction<String> createPrefixFunction() {
+            final StringWithNumberComparator c = StringWithNumberComparator.getInstance();
+            switch (this) {
+                case STRING_WITH_NUMBER:
+                case ORDER:
+                    return c::prefix;
+                case INVERSE:
+                    return s -> ~c.prefix(s); //反轉前綴的順序
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // -----物件變數-----
+    @Param
+    public ComparatorType comparator; //比較器
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+    @Param({"false", "true"})
+    public boolean prefix; //是否設定鍵值前綴函數
+
+    private String[] source; //原始資料
+    private String[] work; //每次排序使用的資料
+    private MagicSort<String> magicSort;
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final int[] values = distribution.generate(size);
+        source = new String[size];
+        for (int i = 0; i < size; ++i) {
+            source[i] = "item-" + values[i] + ".txt";
+        }
+        work = new String[size];
+        magicSort = new MagicSort<>(work, false);
+        magicSort.setComparator(comparator.create());
+        if (prefix) {
+            magicSort.setPrefixFunction(comparator.createPrefixFunction());
+        }
+    }
+
+    /**
+     * 複製資料之後排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public String[] sort() {
+        System.arraycopy(source, 0, work, 0, size);
+        magicSort.sort();
+        return magicSort.getData();
+    }
+}
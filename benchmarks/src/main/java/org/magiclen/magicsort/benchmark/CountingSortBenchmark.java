@@ -0,0 +1,107 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 在所有的資料分布下，測試MagicSort的計數排序。數值範圍固定為0到(長度-1)。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountingSortBenchmark {
+
+    // -----類別常數-----
+    private static final MagicSort.CountingSortIndexer<Integer> INDEXER = data -> data;
+
+    // -----物件變數-----
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+
+    private int[] source; //原始資料
+    private int[] work; //每次排序使用的資料
+    private Integer[] boxedSource; //原始資料(物件)
+    private Integer[] boxedWork; //每次排序使用的資料(物件)
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        source = distribution.generate(size);
+        work = new int[size];
+        boxedSource = MagicSort.boxArray(source);
+        boxedWork = new Integer[size];
+    }
+
+    /**
+     * 排序基本型態的陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public int[] inPlacePrimitive() {
+        System.arraycopy(source, 0, work, 0, size);
+        MagicSort.countingSortInPlace(work, 0, size - 1);
+        return work;
+    }
+
+    /**
+     * 排序物件型態的陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public Integer[] inPlaceBoxed() {
+        System.arraycopy(boxedSource, 0, boxedWork, 0, size);
+        MagicSort.countingSortInPlace(boxedWork, 0, size - 1);
+        return boxedWork;
+    }
+
+    /**
+     * 使用索引器進行不在原地的排序，原始資料不會被修改。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public Integer[] outOfPlaceIndexer() {
+        return MagicSort.countingSortOutOfPlace(boxedSource, INDEXER, 0, size - 1);
+    }
+}
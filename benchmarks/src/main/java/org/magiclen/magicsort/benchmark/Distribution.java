@@ -0,0 +1,122 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基準測試使用的輸入資料分布。所有分布產生的數值都在0到(長度-1)之間，因此也可以直接用來測試計數排序。
+ *
+ * @author Magic Len
+ */
+public enum Distribution {
+
+    /**
+     * 0到(長度-1)的隨機排列。
+     */
+    RANDOM,
+    /**
+     * 已經遞增排序。
+     */
+    SORTED,
+    /**
+     * 遞減排序。
+     */
+    REVERSED,
+    /**
+     * 鋸齒狀，由多段長度約為根號n的遞增序列組成。
+     */
+    SAWTOOTH,
+    /**
+     * 管風琴狀，前半段遞增，後半段遞減。
+     */
+    ORGAN_PIPE,
+    /**
+     * 只有16種不同的數值。
+     */
+    FEW_UNIQUE,
+    /**
+     * 所有數值都相同。
+     */
+    ALL_EQUAL;
+
+    // -----類別常數-----
+    /**
+     * 亂數種子，固定種子讓每次測試的資料都相同。
+     */
+    public static final long SEED = 0x4D61676963L;
+
+    // -----物件方法-----
+    /**
+     * 產生指定長度的資料。
+     *
+     * @param length 傳入資料長度
+     * @return 傳回資料
+     */
+    public int[] generate(final int length) {
+        final int[] array = new int[length];
+        final Random random = new Random(SEED);
+        switch (this) {
+            case RANDOM:
+                for (int i = 0; i < length; ++i) {
+                    array[i] = i;
+                }
+                for (int i = length - 1; i > 0; --i) { //Fisher-Yates洗牌
+                    final int j = random.nextInt(i + 1);
+                    final int temp = array[i];
+                    array[i] = array[j];
+                    array[j] = temp;
+                }
+                break;
+            case SORTED:
+                for (int i = 0; i < length; ++i) {
+                    array[i] = i;
+                }
+                break;
+            case REVERSED:
+                for (int i = 0; i < length; ++i) {
+                    array[i] = length - 1 - i;
+                }
+                break;
+            case SAWTOOTH: {
+                final int period = Math.max(1, (int) Math.sqrt(length));
+                for (int i = 0; i < length; ++i) {
+                    array[i] = i % period;
+                }
+                break;
+            }
+            case ORGAN_PIPE: {
+                final int half = length / 2;
+                for (int i = 0; i < length; ++i) {
+                    array[i] = i < half ? i : length - 1 - i;
+                }
+                break;
+            }
+            case FEW_UNIQUE: {
+                final int bound = Math.min(16, Math.max(1, length));
+                for (int i = 0; i < length; ++i) {
+                    array[i] = random.nextInt(bound);
+                }
+                break;
+            }
+            case ALL_EQUAL:
+                break;
+        }
+        return array;
+    }
+}
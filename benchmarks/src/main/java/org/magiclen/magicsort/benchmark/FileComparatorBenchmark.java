@@ -0,0 +1,205 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.comparators.FileLastModifiedComparator;
+import org.magiclen.magicsort.comparators.FileLengthComparator;
+import org.magiclen.magicsort.comparators.FileNameComparator;
+import org.magiclen.magicsort.comparators.FileTypeComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 使用暫存目錄樹測試檔案比較器。compare開頭的方法測量單次比較的時間，搭配GC分析器(BenchmarkRunner預設開啟)可以得到每次比較配置的記憶體；sortDirectory開頭的方法測量列出目錄並排序的整體時間。
+ * <p>
+ * Warm表示重複使用同一個比較器和同一批File物件，比較器內部的快取會保留下來；Cold表示每次都使用新的比較器和新的File物件。作業系統的檔案快取無法在基準測試中清除，因此不在Cold的範圍內。
+ * </p>
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileComparatorBenchmark {
+
+    // -----類別列舉-----
+    /**
+     * 要測試的檔案比較器。
+     */
+    public static enum FileComparatorType {
+
+        /**
+         * FileTypeComparator。
+         */
+        TYPE,
+        /**
+         * FileLengthComparator。
+         */
+        LENGTH,
+        /**
+         * FileLastModifiedComparator。
+         */
+        LAST_MODIFIED,
+        /**
+         * FileNameComparator。
+         */
+        NAME;
+
+        /**
+         * 取得比較器。FileTypeComparator每次都會建立新的實體，其他比較器則是共用同一個實體。
+         *
+         * @return 傳回比較器
+         */
+        public Comparator<File> create() {
+            switch (this) {
+                case TYPE:
+                    return FileTypeComparator.getInstance();
+                case LENGTH:
+                    return FileLengthComparator.getInstance();
+                case LAST_MODIFIED:
+                    return FileLastModifiedComparator.getInstance();
+                default:
+                    return FileNameComparator.getInstance();
+            }
+        }
+    }
+
+    // -----物件變數-----
+    @Param
+    public FileComparatorType comparator; //比較器
+    @Param({"100", "1000", "10000"})
+    public int files; //根目錄中的檔案數量
+
+    private FileTree tree; //目錄樹
+    private File[] entries; //根目錄中的檔案和子目錄
+    private String[] paths; //檔案和子目錄的路徑
+    private Comparator<File> warmComparator; //重複使用的比較器
+    private int index; //目前要比較的位置
+
+    // -----物件方法-----
+    /**
+     * 建立目錄樹。
+     *
+     * @throws IOException 建立失敗
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tree = FileTree.create(files);
+        entries = tree.list();
+        final int length = entries.length;
+        paths = new String[length];
+        for (int i = 0; i < length; ++i) {
+            paths[i] = entries[i].getPath();
+        }
+        warmComparator = comparator.create();
+        for (int i = 0; i < length; ++i) { //預先填滿比較器的快取
+            warmComparator.compare(entries[i], entries[(i + 1) % length]);
+        }
+    }
+
+    /**
+     * 刪除目錄樹。
+     *
+     * @throws IOException 刪除失敗
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tree.delete();
+    }
+
+    /**
+     * 取得下一個要比較的位置。
+     *
+     * @return 傳回位置
+     */
+    private int next() {
+        final int i = index;
+        index = (i + 1) % entries.length;
+        return i;
+    }
+
+    /**
+     * 使用同一個比較器和同一批File物件比較相鄰的兩個檔案。
+     *
+     * @return 傳回比較結果
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int compareWarm() {
+        final int i = next();
+        return warmComparator.compare(entries[i], entries[(i + 1) % entries.length]);
+    }
+
+    /**
+     * 使用新的比較器和新的File物件比較相鄰的兩個檔案。
+     *
+     * @return 傳回比較結果
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int compareCold() {
+        final int i = next();
+        return comparator.create().compare(new File(paths[i]), new File(paths[(i + 1) % paths.length]));
+    }
+
+    /**
+     * 使用同一個比較器，排序已經列出的檔案。
+     *
+     * @return 傳回排序後的檔案
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public File[] sortDirectoryWarm() {
+        final MagicSort<File> magicSort = new MagicSort<>(entries, true);
+        magicSort.setComparator(warmComparator);
+        magicSort.sort();
+        return magicSort.getData();
+    }
+
+    /**
+     * 重新列出目錄，再使用新的比較器排序。
+     *
+     * @return 傳回排序後的檔案
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public File[] sortDirectoryCold() {
+        final MagicSort<File> magicSort = new MagicSort<>(tree.list(), false);
+        magicSort.setComparator(comparator.create());
+        magicSort.sort();
+        return magicSort.getData();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+/**
+ * 基準測試使用的暫存目錄樹。根目錄中有指定數量的檔案，以及約為檔案數量5%的子目錄(每個子目錄中有一個檔案)。檔案有各種副檔名，也有沒有副檔名、需要讀取內容才能判斷類型的檔案，檔案的大小和修改時間也都不同。
+ *
+ * @author Magic Len
+ */
+public final class FileTree {
+
+    // -----類別常數-----
+    private static final String[] EXTENSIONS = {"txt", "jpg", "png", "html", "java", "gz", "log", "mp3", "xml", "", ""}; //副檔名，空字串表示沒有副檔名
+    private static final byte[][] CONTENTS = {
+        {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A},
+        {'G', 'I', 'F', '8', '9', 'a'},
+        "<?xml version=\"1.0\"?>".getBytes(StandardCharsets.US_ASCII),
+        "plain text without a known signature".getBytes(StandardCharsets.US_ASCII)
+    }; //沒有副檔名的檔案的開頭內容
+
+    // -----類別方法-----
+    /**
+     * 建立目錄樹。
+     *
+     * @param fileCount 傳入根目錄中的檔案數量
+     * @return 傳回目錄樹
+     * @throws IOException 建立失敗
+     */
+    public static FileTree create(final int fileCount) throws IOException {
+        final Path root = Files.createTempDirectory("magicsort-bench-");
+        final Random random = new Random(Distribution.SEED);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < fileCount; ++i) {
+            final String extension = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            final String name = "file-" + random.nextInt(fileCount * 10) + "-" + i + (extension.isEmpty() ? "" : "." + extension);
+            final Path file = root.resolve(name);
+            byte[] data = new byte[random.nextInt(4096)];
+            if (extension.isEmpty()) {
+                final byte[] content = CONTENTS[random.nextInt(CONTENTS.length)];
+                if (data.length < content.length) {
+                    data = new byte[content.length];
+                }
+                System.arraycopy(content, 0, data, 0, content.length);
+            }
+            Files.write(file, data);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now - random.nextInt(365 * 24 * 60 * 60) * 1000L));
+        }
+        final int directoryCount = Math.max(1, fileCount / 20);
+        for (int i = 0; i < directoryCount; ++i) {
+            final Path directory = Files.createDirectory(root.resolve("dir-" + i));
+            Files.write(directory.resolve("inner.txt"), new byte[0]);
+        }
+        return new FileTree(root);
+    }
+
+    // -----物件常數-----
+    private final Path root; //根目錄
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param root 傳入根目錄
+     */
+    private FileTree(final Path root) {
+        this.root = root;
+    }
+
+    // -----物件方法-----
+    /**
+     * 取得根目錄。
+     *
+     * @return 傳回根目錄
+     */
+    public File getRoot() {
+        return root.toFile();
+    }
+
+    /**
+     * 列出根目錄中的檔案和子目錄。每次呼叫都會建立新的File物件。
+     *
+     * @return 傳回根目錄中的檔案和子目錄
+     */
+    public File[] list() {
+        return root.toFile().listFiles();
+    }
+
+    /**
+     * 刪除整個目錄樹。
+     *
+     * @throws IOException 刪除失敗
+     */
+    public void delete() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
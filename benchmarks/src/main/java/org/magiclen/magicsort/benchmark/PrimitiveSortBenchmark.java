@@ -0,0 +1,112 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.PrimitiveSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 在所有的資料分布下，比較PrimitiveSort的區塊分割快速排序與JDK的Arrays.sort。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveSortBenchmark {
+
+    // -----物件變數-----
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+
+    private long[] source; //原始資料
+    private long[] work; //每次排序使用的資料
+    private int[] indexes; //每次排序使用的索引
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final int[] data = distribution.generate(size);
+        source = new long[size];
+        for (int i = 0; i < size; ++i) {
+            source[i] = data[i];
+        }
+        work = new long[size];
+        indexes = new int[size];
+    }
+
+    /**
+     * 使用PrimitiveSort排序long陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public long[] primitiveSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        PrimitiveSort.sort(work);
+        return work;
+    }
+
+    /**
+     * 使用Arrays.sort排序long陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public long[] arraysSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        Arrays.sort(work);
+        return work;
+    }
+
+    /**
+     * 使用PrimitiveSort同時排序鍵值與索引。
+     *
+     * @return 傳回排序後的索引
+     */
+    @Benchmark
+    public int[] keyIndexPairs() {
+        System.arraycopy(source, 0, work, 0, size);
+        for (int i = 0; i < size; ++i) {
+            indexes[i] = i;
+        }
+        PrimitiveSort.sort(work, indexes, 0, size);
+        return indexes;
+    }
+}
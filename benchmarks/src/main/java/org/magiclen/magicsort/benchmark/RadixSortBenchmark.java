@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 在所有的資料分布下，比較MagicSort的浮點數基數排序與JDK的Arrays.sort。整數的資料會加上小數並縮放，讓數值分布在不同的指數中。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadixSortBenchmark {
+
+    // -----物件變數-----
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+
+    private double[] source; //原始資料
+    private double[] work; //每次排序使用的資料
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final int[] data = distribution.generate(size);
+        source = new double[size];
+        for (int i = 0; i < size; ++i) {
+            source[i] = (data[i] - size / 2 + 0.25) * 1.5;
+        }
+        work = new double[size];
+    }
+
+    /**
+     * 使用基數排序法排序double陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public double[] radixSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        MagicSort.radixSort(work);
+        return work;
+    }
+
+    /**
+     * 使用Arrays.sort排序double陣列。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public double[] arraysSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        Arrays.sort(work);
+        return work;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.comparators.InverseComparator;
+import org.magiclen.magicsort.comparators.OrderComparator;
+import org.magiclen.magicsort.comparators.SortPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 比較多個鍵值的排序方式：OrderComparator與InverseComparator組成的比較器、SortPlan融合後的比較器，以及用setSortPlan讓第一個鍵值直接作為鍵值前綴。排序的順序為群組遞減、分數遞增、名稱遞增。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortPlanBenchmark {
+
+    // -----類別類別-----
+    /**
+     * 排序方式。
+     */
+    public enum Strategy {
+        CHAIN, PLAN, PLAN_PREFIX
+    }
+
+    /**
+     * 測試用的資料列。
+     */
+    public static final class Row {
+
+        final int group;
+        final double score;
+        final String name;
+
+        Row(final int group, final double score, final String name) {
+            this.group = group;
+            this.score = score;
+            this.name = name;
+        }
+
+        int getGroup() {
+            return group;
+        }
+
+        double getScore() {
+            return score;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    // -----物件變數-----
+    @Param
+    public Strategy strategy; //排序方式
+    @Param({"10000", "1000000"})
+    public int size; //資料長度
+    @Param({"16", "100000"})
+    public int groups; //群組數量
+
+    private Row[] source; //原始資料
+    private Row[] work; //每次排序使用的資料
+    private MagicSort<Row> magicSort;
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        final Random random = new Random(size);
+        source = new Row[size];
+        for (int i = 0; i < size; ++i) {
+            source[i] = new Row(random.nextInt(groups), random.nextInt(100) / 4.0, Integer.toString(random.nextInt(size), 36));
+        }
+        work = new Row[size];
+        magicSort = new MagicSort<>(work, false);
+        switch (strategy) {
+            case CHAIN:
+                magicSort.setComparator(OrderComparator.getInstance(
+                        InverseComparator.getInstance(Comparator.comparingInt(Row::getGroup)),
+                        Comparator.comparingDouble(Row::getScore),
+                        Comparator.comparing(Row::getName)));
+                break;
+            case PLAN:
+                magicSort.setComparator(plan());
+                break;
+            default:
+                magicSort.setSortPlan(plan());
+                break;
+        }
+    }
+
+    /**
+     * 建立排序計畫。
+     *
+     * @return 傳回排序計畫
+     */
+    private static SortPlan<Row> plan() {
+        return SortPlan.<Row>getInstance()
+                .thenByInt(Row::getGroup, true)
+                .thenByDouble(Row::getScore)
+                .thenByKey(Row::getName);
+    }
+
+    /**
+     * 複製資料之後排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public Row[] sort() {
+        System.arraycopy(source, 0, work, 0, size);
+        magicSort.sort();
+        return work;
+    }
+}
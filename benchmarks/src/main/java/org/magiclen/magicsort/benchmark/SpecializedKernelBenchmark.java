@@ -0,0 +1,98 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.comparators.InverseComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 測試每種比較器類別使用專用排序核心的效能。每次測試會輪流用四種不同類別的比較器排序，讓共用的排序迴圈中呼叫比較器的位置變成多型呼叫。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecializedKernelBenchmark {
+
+    // -----物件變數-----
+    @Param({"false", "true"})
+    public boolean specialized; //是否使用專用的排序核心
+    @Param({"1000", "100000", "1000000"})
+    public int size; //資料長度
+    @Param
+    public Distribution distribution; //資料分布
+
+    private Integer[] source; //原始資料
+    private Integer[] work; //每次排序使用的資料
+    private MagicSort<Integer>[] magicSorts; //每種比較器各一個
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。
+     */
+    @Setup(Level.Trial)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setup() {
+        source = MagicSort.boxArray(distribution.generate(size));
+        work = new Integer[size];
+        final Comparator<Integer>[] comparators = new Comparator[]{
+            Comparator.<Integer>naturalOrder(),
+            InverseComparator.getInstance(Comparator.<Integer>naturalOrder()),
+            Comparator.<Integer>comparingInt(v -> v & 0xFFFF),
+            (Comparator<Integer>) (a, b) -> Integer.compare(a ^ 0x5555, b ^ 0x5555)
+        };
+        magicSorts = new MagicSort[comparators.length];
+        for (int i = 0; i < comparators.length; ++i) {
+            magicSorts[i] = new MagicSort<>(work, false);
+            magicSorts[i].setComparator(comparators[i]);
+            magicSorts[i].setSpecializedKernels(specialized);
+        }
+    }
+
+    /**
+     * 輪流用每種比較器複製資料之後排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    public Integer[] sort() {
+        for (final MagicSort<Integer> magicSort : magicSorts) {
+            System.arraycopy(source, 0, work, 0, size);
+            magicSort.sort();
+        }
+        return work;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.comparators.StringWithNumberComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 測試StringWithNumberComparator單次比較的時間。字串是暫存目錄樹中的檔案名稱和絕對路徑，搭配GC分析器可以得到每次比較配置的記憶體。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringWithNumberComparatorBenchmark {
+
+    // -----物件變數-----
+    @Param({"1000"})
+    public int files; //根目錄中的檔案數量
+
+    private String[] names; //檔案名稱
+    private String[] paths; //檔案的絕對路徑
+    private StringWithNumberComparator comparator;
+    private int index; //目前要比較的位置
+
+    // -----物件方法-----
+    /**
+     * 建立目錄樹並取得檔案名稱，之後就刪除目錄樹。
+     *
+     * @throws IOException 建立或刪除失敗
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final FileTree tree = FileTree.create(files);
+        try {
+            final File[] entries = tree.list();
+            final int length = entries.length;
+            names = new String[length];
+            paths = new String[length];
+            for (int i = 0; i < length; ++i) {
+                names[i] = entries[i].getName();
+                paths[i] = entries[i].getAbsolutePath();
+            }
+        } finally {
+            tree.delete();
+        }
+        comparator = StringWithNumberComparator.getInstance();
+    }
+
+    /**
+     * 取得下一個要比較的位置。
+     *
+     * @return 傳回位置
+     */
+    private int next() {
+        final int i = index;
+        index = (i + 1) % names.length;
+        return i;
+    }
+
+    /**
+     * 比較相鄰的兩個檔案名稱。
+     *
+     * @return 傳回比較結果
+     */
+    @Benchmark
+    public int compareNames() {
+        final int i = next();
+        return comparator.compare(names[i], names[(i + 1) % names.length]);
+    }
+
+    /**
+     * 比較相鄰的兩個絕對路徑，路徑有很長的相同前綴。
+     *
+     * @return 傳回比較結果
+     */
+    @Benchmark
+    public int comparePaths() {
+        final int i = next();
+        return comparator.compare(paths[i], paths[(i + 1) % paths.length]);
+    }
+}
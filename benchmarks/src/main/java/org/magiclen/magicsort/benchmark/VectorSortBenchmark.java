@@ -0,0 +1,148 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.magiclen.magicsort.PrimitiveSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 比較PrimitiveSort的向量化排序核心、純量的排序和JDK的Arrays.sort。每個方法在不同的JVM中執行，向量化的方法會加入jdk.incubator.vector模組，純量的方法則停用向量化排序核心。需要用Java 17以上的版本執行，並且以-Psimd建置，讓magicsort-simd模組在類別路徑中；否則向量化的方法會和純量的方法相同。
+ *
+ * @author Magic Len
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VectorSortBenchmark {
+
+    // -----物件變數-----
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size; //資料長度
+    @Param({"RANDOM", "FEW_UNIQUE", "ORGAN_PIPE"})
+    public Distribution distribution; //資料分布
+    @Param({"int", "long", "float"})
+    public String type; //資料型態
+
+    private int[] intSource; //原始資料(int)
+    private int[] intWork; //每次排序使用的資料(int)
+    private long[] longSource; //原始資料(long)
+    private long[] longWork; //每次排序使用的資料(long)
+    private float[] floatSource; //原始資料(float)
+    private float[] floatWork; //每次排序使用的資料(float)
+
+    // -----物件方法-----
+    /**
+     * 產生測試資料。long和float的數值會被打散，讓它們不只是int的數值。
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        intSource = distribution.generate(size);
+        longSource = new long[size];
+        floatSource = new float[size];
+        for (int i = 0; i < size; ++i) {
+            longSource[i] = intSource[i] * 0x9E3779B97F4A7C15L;
+            floatSource[i] = intSource[i] / (float) size - 0.5f;
+        }
+        intWork = new int[size];
+        longWork = new long[size];
+        floatWork = new float[size];
+    }
+
+    /**
+     * 複製原始資料並用PrimitiveSort排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    private Object primitiveSort() {
+        switch (type) {
+            case "int":
+                System.arraycopy(intSource, 0, intWork, 0, size);
+                PrimitiveSort.sort(intWork);
+                return intWork;
+            case "long":
+                System.arraycopy(longSource, 0, longWork, 0, size);
+                PrimitiveSort.sort(longWork);
+                return longWork;
+            default:
+                System.arraycopy(floatSource, 0, floatWork, 0, size);
+                PrimitiveSort.sort(floatWork);
+                return floatWork;
+        }
+    }
+
+    /**
+     * 使用向量化排序核心。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+    public Object vector() {
+        return primitiveSort();
+    }
+
+    /**
+     * 使用純量的排序。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dorg.magiclen.magicsort.vector=false"})
+    public Object scalar() {
+        return primitiveSort();
+    }
+
+    /**
+     * 使用Arrays.sort。
+     *
+     * @return 傳回排序後的資料
+     */
+    @Benchmark
+    @Fork(1)
+    public Object arraysSort() {
+        switch (type) {
+            case "int":
+                System.arraycopy(intSource, 0, intWork, 0, size);
+                Arrays.sort(intWork);
+                return intWork;
+            case "long":
+                System.arraycopy(longSource, 0, longWork, 0, size);
+                Arrays.sort(longWork);
+                return longWork;
+            default:
+                System.arraycopy(floatSource, 0, floatWork, 0, size);
+                Arrays.sort(floatWork);
+                return floatWork;
+        }
+    }
+}
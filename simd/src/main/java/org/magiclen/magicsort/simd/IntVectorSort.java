@@ -0,0 +1,378 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.simd;
+
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 使用Vector API排序int陣列的快速排序法。分割時一次比較一整個向量，再用查表取得的重排將小於pivot的元素集中到向量的前面，同時寫到範圍的左右兩端；不超過兩個向量的區段在暫存器中用雙調排序網路排序。
+ *
+ * @author Magic Len
+ */
+final class IntVectorSort {
+
+    // -----類別常數-----
+    /**
+     * 使用的向量規格，最多8個元素，讓分割用的重排表不超過256個。
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() > 8 ? IntVector.SPECIES_256 : IntVector.SPECIES_PREFERRED;
+    /**
+     * 一個向量的元素數量。
+     */
+    static final int LANES = SPECIES.length();
+    /**
+     * 在暫存器中排序的元素數量上限。
+     */
+    private static final int SMALL = 2 * LANES;
+    /**
+     * 堆疊的大小，每個區段使用三個位置(起點、終點和剩下的分割深度)，只將較大的區段放入堆疊。
+     */
+    private static final int STACK_SIZE = 3 * 64;
+    /**
+     * 分割用的重排表，索引為比較結果的位元遮罩，會將遮罩為1的元素依序移到前面，其餘的元素依序放在後面。
+     */
+    private static final VectorShuffle<Integer>[] PARTITION_SHUFFLES;
+    /**
+     * 雙調排序網路每一層的重排，將每個元素與另一個元素配對。
+     */
+    private static final VectorShuffle<Integer>[] NETWORK_SHUFFLES;
+    /**
+     * 雙調排序網路每一層中要取較大值的元素。
+     */
+    private static final VectorMask<Integer>[] NETWORK_MASKS;
+    /**
+     * 雙調合併從第幾層開始。
+     */
+    private static final int MERGE_STAGE;
+    /**
+     * 反轉向量的重排。
+     */
+    private static final VectorShuffle<Integer> REVERSE;
+    /**
+     * 填補不足一個向量的部分用的最大值。
+     */
+    private static final IntVector PADDING = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+    /**
+     * 每個元素對應的位元值，用來將比較的結果轉成位元遮罩。
+     */
+    private static final IntVector BIT_VALUES;
+    /**
+     * 所有元素都是0的向量。
+     */
+    private static final IntVector ZERO = IntVector.zero(SPECIES);
+
+    static {
+        final int[] indexes = new int[LANES];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final VectorShuffle<Integer>[] partitionShuffles = new VectorShuffle[1 << LANES];
+        for (int bits = 0; bits < partitionShuffles.length; ++bits) {
+            int k = 0;
+            for (int i = 0; i < LANES; ++i) {
+                if ((bits & (1 << i)) != 0) {
+                    indexes[k++] = i;
+                }
+            }
+            for (int i = 0; i < LANES; ++i) {
+                if ((bits & (1 << i)) == 0) {
+                    indexes[k++] = i;
+                }
+            }
+            partitionShuffles[bits] = VectorShuffle.fromArray(SPECIES, indexes, 0);
+        }
+        PARTITION_SHUFFLES = partitionShuffles;
+
+        final int log = Integer.numberOfTrailingZeros(LANES);
+        final int stages = log * (log + 1) / 2;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final VectorShuffle<Integer>[] networkShuffles = new VectorShuffle[stages];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final VectorMask<Integer>[] networkMasks = new VectorMask[stages];
+        final boolean[] takeMax = new boolean[LANES];
+        int stage = 0;
+        for (int k = 2; k <= LANES; k <<= 1) {
+            for (int j = k >> 1; j > 0; j >>= 1) {
+                for (int i = 0; i < LANES; ++i) {
+                    indexes[i] = i ^ j;
+                    takeMax[i] = ((i & j) == 0) != ((i & k) == 0); // 遞增的區塊中，配對的後面一個取較大值；遞減的區塊則相反
+                }
+                networkShuffles[stage] = VectorShuffle.fromArray(SPECIES, indexes, 0);
+                networkMasks[stage] = VectorMask.fromArray(SPECIES, takeMax, 0);
+                ++stage;
+            }
+        }
+        NETWORK_SHUFFLES = networkShuffles;
+        NETWORK_MASKS = networkMasks;
+        MERGE_STAGE = stages - log;
+
+        for (int i = 0; i < LANES; ++i) {
+            indexes[i] = LANES - 1 - i;
+        }
+        REVERSE = VectorShuffle.fromArray(SPECIES, indexes, 0);
+
+        final int[] bitValues = new int[LANES];
+        for (int i = 0; i < LANES; ++i) {
+            bitValues[i] = 1 << i;
+        }
+        BIT_VALUES = IntVector.fromArray(SPECIES, bitValues, 0);
+    }
+
+    // -----類別方法-----
+    /**
+     * 遞增排序int陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    static void sort(final int[] array, final int start, final int end) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int[] stack = new int[STACK_SIZE];
+        final int[] buffer = new int[LANES]; //分割時暫存不足一個向量的元素
+        int top = -1;
+        int lo = start, hi = end, depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, end - start)));
+        while (true) {
+            final int size = hi - lo;
+            if (size <= SMALL || depth == 0) {
+                if (size <= SMALL) {
+                    sortSmall(array, lo, size);
+                } else {
+                    heapSort(array, lo, hi); // 分割的深度太深，改用堆積排序，避免最差的情況
+                }
+                if (top < 0) {
+                    break;
+                }
+                depth = stack[top--];
+                hi = stack[top--];
+                lo = stack[top--];
+                continue;
+            }
+            --depth;
+            final int pivot = medianOf3(array, lo + random.nextInt(size), lo + random.nextInt(size), lo + random.nextInt(size));
+            int mid = partition(array, lo, hi, pivot, false, buffer);
+            if (mid == lo) { // 沒有元素小於pivot，再將等於pivot的元素移到左邊，它們已經在最終的位置上
+                lo = partition(array, lo, hi, pivot, true, buffer);
+                continue;
+            }
+            if (mid - lo < hi - mid) { //較大的區段放入堆疊，先處理較小的區段
+                stack[++top] = mid;
+                stack[++top] = hi;
+                stack[++top] = depth;
+                hi = mid;
+            } else {
+                stack[++top] = lo;
+                stack[++top] = mid;
+                stack[++top] = depth;
+                lo = mid;
+            }
+        }
+    }
+
+    /**
+     * 向量化的分割。先讀入最左邊和最右邊的向量，讓兩端各留下一個向量的空間，之後每次從剩下空間較少的一端讀入一個向量，將比較結果為true的元素寫到左端，其餘的寫到右端。
+     *
+     * @param array 傳入陣列
+     * @param lo 傳入分割起點位置
+     * @param hi 傳入分割終點位置，必須超過起點位置兩個向量
+     * @param pivot 傳入pivot
+     * @param lessEqual 傳入是否將等於pivot的元素也放到左端
+     * @param buffer 傳入暫存不足一個向量的元素的陣列
+     * @return 傳回右端的起點位置
+     */
+    private static int partition(final int[] array, final int lo, final int hi, final int pivot, final boolean lessEqual, final int[] buffer) {
+        final IntVector pivots = IntVector.broadcast(SPECIES, pivot);
+        int readL = lo, readR = hi, writeL = lo, writeR = hi;
+        final IntVector first = IntVector.fromArray(SPECIES, array, readL);
+        readL += LANES;
+        readR -= LANES;
+        final IntVector last = IntVector.fromArray(SPECIES, array, readR);
+        while (readR - readL >= LANES) {
+            // 兩端的空間總和固定為兩個向量，從空間較少的一端讀入，兩端都至少會有一個向量的空間。用條件運算式選擇位置，避免分支預測錯誤
+            final boolean fromLeft = readL - writeL <= writeR - readR;
+            final int read = fromLeft ? readL : readR - LANES;
+            readL += fromLeft ? LANES : 0;
+            readR -= fromLeft ? 0 : LANES;
+            final IntVector v = IntVector.fromArray(SPECIES, array, read);
+            final VectorMask<Integer> mask = lessEqual ? v.compare(VectorOperators.LE, pivots) : v.compare(VectorOperators.LT, pivots);
+            final int bits = toBits(mask);
+            final IntVector partitioned = v.rearrange(PARTITION_SHUFFLES[bits]);
+            final int count = Integer.bitCount(bits);
+            partitioned.intoArray(array, writeL);
+            partitioned.intoArray(array, writeR - LANES);
+            writeL += count;
+            writeR -= LANES - count;
+        }
+        final int rest = readR - readL;
+        System.arraycopy(array, readL, buffer, 0, rest);
+        for (int i = 0; i < rest; ++i) {
+            final int e = buffer[i];
+            if (lessEqual ? e <= pivot : e < pivot) {
+                array[writeL++] = e;
+            } else {
+                array[--writeR] = e;
+            }
+        }
+        // 剩下的空間剛好是兩個向量
+        final VectorMask<Integer> firstMask = lessEqual ? first.compare(VectorOperators.LE, pivots) : first.compare(VectorOperators.LT, pivots);
+        final int firstBits = toBits(firstMask);
+        final IntVector firstPartitioned = first.rearrange(PARTITION_SHUFFLES[firstBits]);
+        final int firstCount = Integer.bitCount(firstBits);
+        firstPartitioned.intoArray(array, writeL);
+        firstPartitioned.intoArray(array, writeR - LANES);
+        writeL += firstCount;
+        // 剩下的空間剛好是一個向量
+        final VectorMask<Integer> lastMask = lessEqual ? last.compare(VectorOperators.LE, pivots) : last.compare(VectorOperators.LT, pivots);
+        final int lastBits = toBits(lastMask);
+        last.rearrange(PARTITION_SHUFFLES[lastBits]).intoArray(array, writeL);
+        return writeL + Integer.bitCount(lastBits);
+    }
+
+    /**
+     * 將比較的結果轉成位元遮罩。VectorMask.toLong在JDK 17中沒有被JIT內建化，會逐一檢查每個元素，所以改用混合和加總。
+     *
+     * @param mask 傳入比較的結果
+     * @return 傳回位元遮罩，第i個元素為true時，第i個位元為1
+     */
+    private static int toBits(final VectorMask<Integer> mask) {
+        return ZERO.blend(BIT_VALUES, mask).reduceLanes(VectorOperators.ADD);
+    }
+
+    /**
+     * 在暫存器中用雙調排序網路排序不超過兩個向量的區段，不足的部分用最大值填補。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param size 傳入元素數量，不可以超過兩個向量
+     */
+    private static void sortSmall(final int[] array, final int start, final int size) {
+        if (size < 2) {
+            return;
+        }
+        if (size <= LANES) {
+            final VectorMask<Integer> mask = SPECIES.indexInRange(0, size);
+            final IntVector v = sortVector(PADDING.blend(IntVector.fromArray(SPECIES, array, start, mask), mask));
+            v.intoArray(array, start, mask);
+        } else {
+            final VectorMask<Integer> mask = SPECIES.indexInRange(0, size - LANES);
+            final IntVector a = sortVector(IntVector.fromArray(SPECIES, array, start));
+            final IntVector b = sortVector(PADDING.blend(IntVector.fromArray(SPECIES, array, start + LANES, mask), mask)).rearrange(REVERSE);
+            mergeVector(a.min(b)).intoArray(array, start);
+            mergeVector(a.max(b)).intoArray(array, start + LANES, mask);
+        }
+    }
+
+    /**
+     * 用雙調排序網路遞增排序一個向量。
+     *
+     * @param v 傳入向量
+     * @return 傳回排序後的向量
+     */
+    private static IntVector sortVector(IntVector v) {
+        for (int stage = 0; stage < NETWORK_SHUFFLES.length; ++stage) {
+            final IntVector partner = v.rearrange(NETWORK_SHUFFLES[stage]);
+            v = v.min(partner).blend(v.max(partner), NETWORK_MASKS[stage]);
+        }
+        return v;
+    }
+
+    /**
+     * 用雙調合併將雙調的向量遞增排序。
+     *
+     * @param v 傳入向量
+     * @return 傳回排序後的向量
+     */
+    private static IntVector mergeVector(IntVector v) {
+        for (int stage = MERGE_STAGE; stage < NETWORK_SHUFFLES.length; ++stage) {
+            final IntVector partner = v.rearrange(NETWORK_SHUFFLES[stage]);
+            v = v.min(partner).blend(v.max(partner), NETWORK_MASKS[stage]);
+        }
+        return v;
+    }
+
+    /**
+     * 取得三個位置中的中位數。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     * @param c 位置c
+     * @return 傳回中位數
+     */
+    private static int medianOf3(final int[] array, final int a, final int b, final int c) {
+        final int va = array[a], vb = array[b], vc = array[c];
+        if (va < vb) {
+            return vb < vc ? vb : va < vc ? vc : va;
+        }
+        return va < vc ? va : vb < vc ? vc : vb;
+    }
+
+    /**
+     * 堆積排序法，在分割的深度太深時使用。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    private static void heapSort(final int[] array, final int start, final int end) {
+        final int size = end - start;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(array, start, i, size);
+        }
+        for (int n = size - 1; n > 0; --n) {
+            final int t = array[start];
+            array[start] = array[start + n];
+            array[start + n] = t;
+            siftDown(array, start, 0, n);
+        }
+    }
+
+    /**
+     * 將堆積中的元素往下移到正確的位置。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入堆積的起點位置
+     * @param i 傳入元素在堆積中的位置
+     * @param size 傳入堆積的大小
+     */
+    private static void siftDown(final int[] array, final int start, int i, final int size) {
+        final int e = array[start + i];
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && array[start + child] < array[start + child + 1]) {
+                ++child;
+            }
+            if (array[start + child] <= e) {
+                break;
+            }
+            array[start + i] = array[start + child];
+            i = child;
+        }
+        array[start + i] = e;
+    }
+
+    // -----建構子-----
+    /**
+     * 私有的建構子，將無法被實體化。
+     */
+    private IntVectorSort() {
+    }
+}
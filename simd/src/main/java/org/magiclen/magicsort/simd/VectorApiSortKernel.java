@@ -0,0 +1,81 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.simd;
+
+import jdk.incubator.vector.IntVector;
+import org.magiclen.magicsort.VectorSortKernel;
+
+/**
+ * <p>
+ * 使用Java的Vector API(jdk.incubator.vector模組)實作的向量化排序核心，由PrimitiveSort透過ServiceLoader載入。
+ * </p>
+ *
+ * <p>
+ * 執行時需要加入--add-modules jdk.incubator.vector參數，而且CPU的向量長度至少要有256位元(AVX2或AVX-512)，否則isSupported會傳回false，PrimitiveSort會繼續使用純量的排序。
+ * </p>
+ *
+ * @author Magic Len
+ */
+public final class VectorApiSortKernel implements VectorSortKernel {
+
+    // -----類別常數-----
+    /**
+     * Vector API的模組名稱。
+     */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /**
+     * 需要的最小向量長度(位元)，較短的向量沒有比純量的排序快。
+     */
+    private static final int MIN_VECTOR_BITS = 256;
+
+    // -----建構子-----
+    /**
+     * 建構子，給ServiceLoader使用。
+     */
+    public VectorApiSortKernel() {
+    }
+
+    // -----物件方法-----
+    @Override
+    public String getName() {
+        return "vector-" + IntVector.SPECIES_PREFERRED.vectorBitSize();
+    }
+
+    @Override
+    public boolean isSupported() {
+        if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) { // 沒有加入模組時，不能碰到任何Vector API的類別
+            return false;
+        }
+        return IntVector.SPECIES_PREFERRED.vectorBitSize() >= MIN_VECTOR_BITS;
+    }
+
+    @Override
+    public void sort(final int[] array, final int start, final int end) {
+        IntVectorSort.sort(array, start, end);
+    }
+
+    @Override
+    public void sort(final long[] array, final int start, final int end) {
+        LongVectorSort.sort(array, start, end);
+    }
+
+    @Override
+    public void sort(final float[] array, final int start, final int end) {
+        FloatVectorSort.sort(array, start, end);
+    }
+}
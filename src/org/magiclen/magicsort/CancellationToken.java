@@ -0,0 +1,67 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * 取消排序的標記。將同一個標記設定給一個或多個排序物件之後，呼叫cancel方法就可以讓這些排序在下一個檢查點停止，並拋出SortCancelledException。
+ *
+ * @author Magic Len
+ * @see MagicSort#setCancellationToken(CancellationToken)
+ */
+public final class CancellationToken {
+
+    // -----物件常數-----
+    private final CancellationToken parent; //上層標記
+
+    // -----物件變數-----
+    private volatile boolean cancelled; //是否已取消
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     */
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * 建構子，建立一個子標記。上層標記被取消時，子標記也會視為已取消，但取消子標記不會影響上層標記。
+     *
+     * @param parent 傳入上層標記，可為null
+     */
+    public CancellationToken(final CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    // -----物件方法-----
+    /**
+     * 取消。
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 是否已取消。
+     *
+     * @return 傳回是否已取消
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+}
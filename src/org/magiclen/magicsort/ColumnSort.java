@@ -0,0 +1,503 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+import org.magiclen.magicsort.jfr.SortEvent;
+
+/**
+ * <p>
+ * 欄位式資料的排序類別，依照一個基本型態的鍵值欄位排序，並讓任意數量的相關欄位(基本型態或物件陣列)跟著一起重新排列，不需要為每個元素建立CountingSortElement之類的包裝物件。特色如下：
+ * </p>
+ * <ol>
+ * <li>只會排序由(鍵值, 索引)組成的陣列，排序完成後再依照置換重新排列鍵值欄位和每個相關欄位，每種型態的欄位共用一個暫存陣列。</li>
+ * <li>鍵值的數值範圍不超過資料長度兩倍時使用計數排序法；AUTO在數值範圍不超過2<sup>32</sup>(基數排序法最多4趟)時使用最低位數優先的基數排序法，其餘使用PrimitiveSort的區塊分割快速排序法。</li>
+ * <li>排序是穩定的，鍵值相同的元素會維持原本的先後順序，遞減排序也是。</li>
+ * <li>在排序過程中還可用getProgress或setProgressListener來取得排序進度。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ */
+public final class ColumnSort {
+
+    // -----類別常數-----
+    /**
+     * 基數排序法每一趟處理的位元數。
+     */
+    private static final int RADIX_BITS = 8;
+    /**
+     * 基數排序法的桶子數量。
+     */
+    private static final int RADIX = 1 << RADIX_BITS;
+    /**
+     * AUTO使用基數排序法的最大趟數，超過時使用PrimitiveSort。
+     */
+    private static final int MAX_RADIX_PASSES = 4;
+
+    // -----物件常數-----
+    private final Object keyColumn; //鍵值欄位
+    private final int length; //每個欄位的長度
+    private final List<Object> columns = new ArrayList<>(); //跟著鍵值一起重新排列的欄位
+    private final ProgressTracker progress = new ProgressTracker(); //儲存排序進度
+
+    // -----物件變數-----
+    private boolean sorting; //儲存是否正在排序中
+    private boolean descending; //儲存是否遞減排序
+    private Algorithm algorithm = Algorithm.AUTO; //儲存排序時使用的演算法
+
+    // -----建構子-----
+    /**
+     * 建構子，使用long鍵值欄位。
+     *
+     * @param keys 傳入鍵值欄位
+     */
+    public ColumnSort(final long[] keys) {
+        this((Object) keys, keys.length);
+    }
+
+    /**
+     * 建構子，使用int鍵值欄位。
+     *
+     * @param keys 傳入鍵值欄位
+     */
+    public ColumnSort(final int[] keys) {
+        this((Object) keys, keys.length);
+    }
+
+    /**
+     * 建構子，使用double鍵值欄位，排序結果與Double.compare一致。
+     *
+     * @param keys 傳入鍵值欄位
+     */
+    public ColumnSort(final double[] keys) {
+        this((Object) keys, keys.length);
+    }
+
+    /**
+     * 建構子。
+     *
+     * @param keyColumn 傳入鍵值欄位
+     * @param length 傳入欄位的長度
+     */
+    private ColumnSort(final Object keyColumn, final int length) {
+        this.keyColumn = keyColumn;
+        this.length = length;
+    }
+
+    // -----物件方法-----
+    /**
+     * 加入一個跟著鍵值一起重新排列的欄位。
+     *
+     * @param column 傳入欄位
+     * @param columnLength 傳入欄位的長度，必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    private synchronized ColumnSort add(final Object column, final int columnLength) {
+        if (columnLength != length) {
+            throw new IllegalArgumentException("column length " + columnLength + " does not match key length " + length);
+        }
+        columns.add(column);
+        return this;
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的物件欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final Object[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的long欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final long[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的int欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final int[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的short欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final short[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的byte欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final byte[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的double欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final double[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 加入一個跟著鍵值一起重新排列的float欄位。
+     *
+     * @param column 傳入欄位，長度必須與鍵值欄位相同
+     * @return 傳回這個物件
+     * @throws IllegalArgumentException 欄位長度與鍵值欄位不同時拋出
+     */
+    public ColumnSort addColumn(final float[] column) {
+        return add(column, column.length);
+    }
+
+    /**
+     * 設定排序演算法。AUTO會依照鍵值的數值範圍選擇計數排序法、基數排序法或PrimitiveSort；COUNTINGSORT在數值範圍不超過資料長度兩倍時使用計數排序法，否則使用PrimitiveSort；其餘的演算法都會使用PrimitiveSort。
+     *
+     * @param algorithm 傳入排序演算法，若為null，則使用預設值AUTO
+     */
+    public synchronized void setAlgorithm(final Algorithm algorithm) {
+        if (algorithm == null) {
+            this.algorithm = Algorithm.AUTO;
+        } else {
+            this.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * 取得排序演算法。
+     *
+     * @return 傳回排序演算法
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 設定是否遞減排序。遞減時會直接反轉鍵值的位元，鍵值相同的元素仍然維持原本的先後順序。
+     *
+     * @param descending 傳入是否遞減排序
+     */
+    public synchronized void setDescending(final boolean descending) {
+        this.descending = descending;
+    }
+
+    /**
+     * 是否遞減排序。
+     *
+     * @return 傳回是否遞減排序
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * 取得欄位的長度。
+     *
+     * @return 傳回欄位的長度
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 是否正在排序中。
+     *
+     * @return 傳回是否正在排序中。
+     */
+    public boolean isSorting() {
+        return sorting;
+    }
+
+    /**
+     * 取得排序進度。
+     *
+     * @return 傳回進度
+     */
+    public double getProgress() {
+        return progress.getProgress();
+    }
+
+    /**
+     * 設定進度監聽器，排序時每100毫秒發送一次進度事件。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     */
+    public synchronized void setProgressListener(final ProgressListener listener) {
+        setProgressListener(listener, ProgressTracker.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * 設定進度監聽器和發送進度事件的時間間隔。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     * @param interval 傳入發送進度事件的時間間隔(毫秒)，必須大於0
+     */
+    public synchronized void setProgressListener(final ProgressListener listener, final long interval) {
+        progress.setListener(listener, interval);
+    }
+
+    /**
+     * 排序鍵值欄位，並將所有加入的欄位依照相同的順序就地重新排列。
+     *
+     * @return 傳回排序使用的置換，第i個數值為排序後第i個元素原本的索引
+     */
+    public synchronized int[] sort() {
+        sorting = true;
+        final SortEvent event = new SortEvent();
+        event.begin();
+        final long[] keys = readKeys();
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (final long key : keys) {
+            if (key < min) {
+                min = key;
+            }
+            if (key > max) {
+                max = key;
+            }
+        }
+        progress.start(Math.max(1, length));
+        final int radixPasses = (Long.SIZE - Long.numberOfLeadingZeros(max - min) + RADIX_BITS - 1) / RADIX_BITS; //(鍵值-最小值)需要的位元組數
+        final int[] permutation;
+        if (length == 0) {
+            permutation = new int[0];
+        } else if ((algorithm == Algorithm.AUTO || algorithm == Algorithm.COUNTINGSORT) && max - min >= 0 && max - min < 2L * length) { //數值範圍不會溢位，而且不超過資料長度的兩倍
+            permutation = countingSort(keys, min, (int) (max - min + 1));
+        } else if (algorithm == Algorithm.AUTO && radixPasses <= MAX_RADIX_PASSES) {
+            permutation = radixSort(keys, min, radixPasses);
+        } else {
+            permutation = comparisonSort(keys);
+        }
+        final Map<Class<?>, Object> buffers = new HashMap<>();
+        permute(keyColumn, permutation, buffers);
+        for (final Object column : columns) {
+            permute(column, permutation, buffers);
+        }
+        progress.finish();
+        if (event.shouldCommit()) {
+            event.sorter = ColumnSort.class.getSimpleName();
+            event.algorithm = algorithm.name();
+            event.length = length;
+            event.commit();
+        }
+        sorting = false;
+        return permutation;
+    }
+
+    /**
+     * 讀取鍵值欄位，轉換成可以直接用有號長整數比較大小的數值。遞減時反轉所有位元。
+     *
+     * @return 傳回鍵值
+     */
+    private long[] readKeys() {
+        final long[] keys = new long[length];
+        final long mask = descending ? -1 : 0;
+        if (keyColumn instanceof long[]) {
+            final long[] column = (long[]) keyColumn;
+            for (int i = 0; i < length; ++i) {
+                keys[i] = column[i] ^ mask;
+            }
+        } else if (keyColumn instanceof int[]) {
+            final int[] column = (int[]) keyColumn;
+            for (int i = 0; i < length; ++i) {
+                keys[i] = column[i] ^ mask;
+            }
+        } else {
+            final double[] column = (double[]) keyColumn;
+            for (int i = 0; i < length; ++i) {
+                final long bits = Double.doubleToLongBits(column[i]);
+                keys[i] = (bits ^ ((bits >> 63) & Long.MAX_VALUE)) ^ mask;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 計數排序法，直接算出每個元素排序後的位置。
+     *
+     * @param keys 傳入鍵值
+     * @param min 傳入鍵值的最小值
+     * @param size 傳入鍵值範圍的大小
+     * @return 傳回置換
+     */
+    private int[] countingSort(final long[] keys, final long min, final int size) {
+        final int[] next = new int[size + 1];
+        for (final long key : keys) {
+            ++next[(int) (key - min) + 1];
+        }
+        for (int i = 1; i <= size; ++i) {
+            next[i] += next[i - 1];
+        }
+        final int[] permutation = new int[length];
+        for (int i = 0; i < length; ++i) {
+            permutation[next[(int) (keys[i] - min)]++] = i;
+        }
+        progress.add(length);
+        return permutation;
+    }
+
+    /**
+     * 最低位數優先的基數排序法，每一趟依照(鍵值-最小值)的一個位元組穩定地分配(鍵值, 索引)。
+     *
+     * @param keys 傳入鍵值
+     * @param min 傳入鍵值的最小值
+     * @param passes 傳入趟數
+     * @return 傳回置換
+     */
+    private int[] radixSort(long[] keys, final long min, final int passes) {
+        int[] indexes = new int[length];
+        for (int i = 0; i < length; ++i) {
+            indexes[i] = i;
+            keys[i] -= min;
+        }
+        long[] keysBuffer = new long[length];
+        int[] indexesBuffer = new int[length];
+        final int[] count = new int[RADIX + 1];
+        for (int pass = 0; pass < passes; ++pass) {
+            final int shift = pass * RADIX_BITS;
+            Arrays.fill(count, 0);
+            for (final long key : keys) {
+                ++count[((int) (key >>> shift) & (RADIX - 1)) + 1];
+            }
+            for (int b = 1; b <= RADIX; ++b) {
+                count[b] += count[b - 1];
+            }
+            for (int i = 0; i < length; ++i) {
+                final int p = count[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+                keysBuffer[p] = keys[i];
+                indexesBuffer[p] = indexes[i];
+            }
+            final long[] k = keys;
+            keys = keysBuffer;
+            keysBuffer = k;
+            final int[] x = indexes;
+            indexes = indexesBuffer;
+            indexesBuffer = x;
+            progress.add((long) length * (pass + 1) / passes - (long) length * pass / passes);
+        }
+        return indexes;
+    }
+
+    /**
+     * 用PrimitiveSort排序(鍵值, 索引)，再讓鍵值相同的元素恢復原本的先後順序。
+     *
+     * @param keys 傳入鍵值
+     * @return 傳回置換
+     */
+    private int[] comparisonSort(final long[] keys) {
+        final int[] indexes = new int[length];
+        for (int i = 0; i < length; ++i) {
+            indexes[i] = i;
+        }
+        PrimitiveSort.sort(keys, indexes, 0, length, progress);
+        for (int i = 0; i < length;) {
+            final long key = keys[i];
+            int j = i + 1;
+            while (j < length && keys[j] == key) {
+                ++j;
+            }
+            if (j - i > 1) {
+                PrimitiveSort.sort(indexes, i, j);
+            }
+            i = j;
+        }
+        return indexes;
+    }
+
+    /**
+     * 依照置換重新排列一個欄位。先將欄位依照置換收集到同型態的暫存陣列，再複製回欄位。沿著置換的循環搬移時，每次搬移都要等上一次隨機讀取的結果，收集則可以同時進行多個隨機讀取，在大量資料時快了好幾倍。
+     *
+     * @param column 傳入欄位
+     * @param permutation 傳入置換
+     * @param buffers 傳入依照欄位型態重複使用的暫存陣列
+     */
+    private void permute(final Object column, final int[] permutation, final Map<Class<?>, Object> buffers) {
+        final Class<?> type = column instanceof Object[] ? Object[].class : column.getClass();
+        final Object buffer = buffers.computeIfAbsent(type, t -> Array.newInstance(t.getComponentType(), length));
+        if (column instanceof Object[]) {
+            final Object[] from = (Object[]) column, to = (Object[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else if (column instanceof long[]) {
+            final long[] from = (long[]) column, to = (long[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else if (column instanceof int[]) {
+            final int[] from = (int[]) column, to = (int[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else if (column instanceof short[]) {
+            final short[] from = (short[]) column, to = (short[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else if (column instanceof byte[]) {
+            final byte[] from = (byte[]) column, to = (byte[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else if (column instanceof double[]) {
+            final double[] from = (double[]) column, to = (double[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        } else {
+            final float[] from = (float[]) column, to = (float[]) buffer;
+            for (int i = 0; i < length; ++i) {
+                to[i] = from[permutation[i]];
+            }
+        }
+        System.arraycopy(buffer, 0, column, 0, length);
+    }
+}
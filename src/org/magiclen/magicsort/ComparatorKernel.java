@@ -0,0 +1,42 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.Comparator;
+
+/**
+ * 以比較器排序物件陣列的排序核心。ComparatorKernels會為每一種比較器類別產生一份專用的實作，讓核心中呼叫比較器的位置只會看到一種類別。
+ *
+ * @author Magic Len
+ * @see ComparatorKernels
+ */
+interface ComparatorKernel {
+
+    /**
+     * 排序陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param comparator 傳入比較器
+     * @param threshold 傳入改用排序網路的元素數量上限，不可超過SortingNetworks.MAX_SIZE
+     * @param progress 傳入排序進度
+     * @param checkpoint 傳入每次分割前呼叫的檢查點，需要取消排序時拋出例外
+     */
+    void sort(Object[] array, int start, int end, Comparator<Object> comparator, int threshold, ProgressTracker progress, Runnable checkpoint);
+}
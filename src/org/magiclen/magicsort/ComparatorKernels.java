@@ -0,0 +1,142 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+
+/**
+ * <p>
+ * 為每一種比較器類別產生專用的排序核心。所有MagicSort物件共用同一個排序迴圈時，迴圈中呼叫比較器的位置會看到很多種比較器類別，JIT無法將比較器內嵌；每種比較器類別各自使用一份核心時，呼叫的位置只會看到一種類別，比較器就可以被內嵌。
+ * </p>
+ *
+ * <p>
+ * 核心是用QuickSortKernel的位元組碼，透過Java 15加入的MethodHandles.Lookup.defineHiddenClass定義的隱藏類別，並依照比較器的類別快取在ClassValue中。隱藏類別不會被強參考，比較器的類別被卸載後，它的核心也會被回收。無法定義隱藏類別時(例如Java 15以前的版本，或是取不到QuickSortKernel的位元組碼)，所有的比較器會共用同一個核心。
+ * </p>
+ *
+ * @author Magic Len
+ */
+final class ComparatorKernels {
+
+    // -----類別常數-----
+    /**
+     * 無法產生專用核心時共用的核心。
+     */
+    private static final ComparatorKernel SHARED = new QuickSortKernel();
+    /**
+     * QuickSortKernel的位元組碼，若無法取得，則為null。
+     */
+    private static final byte[] TEMPLATE = readTemplate();
+    /**
+     * MethodHandles.Lookup.defineHiddenClass方法，若不存在，則為null。
+     */
+    private static final MethodHandle DEFINE_HIDDEN_CLASS = findDefineHiddenClass();
+    /**
+     * 不指定任何選項的MethodHandles.Lookup.ClassOption陣列。
+     */
+    private static final Object NO_OPTIONS = DEFINE_HIDDEN_CLASS == null ? null : Array.newInstance(DEFINE_HIDDEN_CLASS.type().parameterType(3).getComponentType(), 0);
+    /**
+     * 依照比較器的類別快取的核心。
+     */
+    private static final ClassValue<ComparatorKernel> KERNELS = new ClassValue<ComparatorKernel>() {
+
+        @Override
+        protected ComparatorKernel computeValue(final Class<?> type) {
+            return define();
+        }
+    };
+
+    // -----類別方法-----
+    /**
+     * 取得比較器類別專用的核心。
+     *
+     * @param comparatorClass 傳入比較器的類別
+     * @return 傳回核心，若無法產生專用的核心，傳回共用的核心
+     */
+    static ComparatorKernel get(final Class<?> comparatorClass) {
+        return KERNELS.get(comparatorClass);
+    }
+
+    /**
+     * 是否可以產生專用的核心。
+     *
+     * @return 傳回是否可以產生專用的核心
+     */
+    static boolean isSupported() {
+        return TEMPLATE != null && DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * 讀取QuickSortKernel的位元組碼。
+     *
+     * @return 傳回位元組碼，若無法取得，傳回null
+     */
+    private static byte[] readTemplate() {
+        try (final InputStream in = QuickSortKernel.class.getResourceAsStream(QuickSortKernel.class.getSimpleName().concat(".class"))) {
+            return in == null ? null : in.readAllBytes();
+        } catch (final IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 尋找MethodHandles.Lookup.defineHiddenClass方法。
+     *
+     * @return 傳回方法，若目前的Java版本沒有這個方法，傳回null
+     */
+    private static MethodHandle findDefineHiddenClass() {
+        try {
+            final Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            return MethodHandles.publicLookup().findVirtual(MethodHandles.Lookup.class, "defineHiddenClass", MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, Array.newInstance(option, 0).getClass())).asFixedArity(); //選項直接以陣列傳入
+        } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 定義一份新的核心。
+     *
+     * @return 傳回核心，若無法定義，傳回共用的核心
+     */
+    private static ComparatorKernel define() {
+        if (!isSupported()) {
+            return SHARED;
+        }
+        try {
+            final MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(MethodHandles.lookup(), TEMPLATE, true, NO_OPTIONS);
+            return (ComparatorKernel) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (final LinkageError ex) {
+            return SHARED; //位元組碼無法定義成隱藏類別
+        } catch (final Error ex) {
+            throw ex;
+        } catch (final Throwable ex) {
+            return SHARED;
+        }
+    }
+
+    // -----建構子-----
+    /**
+     * 私有的建構子，將無法被實體化。
+     */
+    private ComparatorKernels() {
+    }
+}
@@ -18,11 +18,23 @@
 package org.magiclen.magicsort;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.concurrent.ExecutorService;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
+import org.magiclen.magicsort.cli.SortCommand;
+import org.magiclen.magicsort.comparators.SortPlan;
+import org.magiclen.magicsort.jfr.CountingSortEvent;
+import org.magiclen.magicsort.jfr.ParallelTaskEvent;
+import org.magiclen.magicsort.jfr.SortEvent;
 
 /**
  * <p>
@@ -32,8 +44,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>使用setCompare方法可以自行決定排序的方式。</li>
  * <li>繼承MagicSort.MagicSortCallback介面可以非同步的方式處理排序，實作sortFinished方法決定排序完成後的行為。</li>
  * <li>可以使用setAlgorithm演算法來改變要使用的排序演算法。</li>
- * <li>在排序過程中還可用getProgress來取得排序進度。</li>
+ * <li>在排序過程中還可用getProgress來取得排序進度，或是用setProgressListener設定定時接收進度和剩餘時間的監聽器。</li>
  * <li>可以在不完整排序陣列的情況下，取得排序後指定索引位置的元素。</li>
+ * <li>可以用analyze分析資料已排序的程度，包含遞增區段、逆序對和重複元素的數量。</li>
+ * <li>啟用統計模式後，可以用getStatistics取得比較次數、交換次數和各階段耗時等統計資料。</li>
+ * <li>可以用CancellationToken、時間限制或是中斷執行緒來取消排序。</li>
+ * <li>多執行緒排序會使用共用的SortScheduler，同時進行大量的排序也不會建立過多的執行緒。</li>
+ * <li>比較器很慢時，可以用setPrefixFunction設定鍵值前綴函數，只有前綴相同的元素才需要使用比較器。</li>
+ * <li>多個鍵值的排序可以用SortPlan描述，再用setSortPlan直接依照計畫排序。</li>
+ * <li>可以用argsort只取得排序後的索引順序，再用applyPermutation重新排列多個相關的陣列。</li>
  * </ol>
  *
  *
@@ -45,11 +64,91 @@ public final class MagicSort<T> {
 
     // -----類別常數-----
     /**
-     * 執行緒的數量。
+     * O(n<sup>2</sup>)的演算法每處理這麼多個(減1)元素才回報一次進度。
      */
-    private static final int MAX_THREAD = Runtime.getRuntime().availableProcessors();
+    private static final int PROGRESS_MASK = 0xFF;
+    /**
+     * 多執行緒排序時，等待工作完成的期間檢查是否取消的時間間隔(毫秒)。
+     */
+    private static final long CANCELLATION_POLL_INTERVAL = 50;
+    /**
+     * AUTO演算法在資料長度不超過這個值時使用插入排序法，也是自然合併排序法中區段的最小長度。
+     */
+    private static final int MIN_RUN = 32;
+    /**
+     * AUTO演算法在資料長度達到這個值，且排程器有多個執行緒時使用多執行緒排序。
+     */
+    private static final int AUTO_PARALLEL_THRESHOLD = 1 << 16;
+    /**
+     * AUTO演算法取樣判斷重複元素比例時的樣本數量。
+     */
+    private static final int AUTO_SAMPLE_SIZE = 128;
+    /**
+     * isSorted方法中，每個執行緒最少要檢查的元素數量。
+     */
+    private static final int PARALLEL_CHECK_CHUNK = 1 << 14;
+    /**
+     * 桶子排序法中每個桶子平均的元素數量。
+     */
+    private static final int BUCKET_SIZE = 4;
+    /**
+     * AUTO演算法檢查樣本是否平均分布時，將數值範圍分成的區間數量。
+     */
+    private static final int AUTO_UNIFORM_SLICES = 16;
+    /**
+     * 預設的小範圍排序門檻，快速排序的區段元素數量不超過這個值時改用排序網路。
+     */
+    public static final int DEFAULT_SMALL_SORT_THRESHOLD = 12;
+    /**
+     * 基數排序每一趟使用的位元數。
+     */
+    private static final int RADIX_BITS = 8;
+    /**
+     * 基數排序每一趟的桶子數量。
+     */
+    private static final int RADIX = 1 << RADIX_BITS;
+    /**
+     * 基數排序的桶子元素數量不超過這個值時改用插入排序法。
+     */
+    private static final int RADIX_INSERTION_THRESHOLD = 48;
+    /**
+     * 預設排序方式，使用元素的自然排序，若元素無法比較，則比較它們轉成字串後的結果。
+     */
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+
+        @Override
+        public int compare(final Object t1, final Object t2) {
+            if (t1 instanceof Comparable && t2 instanceof Comparable) {
+                return ((Comparable) t1).compareTo(t2);
+            }
+            return t1.toString().compareTo(t2.toString()); //轉成字串後使用自然排序
+        }
+    };
+
+    // -----類別變數-----
+    private static Executor asyncExecutor; //非同步排序預設使用的執行器
 
     // -----類別方法-----
+    /**
+     * 取得非同步排序預設使用的執行器。在Java 21以上的版本中，每個排序工作都會使用一個新的虛擬執行緒，因此大量同時進行、需要讀取檔案的排序不會佔用大量的平台執行緒；在較舊的版本中，則使用會重複利用閒置執行緒的daemon執行緒池。
+     *
+     * @return 傳回執行器
+     */
+    public static synchronized Executor getDefaultAsyncExecutor() {
+        if (asyncExecutor == null) {
+            try {
+                asyncExecutor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (final ReflectiveOperationException ex) { //Java 21之前沒有虛擬執行緒
+                asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+                    final Thread thread = new Thread(runnable, "MagicSort-Async");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return asyncExecutor;
+    }
+
     /**
      * 計數排序法，In-place版本。遞增模式。
      *
@@ -63,9 +162,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[(int) (array[i] - min)];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -77,6 +180,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -92,9 +196,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[(int) (array[i] - min)];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -106,6 +214,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -121,9 +230,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -135,6 +248,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -150,9 +264,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -164,6 +282,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -179,9 +298,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -193,6 +316,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -208,9 +332,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -222,6 +350,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -237,9 +366,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -251,6 +384,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -266,9 +400,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = 0; i < size; ++i) {
@@ -280,6 +418,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -295,9 +434,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[(int) (array[i] - min)];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -309,6 +452,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -324,9 +468,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[(int) (array[i] - min)];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -338,6 +486,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -353,9 +502,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -367,6 +520,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -382,9 +536,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -396,6 +554,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -411,9 +570,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -425,6 +588,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -440,9 +604,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -454,6 +622,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -469,9 +638,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -483,6 +656,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -498,9 +672,13 @@ public final class MagicSort<T> {
 
         final int[] count = new int[size];
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i] - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
 
         int pointer = 0;
         for (int i = size - 1; i >= 0; --i) {
@@ -512,6 +690,7 @@ public final class MagicSort<T> {
                 pointer += c;
             }
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
     }
 
     /**
@@ -531,9 +710,13 @@ public final class MagicSort<T> {
 
         final CountingSortElement<E>[] arrayArray = (CountingSortElement<E>[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i].v - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -541,6 +724,7 @@ public final class MagicSort<T> {
             final CountingSortElement<E> e = array[i];
             arrayArray[--count[e.v - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
@@ -562,9 +746,13 @@ public final class MagicSort<T> {
 
         final CountingSortElement<E>[] arrayArray = (CountingSortElement<E>[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i].v - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -572,6 +760,7 @@ public final class MagicSort<T> {
             final CountingSortElement<E> e = array[i];
             arrayArray[length_dec - --count[e.v - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
@@ -593,9 +782,13 @@ public final class MagicSort<T> {
 
         final E[] arrayArray = (E[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[indexer.getIndex(array[i]) - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -603,6 +796,7 @@ public final class MagicSort<T> {
             final E e = array[i];
             arrayArray[--count[indexer.getIndex(e) - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
@@ -625,9 +819,13 @@ public final class MagicSort<T> {
 
         final E[] arrayArray = (E[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[indexer.getIndex(array[i]) - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -635,6 +833,7 @@ public final class MagicSort<T> {
             final E e = array[i];
             arrayArray[length_dec - --count[indexer.getIndex(e) - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
@@ -655,9 +854,13 @@ public final class MagicSort<T> {
 
         final E[] arrayArray = (E[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i].getIndex() - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -665,6 +868,7 @@ public final class MagicSort<T> {
             final E e = array[i];
             arrayArray[--count[e.getIndex() - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
@@ -686,9 +890,13 @@ public final class MagicSort<T> {
 
         final E[] arrayArray = (E[]) Array.newInstance(array.getClass().getComponentType(), length);
 
+        final CountingSortEvent histogram = CountingSortEvent.start();
         for (int i = 0; i < length; ++i) {
             ++count[array[i].getIndex() - min];
         }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
         for (int i = 1; i < size; ++i) {
             count[i] = count[i] + count[i - 1];
         }
@@ -696,9 +904,218 @@ public final class MagicSort<T> {
             final E e = array[i];
             arrayArray[length_dec - --count[array[i].getIndex() - min]] = e;
         }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
         return arrayArray;
     }
 
+    /**
+     * 是否可以為每種比較器類別產生專用的排序核心。需要Java 15以上的版本；不支援時，啟用setSpecializedKernels的排序會共用同一個核心，結果不變。
+     *
+     * @return 傳回是否可以產生專用的排序核心
+     */
+    public static boolean isSpecializedKernelSupported() {
+        return ComparatorKernels.isSupported();
+    }
+
+    /**
+     * 基數排序法，遞增排序double陣列。不使用比較，也不需要額外的記憶體，適合排序大量的浮點數。順序與Double.compare相同：-0.0排在0.0之前，NaN排在正無限大之後，所有的NaN都視為相等。
+     *
+     * @param array 傳入要排序的陣列
+     */
+    public static void radixSort(final double[] array) {
+        radixSort(array, 0, array.length);
+    }
+
+    /**
+     * 基數排序法，遞增排序double陣列的某範圍。每個元素會轉成保持順序的long鍵值(正數翻轉符號位元，負數翻轉所有位元)，再從最高的位元組開始，在原地將元素分到256個桶子中(American flag sort)，每個桶子再用下一個位元組排序。所有元素的某個位元組都相同時會跳過這一趟。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    public static void radixSort(final double[] array, final int start, final int end) {
+        if (end - start > 1) {
+            final int levels = Long.SIZE / RADIX_BITS;
+            radixSort(array, start, end, Long.SIZE - RADIX_BITS, new int[levels][RADIX + 1], new int[levels][RADIX]);
+        }
+    }
+
+    /**
+     * 基數排序法，遞增排序float陣列。不使用比較，也不需要額外的記憶體，適合排序大量的浮點數。順序與Float.compare相同：-0.0排在0.0之前，NaN排在正無限大之後，所有的NaN都視為相等。
+     *
+     * @param array 傳入要排序的陣列
+     */
+    public static void radixSort(final float[] array) {
+        radixSort(array, 0, array.length);
+    }
+
+    /**
+     * 基數排序法，遞增排序float陣列的某範圍。每個元素會轉成保持順序的int鍵值，再從最高的位元組開始在原地排序。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @see #radixSort(double[], int, int)
+     */
+    public static void radixSort(final float[] array, final int start, final int end) {
+        if (end - start > 1) {
+            final int levels = Integer.SIZE / RADIX_BITS;
+            radixSort(array, start, end, Integer.SIZE - RADIX_BITS, new int[levels][RADIX + 1], new int[levels][RADIX]);
+        }
+    }
+
+    /**
+     * 將double轉成保持順序的long鍵值，鍵值的大小順序與Double.compare相同。
+     *
+     * @param value 傳入數值
+     * @return 傳回鍵值
+     */
+    private static long radixKey(final double value) {
+        final long bits = Double.doubleToLongBits(value); // 所有的NaN都會轉成同一個值，排在正無限大之後
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * 將float轉成保持順序的int鍵值，鍵值的大小順序與Float.compare相同。
+     *
+     * @param value 傳入數值
+     * @return 傳回鍵值
+     */
+    private static int radixKey(final float value) {
+        final int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+    }
+
+    /**
+     * 基數排序法的一趟，在原地將元素依照鍵值的某個位元組分到桶子中，再排序每個桶子。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param shift 傳入位元組在鍵值中的位置
+     * @param counts 傳入每一趟使用的桶子邊界陣列
+     * @param nexts 傳入每一趟使用的桶子寫入位置陣列
+     */
+    private static void radixSort(final double[] array, final int start, final int end, final int shift, final int[][] counts, final int[][] nexts) {
+        if (end - start <= RADIX_INSERTION_THRESHOLD) {
+            for (int i = start + 1; i < end; ++i) {
+                final double e = array[i];
+                final long key = radixKey(e);
+                int j = i - 1;
+                while (j >= start && radixKey(array[j]) > key) {
+                    array[j + 1] = array[j];
+                    --j;
+                }
+                array[j + 1] = e;
+            }
+            return;
+        }
+        final int level = shift / RADIX_BITS;
+        final int[] count = counts[level];
+        final int[] next = nexts[level];
+        Arrays.fill(count, 0);
+        for (int i = start; i < end; ++i) {
+            ++count[(int) ((radixKey(array[i]) ^ Long.MIN_VALUE) >>> shift & (RADIX - 1)) + 1];
+        }
+        if (count[(int) ((radixKey(array[start]) ^ Long.MIN_VALUE) >>> shift & (RADIX - 1)) + 1] == end - start) { // 所有元素的這個位元組都相同，跳過這一趟
+            if (shift > 0) {
+                radixSort(array, start, end, shift - RADIX_BITS, counts, nexts);
+            }
+            return;
+        }
+        count[0] = start;
+        for (int b = 1; b <= RADIX; ++b) {
+            count[b] += count[b - 1]; // count[b]為第b個桶子的起點位置
+        }
+        System.arraycopy(count, 0, next, 0, RADIX);
+        for (int b = 0; b < RADIX; ++b) {
+            final int bucketEnd = count[b + 1];
+            while (next[b] < bucketEnd) { // 沿著置換的循環，將元素放到它所屬的桶子中
+                double e = array[next[b]];
+                int digit = (int) ((radixKey(e) ^ Long.MIN_VALUE) >>> shift & (RADIX - 1));
+                while (digit != b) {
+                    final double t = array[next[digit]];
+                    array[next[digit]++] = e;
+                    e = t;
+                    digit = (int) ((radixKey(e) ^ Long.MIN_VALUE) >>> shift & (RADIX - 1));
+                }
+                array[next[b]++] = e;
+            }
+        }
+        if (shift > 0) {
+            for (int b = 0; b < RADIX; ++b) {
+                if (count[b + 1] - count[b] > 1) {
+                    radixSort(array, count[b], count[b + 1], shift - RADIX_BITS, counts, nexts);
+                }
+            }
+        }
+    }
+
+    /**
+     * 基數排序法的一趟，在原地將元素依照鍵值的某個位元組分到桶子中，再排序每個桶子。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param shift 傳入位元組在鍵值中的位置
+     * @param counts 傳入每一趟使用的桶子邊界陣列
+     * @param nexts 傳入每一趟使用的桶子寫入位置陣列
+     */
+    private static void radixSort(final float[] array, final int start, final int end, final int shift, final int[][] counts, final int[][] nexts) {
+        if (end - start <= RADIX_INSERTION_THRESHOLD) {
+            for (int i = start + 1; i < end; ++i) {
+                final float e = array[i];
+                final int key = radixKey(e);
+                int j = i - 1;
+                while (j >= start && radixKey(array[j]) > key) {
+                    array[j + 1] = array[j];
+                    --j;
+                }
+                array[j + 1] = e;
+            }
+            return;
+        }
+        final int level = shift / RADIX_BITS;
+        final int[] count = counts[level];
+        final int[] next = nexts[level];
+        Arrays.fill(count, 0);
+        for (int i = start; i < end; ++i) {
+            ++count[((radixKey(array[i]) ^ Integer.MIN_VALUE) >>> shift & (RADIX - 1)) + 1];
+        }
+        if (count[((radixKey(array[start]) ^ Integer.MIN_VALUE) >>> shift & (RADIX - 1)) + 1] == end - start) { // 所有元素的這個位元組都相同，跳過這一趟
+            if (shift > 0) {
+                radixSort(array, start, end, shift - RADIX_BITS, counts, nexts);
+            }
+            return;
+        }
+        count[0] = start;
+        for (int b = 1; b <= RADIX; ++b) {
+            count[b] += count[b - 1]; // count[b]為第b個桶子的起點位置
+        }
+        System.arraycopy(count, 0, next, 0, RADIX);
+        for (int b = 0; b < RADIX; ++b) {
+            final int bucketEnd = count[b + 1];
+            while (next[b] < bucketEnd) { // 沿著置換的循環，將元素放到它所屬的桶子中
+                float e = array[next[b]];
+                int digit = (radixKey(e) ^ Integer.MIN_VALUE) >>> shift & (RADIX - 1);
+                while (digit != b) {
+                    final float t = array[next[digit]];
+                    array[next[digit]++] = e;
+                    e = t;
+                    digit = (radixKey(e) ^ Integer.MIN_VALUE) >>> shift & (RADIX - 1);
+                }
+                array[next[b]++] = e;
+            }
+        }
+        if (shift > 0) {
+            for (int b = 0; b < RADIX; ++b) {
+                if (count[b + 1] - count[b] > 1) {
+                    radixSort(array, count[b], count[b + 1], shift - RADIX_BITS, counts, nexts);
+                }
+            }
+        }
+    }
+
     /**
      * 將基本資料型態的陣列轉換成成包裝之後的陣列。
      *
@@ -790,6 +1207,23 @@ public final class MagicSort<T> {
      * @param array 傳入陣列
      * @return 傳回包裝後的陣列
      */
+    public static Double[] boxArray(final double[] array) {
+        final int length = array.length;
+        final Double[] outArray = new Double[length];
+        for (int i = 0; i < length; ++i) {
+            outArray[i] = array[i];
+        }
+        return outArray;
+    }
+
+    /**
+     * 複製包裝後的double陣列。這個方法的參數型態寫錯了，並不會包裝基本資料型態的陣列。
+     *
+     * @param array 傳入陣列
+     * @return 傳回複製的陣列
+     * @deprecated 請使用boxArray(double[])
+     */
+    @Deprecated
     public static Double[] boxArray(final Double[] array) {
 //        return Arrays.stream(array).boxed().toArray(Double[]::new);
 
@@ -897,6 +1331,234 @@ public final class MagicSort<T> {
         return outArray;
     }
 
+    /**
+     * 檢查置換是否有效，並取得記錄每個位置是否已經處理過的陣列。
+     *
+     * @param length 傳入陣列長度
+     * @param permutation 傳入置換
+     * @return 傳回全部都是false的陣列
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到length-1的置換時拋出
+     */
+    private static boolean[] checkPermutation(final int length, final int[] permutation) {
+        if (permutation.length != length) {
+            throw new IllegalArgumentException("permutation length " + permutation.length + " does not match array length " + length);
+        }
+        final boolean[] seen = new boolean[length];
+        for (int i = 0; i < length; ++i) {
+            final int p = permutation[i];
+            if (p < 0 || p >= length || seen[p]) {
+                throw new IllegalArgumentException("not a permutation: " + p + " at " + i);
+            }
+            seen[p] = true;
+        }
+        Arrays.fill(seen, false);
+        return seen;
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param <E> 陣列的型態
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static <E> void applyPermutation(final E[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final E first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final long[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final long first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final int[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final int first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final short[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final short first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final byte[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final byte first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final double[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final double first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
+    /**
+     * 在原地依照置換重新排列陣列，完成後array[i]會是原本的array[permutation[i]]，因此可以用argsort取得的置換同時重新排列多個相關的陣列。會沿著置換的循環搬移元素，每個元素只搬移一次，除了記錄已經處理過的位置之外，不需要複製陣列。
+     *
+     * @param array 傳入要重新排列的陣列
+     * @param permutation 傳入置換，不會被修改
+     * @throws IllegalArgumentException 置換的長度與陣列不同，或不是0到array.length-1的置換時拋出
+     */
+    public static void applyPermutation(final float[] array, final int[] permutation) {
+        final int length = array.length;
+        final boolean[] placed = checkPermutation(length, permutation);
+        for (int i = 0; i < length; ++i) {
+            if (placed[i]) {
+                continue;
+            }
+            final float first = array[i];
+            int j = i;
+            while (true) { // 沿著循環將每個位置需要的元素搬過來
+                placed[j] = true;
+                final int k = permutation[j];
+                if (k == i) {
+                    array[j] = first;
+                    break;
+                }
+                array[j] = array[k];
+                j = k;
+            }
+        }
+    }
+
     /**
      * 印出陣列所有元素。
      *
@@ -972,7 +1634,12 @@ public final class MagicSort<T> {
         test(sort, array, Algorithm.BUBBLESORT_OPTIMIZED);
         test(sort, array, Algorithm.EXCHANGESORT);
         test(sort, array, Algorithm.MERGESORT);
+        test(sort, array, Algorithm.NATURAL_MERGESORT);
+        test(sort, array, Algorithm.MERGE_INSERTION);
+        test(sort, array, Algorithm.AUTO);
         test(sort, array, Algorithm.QUICKSORT_OPTIMIZED);
+        test(sort, array, Algorithm.BUCKETSORT);
+        test(sort, array, Algorithm.QUICKSORT_3WAY);
         test(sort, array, Algorithm.QUICKSORT_MULTITHREAD);
         test(sort, array, Algorithm.QUICKSORT);
 
@@ -988,7 +1655,12 @@ public final class MagicSort<T> {
         test(sort, array, Algorithm.BUBBLESORT_OPTIMIZED);
         test(sort, array, Algorithm.EXCHANGESORT);
         test(sort, array, Algorithm.MERGESORT);
+        test(sort, array, Algorithm.NATURAL_MERGESORT);
+        test(sort, array, Algorithm.MERGE_INSERTION);
+        test(sort, array, Algorithm.AUTO);
         test(sort, array, Algorithm.QUICKSORT_OPTIMIZED);
+        test(sort, array, Algorithm.BUCKETSORT);
+        test(sort, array, Algorithm.QUICKSORT_3WAY);
         test(sort, array, Algorithm.QUICKSORT_MULTITHREAD);
         test(sort, array, Algorithm.QUICKSORT);
 
@@ -1002,18 +1674,82 @@ public final class MagicSort<T> {
         test(sort, array, Algorithm.BUBBLESORT_OPTIMIZED);
         test(sort, array, Algorithm.EXCHANGESORT);
         test(sort, array, Algorithm.MERGESORT);
+        test(sort, array, Algorithm.NATURAL_MERGESORT);
+        test(sort, array, Algorithm.MERGE_INSERTION);
+        test(sort, array, Algorithm.AUTO);
         test(sort, array, Algorithm.QUICKSORT_OPTIMIZED);
+        test(sort, array, Algorithm.BUCKETSORT);
+        test(sort, array, Algorithm.QUICKSORT_3WAY);
         test(sort, array, Algorithm.QUICKSORT_MULTITHREAD);
         test(sort, array, Algorithm.QUICKSORT);
-    }
 
-    /**
-     * 程式進入點，自動執行自我測試程式。
+        System.out.println("重複元素陣列產生中......\n");
+
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = (double) (int) (Math.random() * 16);
+        }
+
+        test(sort, array, Algorithm.MERGESORT);
+        test(sort, array, Algorithm.NATURAL_MERGESORT);
+        test(sort, array, Algorithm.MERGE_INSERTION);
+        test(sort, array, Algorithm.AUTO);
+        test(sort, array, Algorithm.QUICKSORT_OPTIMIZED);
+        test(sort, array, Algorithm.BUCKETSORT);
+        test(sort, array, Algorithm.QUICKSORT_3WAY);
+        test(sort, array, Algorithm.QUICKSORT_MULTITHREAD);
+
+        testPrimitiveSort(array.length);
+    }
+
+    /**
+     * 測試PrimitiveSort排序int、long和float陣列的結果是否與Arrays.sort完全相同，有使用向量化排序核心時也用來確認它與純量的排序結果相同。
      *
-     * @param args 不需傳入參數
+     * @param length 傳入陣列長度
+     * @return 傳回排序是否成功
+     */
+    private static boolean testPrimitiveSort(final int length) {
+        System.out.println("測試PrimitiveSort(".concat(PrimitiveSort.getKernelName()).concat(")"));
+        final Random random = new Random();
+        final int[] ints = new int[length];
+        final long[] longs = new long[length];
+        final float[] floats = new float[length];
+        for (int i = 0; i < length; ++i) {
+            ints[i] = random.nextInt();
+            longs[i] = random.nextLong();
+            final int special = random.nextInt(16);
+            floats[i] = special == 0 ? Float.NaN : special == 1 ? -0.0f : special == 2 ? 0.0f : random.nextFloat() - 0.5f;
+        }
+        final long startTime = System.currentTimeMillis();
+        final int[] sortedInts = ints.clone();
+        PrimitiveSort.sort(sortedInts);
+        final long[] sortedLongs = longs.clone();
+        PrimitiveSort.sort(sortedLongs);
+        final float[] sortedFloats = floats.clone();
+        PrimitiveSort.sort(sortedFloats);
+        final long endTime = System.currentTimeMillis();
+        Arrays.sort(ints);
+        Arrays.sort(longs);
+        Arrays.sort(floats);
+        boolean sorted = Arrays.equals(ints, sortedInts) && Arrays.equals(longs, sortedLongs);
+        for (int i = 0; sorted && i < length; ++i) {
+            sorted = Float.floatToRawIntBits(floats[i]) == Float.floatToRawIntBits(sortedFloats[i]);
+        }
+        System.out.println(sorted + " " + (endTime - startTime) + " ms\n");
+        return sorted;
+    }
+
+    /**
+     * 程式進入點，執行類似GNU sort的命令列程式。若傳入--self-test參數，則執行自我測試程式。
+     *
+     * @param args 傳入命令列參數
+     * @see SortCommand
      */
     public static void main(final String[] args) {
-        autoTestMyself();
+        if (args.length == 1 && args[0].equals("--self-test")) {
+            autoTestMyself();
+        } else {
+            SortCommand.main(args);
+        }
     }
 
     // -----類別列舉-----
@@ -1026,7 +1762,7 @@ public final class MagicSort<T> {
          */
         QUICKSORT_MULTITHREAD,
         /**
-         * 改良版、無遞迴的快速排序法，採用隨機pivot並在元素數量不超過7個時使用選擇排序法，在大多數的案例中都可以有很好的成效，為預設排序法。
+         * 改良版、無遞迴的快速排序法，採用隨機pivot並在元素數量不超過小範圍排序門檻(預設為12個)時使用排序網路，在大多數的案例中都可以有很好的成效，為預設排序法。
          */
         QUICKSORT_OPTIMIZED,
         /**
@@ -1056,28 +1792,61 @@ public final class MagicSort<T> {
         /**
          * 合併排序法，在所有案例中都有好的成效。
          */
-        MERGESORT
+        MERGESORT,
+        /**
+         * 三路分割(Bentley-McIlroy)、無遞迴的快速排序法，採用隨機pivot，會將與pivot相等的元素集中在中間，之後不再排序它們，因此在有大量重複元素的資料中可以維持O(n log n)，所有元素都相同時只需O(n)。
+         */
+        QUICKSORT_3WAY,
+        /**
+         * 自然合併排序法，會先找出資料中已經遞增或遞減的區段，太短的區段用插入排序法延長，再將相鄰的區段兩兩合併，因此在已經部分排序的資料中只需要很少的比較次數，已經排序完成時只需O(n)。
+         */
+        NATURAL_MERGESORT,
+        /**
+         * 計數排序法，只適用於使用預設排序方式、元素都是Integer、Long、Short或Byte而且數值範圍不超過資料長度兩倍的資料，只需O(n)，且相等的元素會保持原本的順序。不適用時會使用QUICKSORT_OPTIMIZED。
+         */
+        COUNTINGSORT,
+        /**
+         * 桶子排序法，只適用於使用預設排序方式、元素都是Double、Float、Integer、Long、Short或Byte的資料。會依照數值將元素平均分到約n/4個桶子中，再用排序網路或三路分割的快速排序法排序每個桶子，數值平均分布時只需O(n)，比較次數也遠少於快速排序法。數值範圍可以用setBucketRange指定，否則排序前會先找出最小值和最大值。不適用時(包含所有的數值都相同時)會使用QUICKSORT_3WAY。
+         */
+        BUCKETSORT,
+        /**
+         * 合併插入排序法(Ford-Johnson)，比較次數接近資訊理論的下限log<sub>2</sub>(n!)，是目前已知比較次數最少的通用排序演算法之一。元素先兩兩比較，遞迴地排序每一對中較大的元素，再依照Jacobsthal數的順序用二分搜尋插入較小的元素，讓每次搜尋的範圍剛好是2<sup>k</sup>-1個元素。搬移次數為O(n<sup>2</sup>)，也不是穩定排序，適合比較器需要讀取檔案、解析內容或透過網路比較，比較的成本遠大於搬移的資料。比較次數可以在統計模式中取得。
+         */
+        MERGE_INSERTION,
+        /**
+         * 自動選擇演算法，排序前會先取樣分析資料的長度、已排序的程度、重複元素的比例和元素的型態，再從其他的演算法中挑選最適合的一個。實際使用的演算法可以用getResolvedAlgorithm取得。
+         */
+        AUTO
     }
 
     // -----物件變數-----
     private T[] data; //資料
     private boolean clonable; //排序前是否先複製資料(若為true，排序將不會動到原始的資料順序，排序結果需用getData來取得)
-    private AtomicInteger sortedLength = new AtomicInteger(); //儲存已排序的長度
-    private int sortsLength; //儲存總共要排序的長度
+    private final ProgressTracker progress = new ProgressTracker(); //儲存排序進度
+    private final AtomicInteger pendingTasks = new AtomicInteger(); //儲存多執行緒排序中尚未完成的工作數量
+    private final AtomicReference<Throwable> parallelFailure = new AtomicReference<>(); //儲存多執行緒排序中第一個發生的錯誤
+    private CancellationToken cancellationToken; //儲存取消排序的標記
+    private long timeout; //儲存排序的時間限制(奈秒)，0表示沒有限制
+    private long deadline; //儲存這次排序的截止時間(System.nanoTime)
+    private volatile boolean cancelled; //儲存這次排序是否已被取消
+    private volatile SortCancelledException.Reason cancelReason; //儲存這次排序被取消的原因
     private boolean sorting; //儲存是否正在排序中
-    private ExecutorService executorService; // 執行緒池
+    private SortScheduler scheduler; //儲存多執行緒排序使用的排程器，若為null，則使用預設的排程器
+    private SortScheduler activeScheduler; //儲存這次多執行緒排序使用的排程器
     private Algorithm algorithm = Algorithm.QUICKSORT_OPTIMIZED; //儲存排序時使用的演算法
+    private int smallSortThreshold = DEFAULT_SMALL_SORT_THRESHOLD; //儲存快速排序改用排序網路的元素數量上限
+    private volatile Algorithm resolvedAlgorithm; //儲存最近一次排序實際使用的演算法
+    private long[] countingRange; //儲存AUTO演算法分析時取得的數值範圍，計數排序時使用
+    private double bucketMin = Double.NaN; //儲存桶子排序的數值範圍最小值，NaN表示排序前自動找出
+    private double bucketMax = Double.NaN; //儲存桶子排序的數值範圍最大值，NaN表示排序前自動找出
+    private boolean parallelBuckets; //儲存桶子排序時是否用多執行緒排序桶子
+    private double[] bucketRange; //儲存這次桶子排序使用的數值範圍
     private MagicSortCallback<? super T> callback; //非同步回呼介面
-    private Comparator<? super T> comparator = new Comparator<T>() { //預設排序方式
-
-        @Override
-        public int compare(final T t1, final T t2) {
-            if (t1 instanceof Comparable && t2 instanceof Comparable) {
-                return ((Comparable) t1).compareTo(t2);
-            }
-            return t1.toString().compareTo(t2.toString()); //轉成字串後使用自然排序
-        }
-    };
+    private boolean statisticsEnabled; //儲存是否啟用統計模式
+    private SortStatistics statistics; //儲存最近一次排序的統計資料，沒有啟用統計模式時為null
+    private Comparator<? super T> comparator = NATURAL_ORDER; //儲存排序方式
+    private ToLongFunction<? super T> prefixFunction; //儲存鍵值前綴函數，若為null，則只使用比較器
+    private boolean specializedKernels; //儲存是否為每種比較器類別使用專用的排序核心
 
     // -----建構子-----
     /**
@@ -1155,6 +1924,60 @@ public final class MagicSort<T> {
         return comparator;
     }
 
+    /**
+     * 設定鍵值前綴函數。前綴必須與比較器的順序一致：若元素a的前綴小於元素b的前綴(以有號長整數比較)，則比較器也必須判定a小於b，前綴相同時則不限制比較的結果。設定之後，排序會先用PrimitiveSort排序由(前綴, 索引)組成的陣列，再依照索引重新排列元素，只有前綴相同的元素才會使用比較器，以設定的演算法排序。比較器很慢，而前綴大多數時候就能決定順序時，比較器的呼叫次數可以減少好幾個數量級。
+     * <p>
+     * 前綴相同的元素會先維持原本的先後順序，因此使用穩定的演算法時，整個排序仍然是穩定的。前綴相同的區段不超過小範圍排序門檻時使用插入排序法；AUTO、QUICKSORT_OPTIMIZED、QUICKSORT_MULTITHREAD、COUNTINGSORT和BUCKETSORT則會使用QUICKSORT_3WAY，因為前綴相同的元素往往也有很多重複。
+     * </p>
+     *
+     * @param prefixFunction 傳入鍵值前綴函數，若為null，則只使用比較器
+     * @see org.magiclen.magicsort.comparators.StringWithNumberComparator#prefix(String)
+     */
+    public synchronized void setPrefixFunction(final ToLongFunction<? super T> prefixFunction) {
+        this.prefixFunction = prefixFunction;
+    }
+
+    /**
+     * 使用排序計畫排序。計畫會成為比較器；第一個鍵值是基本型態時，也會設定計畫的鍵值前綴函數，排序時先依照第一個鍵值(包含遞減的鍵值)排序，只有第一個鍵值相同的元素才會比較其他的鍵值，否則清除鍵值前綴函數。
+     *
+     * @param plan 傳入排序計畫
+     * @see #setPrefixFunction(ToLongFunction)
+     */
+    public synchronized void setSortPlan(final SortPlan<? super T> plan) {
+        if (plan != null) {
+            this.comparator = plan;
+            this.prefixFunction = plan.getPrefixFunction();
+        }
+    }
+
+    /**
+     * 取得鍵值前綴函數。
+     *
+     * @return 傳回鍵值前綴函數，若沒有設定，傳回null
+     */
+    public ToLongFunction<? super T> getPrefixFunction() {
+        return prefixFunction;
+    }
+
+    /**
+     * 設定是否為每種比較器類別使用專用的排序核心。啟用之後，QUICKSORT_OPTIMIZED會改用依照比較器類別產生的排序核心，核心中呼叫比較器的位置只會看到一種類別，JIT可以將比較器內嵌，而不會因為不同的MagicSort物件使用不同的比較器而變成多型呼叫。核心第一次使用時才會產生，之後依照比較器類別快取。統計模式會包裝比較器，因此啟用統計模式時不會使用專用的核心。
+     *
+     * @param specializedKernels 傳入是否使用專用的排序核心
+     * @see #isSpecializedKernelSupported()
+     */
+    public synchronized void setSpecializedKernels(final boolean specializedKernels) {
+        this.specializedKernels = specializedKernels;
+    }
+
+    /**
+     * 取得是否為每種比較器類別使用專用的排序核心。
+     *
+     * @return 傳回是否使用專用的排序核心
+     */
+    public boolean isSpecializedKernels() {
+        return specializedKernels;
+    }
+
     /**
      * 設定要排序的陣列。
      *
@@ -1214,6 +2037,89 @@ public final class MagicSort<T> {
         return this.algorithm;
     }
 
+    /**
+     * 設定小範圍排序門檻。QUICKSORT_OPTIMIZED、QUICKSORT_3WAY和QUICKSORT_MULTITHREAD的區段元素數量不超過這個值時，不再分割，改用排序網路排序。
+     *
+     * @param smallSortThreshold 傳入門檻，會被限制在1到16之間
+     */
+    public synchronized void setSmallSortThreshold(final int smallSortThreshold) {
+        this.smallSortThreshold = Math.max(1, Math.min(SortingNetworks.MAX_SIZE, smallSortThreshold));
+    }
+
+    /**
+     * 取得小範圍排序門檻。
+     *
+     * @return 傳回門檻
+     */
+    public int getSmallSortThreshold() {
+        return smallSortThreshold;
+    }
+
+    /**
+     * 設定BUCKETSORT的數值範圍。範圍之外的元素會被放到最前面或最後面的桶子，排序結果仍然正確，只是會變慢。
+     *
+     * @param min 傳入最小值，若傳入NaN，則排序前自動找出數值範圍
+     * @param max 傳入最大值，若傳入NaN，則排序前自動找出數值範圍
+     * @throws IllegalArgumentException 範圍不是有限的數值，或是最小值不小於最大值時拋出
+     */
+    public synchronized void setBucketRange(final double min, final double max) {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            bucketMin = Double.NaN;
+            bucketMax = Double.NaN;
+            return;
+        }
+        if (!(min < max) || Double.isInfinite(max - min)) {
+            throw new IllegalArgumentException("invalid bucket range: " + min + " to " + max);
+        }
+        bucketMin = min;
+        bucketMax = max;
+    }
+
+    /**
+     * 取得BUCKETSORT的數值範圍最小值。
+     *
+     * @return 傳回最小值，NaN表示排序前自動找出
+     */
+    public double getBucketMin() {
+        return bucketMin;
+    }
+
+    /**
+     * 取得BUCKETSORT的數值範圍最大值。
+     *
+     * @return 傳回最大值，NaN表示排序前自動找出
+     */
+    public double getBucketMax() {
+        return bucketMax;
+    }
+
+    /**
+     * 設定BUCKETSORT是否在元素分到桶子之後，用排程器的多個執行緒同時排序不同的桶子。AUTO演算法在資料量大且排程器有多個執行緒時一定會使用多執行緒。
+     *
+     * @param parallelBuckets 傳入是否用多執行緒排序桶子
+     */
+    public synchronized void setParallelBuckets(final boolean parallelBuckets) {
+        this.parallelBuckets = parallelBuckets;
+    }
+
+    /**
+     * 取得BUCKETSORT是否用多執行緒排序桶子。
+     *
+     * @return 傳回是否用多執行緒排序桶子
+     */
+    public boolean isParallelBuckets() {
+        return parallelBuckets;
+    }
+
+    /**
+     * 取得最近一次排序實際使用的演算法。演算法為AUTO時，會傳回它所選擇的演算法。
+     *
+     * @return 傳回演算法，若還沒有排序過，傳回null
+     */
+    public Algorithm getResolvedAlgorithm() {
+        return resolvedAlgorithm;
+    }
+
     /**
      * 是否正在排序中。
      *
@@ -1228,18 +2134,770 @@ public final class MagicSort<T> {
      *
      * @return 傳回陣列是否已經排序完畢。
      */
-    public synchronized boolean isSorted() {
-        final int length = data.length;
-        for (int i = 1; i < length; ++i) {
-            final T a = data[i - 1];
-            final T b = data[i];
-            if (compare(a, b) > 0) {
+    public boolean isSorted() {
+        return isSorted(0, data.length);
+    }
+
+    /**
+     * 某範圍內是否已經排序完畢。資料量大的時候，會將範圍分段交給排程器平行檢查，任何一段發現沒有排序時，其他段也會提早結束。
+     *
+     * @param start 檢查起點位置
+     * @param end 檢查終點位置
+     * @return 傳回範圍內是否已經排序完畢
+     */
+    public synchronized boolean isSorted(final int start, final int end) {
+        final int length = end - start;
+        final SortScheduler s = scheduler != null ? scheduler : SortScheduler.getDefault();
+        final int chunks = Math.min(s.getParallelism(), length / PARALLEL_CHECK_CHUNK);
+        if (chunks <= 1) {
+            return isSortedRange(start, end, null);
+        }
+        final AtomicBoolean unsorted = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(chunks - 1);
+        for (int c = 1; c < chunks; ++c) {
+            final int cs = start + (int) ((long) length * c / chunks) - 1; //與前一段重疊一個元素，才會比較到兩段之間的元素
+            final int ce = start + (int) ((long) length * (c + 1) / chunks);
+            final Runnable task = () -> {
+                try {
+                    if (!isSortedRange(cs, ce, unsorted)) {
+                        unsorted.set(true);
+                    }
+                } catch (final Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                    unsorted.set(true);
+                } finally {
+                    latch.countDown();
+                }
+            };
+            if (!s.trySubmit(task)) {
+                task.run();
+            }
+        }
+        try {
+            if (!isSortedRange(start, start + (int) ((long) length / chunks), unsorted)) {
+                unsorted.set(true);
+            }
+        } catch (final RuntimeException | Error ex) {
+            failure.compareAndSet(null, ex);
+            unsorted.set(true);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt(); //保留中斷狀態
+        }
+        final Throwable ex = failure.get();
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        return !unsorted.get();
+    }
+
+    /**
+     * 檢查某範圍內是否已經排序完畢。
+     *
+     * @param start 檢查起點位置
+     * @param end 檢查終點位置
+     * @param unsorted 傳入其他段是否已經發現沒有排序的旗標，若為null，則不檢查
+     * @return 傳回範圍內是否已經排序完畢，若因為其他段已經發現沒有排序而提早結束，也會傳回true
+     */
+    private boolean isSortedRange(final int start, final int end, final AtomicBoolean unsorted) {
+        for (int i = start + 1; i < end; ++i) {
+            if (unsorted != null && (i & PROGRESS_MASK) == 0 && unsorted.get()) {
+                return true;
+            }
+            if (compare(data[i - 1], data[i]) > 0) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * 精確分析資料已排序的程度，需要O(n log n)的比較次數和O(n)的額外空間。
+     *
+     * @return 傳回分析結果
+     */
+    public Presortedness analyze() {
+        return analyze(0, data.length, 0);
+    }
+
+    /**
+     * 分析某範圍內資料已排序的程度。遞增區段的數量和最長區段一定會掃描全部的資料來計算；逆序對的數量和不同數值的數量則可以只取樣估計，以減少需要的時間和空間。
+     *
+     * @param start 分析起點位置
+     * @param end 分析終點位置
+     * @param sampleSize 傳入計算逆序對和不同數值時的樣本數量，若小於2，或是不小於範圍的長度，則使用全部的資料精確計算
+     * @return 傳回分析結果
+     */
+    public synchronized Presortedness analyze(final int start, final int end, final int sampleSize) {
+        return Presortedness.analyze(data, start, end, comparator, sampleSize);
+    }
+
+    /**
+     * 分析資料，為AUTO演算法選擇實際使用的演算法。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @return 傳回選擇的演算法
+     */
+    @SuppressWarnings("unchecked")
+    private Algorithm chooseAlgorithm(final int start, final int end) {
+        final int length = end - start;
+        if (length <= MIN_RUN) {
+            return Algorithm.INSERTIONSORT;
+        }
+        if (comparator == NATURAL_ORDER) {
+            countingRange = findCountingRange(start, end);
+            if (countingRange != null) {
+                return Algorithm.COUNTINGSORT;
+            }
+        }
+        if (countRuns(start, end, length / MIN_RUN) <= length / MIN_RUN) { //區段的平均長度夠長
+            return Algorithm.NATURAL_MERGESORT;
+        }
+        final Object[] sample = new Object[Math.min(AUTO_SAMPLE_SIZE, length)];
+        final int step = length / sample.length;
+        for (int i = 0; i < sample.length; ++i) {
+            sample[i] = data[start + i * step];
+        }
+        final Comparator<Object> c = (Comparator<Object>) comparator;
+        Arrays.sort(sample, c);
+        int distinct = 1;
+        for (int i = 1; i < sample.length; ++i) {
+            if (c.compare(sample[i - 1], sample[i]) != 0) {
+                ++distinct;
+            }
+        }
+        if (distinct < sample.length) { //在樣本中就有重複的元素，表示不同數值的數量遠少於資料長度
+            return Algorithm.QUICKSORT_3WAY;
+        }
+        if (comparator == NATURAL_ORDER) {
+            bucketRange = findBucketRange(start, end);
+            if (bucketRange != null) {
+                final int[] slices = new int[AUTO_UNIFORM_SLICES];
+                final double scale = AUTO_UNIFORM_SLICES / (bucketRange[1] - bucketRange[0]);
+                int maxSlice = 0;
+                for (final Object o : sample) {
+                    maxSlice = Math.max(maxSlice, ++slices[bucketIndex(o, bucketRange[0], scale, AUTO_UNIFORM_SLICES)]);
+                }
+                if (maxSlice <= 3 * sample.length / AUTO_UNIFORM_SLICES) { //樣本大致平均分布在數值範圍中
+                    return Algorithm.BUCKETSORT;
+                }
+                bucketRange = null;
+            }
+        }
+        if (length >= AUTO_PARALLEL_THRESHOLD && (scheduler != null ? scheduler : SortScheduler.getDefault()).getParallelism() > 1) {
+            return Algorithm.QUICKSORT_MULTITHREAD;
+        }
+        return Algorithm.QUICKSORT_OPTIMIZED;
+    }
+
+    /**
+     * 計算遞增或遞減區段的數量，超過上限時就停止計算。
+     *
+     * @param start 計算起點位置
+     * @param end 計算終點位置
+     * @param limit 傳入上限
+     * @return 傳回區段數量，若超過上限，傳回上限加1
+     */
+    private int countRuns(final int start, final int end, final int limit) {
+        int runs = 0;
+        int i = start;
+        while (i < end) {
+            if (++runs > limit) {
+                break;
+            }
+            i = findRunEnd(i, end, false);
+        }
+        return runs;
+    }
+
+    /**
+     * 找出從指定位置開始的遞增(相等也算)或嚴格遞減區段的結尾。
+     *
+     * @param start 區段起點位置
+     * @param end 排序終點位置
+     * @param reverse 傳入是否將遞減區段反轉成遞增
+     * @return 傳回區段終點位置
+     */
+    private int findRunEnd(final int start, final int end, final boolean reverse) {
+        int i = start + 1;
+        if (i >= end) {
+            return end;
+        }
+        if (compare(data[i - 1], data[i]) > 0) { //嚴格遞減，反轉之後不會改變相等元素的順序
+            while (++i < end && compare(data[i - 1], data[i]) > 0) {
+            }
+            if (reverse) {
+                for (int l = start, r = i - 1; l < r; ++l, --r) {
+                    swap(l, r);
+                }
+            }
+        } else {
+            while (++i < end && compare(data[i - 1], data[i]) <= 0) {
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 自然合併排序法，會保持相等元素原本的順序。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void naturalMergeSort(final int start, final int end) {
+        final int length = end - start;
+        int[] runs = new int[16]; //各區段的終點位置
+        int runCount = 0;
+        int i = start;
+        long moves = 0; //搬移次數
+        while (i < end) {
+            checkCancellation();
+            int e = findRunEnd(i, end, true);
+            if (e - i < MIN_RUN && e < end) { //太短的區段用插入排序法延長
+                final int ne = Math.min(i + MIN_RUN, end);
+                for (int k = e; k < ne; ++k) {
+                    final T temp = data[k];
+                    int j = k - 1;
+                    while (j >= i && compare(data[j], temp) > 0) {
+                        data[j + 1] = data[j--];
+                    }
+                    data[j + 1] = temp;
+                    moves += k - j;
+                }
+                e = ne;
+            }
+            if (runCount == runs.length) {
+                runs = java.util.Arrays.copyOf(runs, runCount * 2);
+            }
+            runs[runCount++] = e;
+            i = e;
+        }
+        int passes = 0; //合併的總次數
+        for (int r = 1; r < runCount; r *= 2) {
+            ++passes;
+        }
+        if (passes == 0) {
+            progress.add(length);
+            return;
+        }
+        T[] src = data;
+        T[] dst = data.clone();
+        int pass = 0;
+        long reported = 0; //已回報的長度
+        while (runCount > 1) {
+            int newCount = 0;
+            int s = start;
+            for (int r = 0; r < runCount; r += 2) {
+                if (isCancellationRequested()) {
+                    if (src != data) { //src仍然保有完整的內容
+                        System.arraycopy(src, start, data, start, length);
+                    }
+                    checkCancellation();
+                }
+                final int m = runs[r];
+                final int e = r + 1 < runCount ? runs[r + 1] : m;
+                int l = s, k = s, rr = m;
+                while (l < m && rr < e) {
+                    if (compare(src[rr], src[l]) < 0) {
+                        dst[k++] = src[rr++];
+                    } else {
+                        dst[k++] = src[l++];
+                    }
+                }
+                System.arraycopy(src, l, dst, k, m - l);
+                System.arraycopy(src, rr, dst, k + m - l, e - rr);
+                runs[newCount++] = e;
+                s = e;
+            }
+            moves += length;
+            runCount = newCount;
+            final T[] t = src;
+            src = dst;
+            dst = t;
+            final long done = (long) length * ++pass / passes;
+            progress.add(done - reported);
+            reported = done;
+        }
+        if (src != data) {
+            System.arraycopy(src, start, data, start, length);
+            moves += length;
+        }
+        if (statistics != null) {
+            statistics.addMoves(moves);
+        }
+    }
+
+    /**
+     * 找出計數排序需要的數值範圍。只有在元素都是相同型態的Integer、Long、Short或Byte，且數值範圍不超過資料長度的兩倍時才能使用計數排序。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @return 傳回最小值和最大值，若無法使用計數排序，傳回null
+     */
+    private long[] findCountingRange(final int start, final int end) {
+        if (start >= end) {
+            return null;
+        }
+        final Object first = data[start];
+        if (!(first instanceof Integer || first instanceof Long || first instanceof Short || first instanceof Byte)) {
+            return null;
+        }
+        final Class<?> type = first.getClass();
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = start; i < end; ++i) {
+            final Object o = data[i];
+            if (o == null || o.getClass() != type) {
+                return null;
+            }
+            final long v = ((Number) o).longValue();
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+        }
+        final long range = max - min; //元素都是相同型態，最大只會溢位到Long的範圍之外
+        if (range < 0 || range >= 2L * (end - start) || range >= Integer.MAX_VALUE - 8) {
+            return null;
+        }
+        return new long[]{min, max};
+    }
+
+    /**
+     * 計數排序法，Out-of-place版本，會保留原本的元素物件和相等元素的順序。必須先用findCountingRange取得數值範圍。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void countingSort(final int start, final int end) {
+        final long[] range = countingRange;
+        countingRange = null;
+        final long min = range[0];
+        final int size = (int) (range[1] - min + 1);
+        final int length = end - start;
+        final int[] count = new int[size + 1];
+
+        final CountingSortEvent histogram = CountingSortEvent.start();
+        for (int i = start; i < end; ++i) {
+            ++count[(int) (((Number) data[i]).longValue() - min) + 1];
+        }
+        histogram.finish(CountingSortEvent.HISTOGRAM, length, size);
+        for (int i = 1; i < size; ++i) { //計算每個數值的開始位置
+            count[i] += count[i - 1];
+        }
+
+        final CountingSortEvent scatter = CountingSortEvent.start();
+        final T[] temp = java.util.Arrays.copyOfRange(data, start, end);
+        for (final T element : temp) {
+            data[start + count[(int) (((Number) element).longValue() - min)]++] = element;
+        }
+        scatter.finish(CountingSortEvent.SCATTER, length, size);
+        progress.add(length);
+        if (statistics != null) {
+            statistics.addMoves(2L * length);
+        }
+    }
+
+    /**
+     * 找出桶子排序需要的數值範圍。只有在元素都是相同型態的Double、Float、Integer、Long、Short或Byte時才能使用桶子排序。有設定數值範圍時會直接使用設定的範圍，否則使用有限數值中的最小值和最大值，NaN和無限大會被放到最前面或最後面的桶子。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @return 傳回最小值和最大值，若無法使用桶子排序，傳回null
+     */
+    private double[] findBucketRange(final int start, final int end) {
+        if (start >= end) {
+            return null;
+        }
+        final Object first = data[start];
+        if (!(first instanceof Double || first instanceof Float || first instanceof Integer || first instanceof Long || first instanceof Short || first instanceof Byte)) {
+            return null;
+        }
+        final Class<?> type = first.getClass();
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; ++i) {
+            final Object o = data[i];
+            if (o == null || o.getClass() != type) {
+                return null;
+            }
+            final double v = ((Number) o).doubleValue();
+            if (v < min && v != Double.NEGATIVE_INFINITY) {
+                min = v;
+            }
+            if (v > max && v != Double.POSITIVE_INFINITY) {
+                max = v;
+            }
+        }
+        if (!Double.isNaN(bucketMin)) {
+            return new double[]{bucketMin, bucketMax};
+        }
+        if (!(min < max) || Double.isInfinite(max - min)) { //所有的有限數值都相同，或是範圍太大
+            return null;
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * 計算元素所屬的桶子。數值越大，桶子的索引值越大，因此只需要排序每個桶子中的元素。
+     *
+     * @param element 傳入元素
+     * @param min 傳入數值範圍的最小值
+     * @param scale 傳入桶子數量除以數值範圍的值
+     * @param buckets 傳入桶子數量
+     * @return 傳回桶子的索引值
+     */
+    private static int bucketIndex(final Object element, final double min, final double scale, final int buckets) {
+        final double v = ((Number) element).doubleValue();
+        if (v != v) { // NaN排在最後面
+            return buckets - 1;
+        }
+        final double index = (v - min) * scale;
+        return index <= 0 ? 0 : index >= buckets ? buckets - 1 : (int) index;
+    }
+
+    /**
+     * 桶子排序法，先用一趟將元素依照數值分到約n/4個桶子中，再排序每個桶子。必須先用findBucketRange取得數值範圍。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param parallel 傳入是否用多執行緒排序桶子
+     */
+    private void bucketSort(final int start, final int end, final boolean parallel) {
+        final double[] range = bucketRange;
+        bucketRange = null;
+        final double min = range[0];
+        final int length = end - start;
+        final int buckets = Math.max(1, length / BUCKET_SIZE);
+        final double scale = buckets / (range[1] - min);
+        final int[] count = new int[buckets + 1];
+        for (int i = start; i < end; ++i) {
+            ++count[bucketIndex(data[i], min, scale, buckets) + 1];
+        }
+        for (int b = 1; b <= buckets; ++b) { //計算每個桶子的開始位置
+            count[b] += count[b - 1];
+        }
+        checkCancellation();
+
+        final int[] next = java.util.Arrays.copyOf(count, buckets);
+        final T[] temp = java.util.Arrays.copyOfRange(data, start, end);
+        for (final T element : temp) {
+            data[start + next[bucketIndex(element, min, scale, buckets)]++] = element;
+        }
+        if (statistics != null) {
+            statistics.addMoves(2L * length);
+        }
+
+        final SortScheduler s = scheduler != null ? scheduler : SortScheduler.getDefault();
+        final int chunks = parallel ? Math.min(4 * s.getParallelism(), length / PARALLEL_CHECK_CHUNK) : 1;
+        if (chunks <= 1) {
+            sortBuckets(start, count, 0, buckets);
+            return;
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(chunks - 1);
+        for (int c = 1; c < chunks; ++c) {
+            final int from = (int) ((long) buckets * c / chunks);
+            final int to = (int) ((long) buckets * (c + 1) / chunks);
+            final Runnable task = () -> {
+                try {
+                    if (statistics != null) {
+                        statistics.addParallelTask();
+                    }
+                    sortBuckets(start, count, from, to);
+                } catch (final Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    latch.countDown();
+                }
+            };
+            if (!s.trySubmit(task)) {
+                task.run();
+            }
+        }
+        try {
+            sortBuckets(start, count, 0, (int) ((long) buckets / chunks));
+        } catch (final RuntimeException | Error ex) {
+            failure.compareAndSet(null, ex);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt(); //保留中斷狀態
+        }
+        final Throwable ex = failure.get();
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+    }
+
+    /**
+     * 排序某些桶子中的元素。不超過小範圍排序門檻的桶子使用排序網路，較大的桶子使用三路分割的快速排序法。
+     *
+     * @param start 排序起點位置
+     * @param count 傳入每個桶子的開始位置(相對於排序起點位置)
+     * @param from 傳入第一個要排序的桶子
+     * @param to 傳入最後一個要排序的桶子的下一個
+     */
+    private void sortBuckets(final int start, final int[] count, final int from, final int to) {
+        int singles = 0; //不需要排序的元素數量
+        for (int b = from; b < to; ++b) {
+            if ((b & PROGRESS_MASK) == 0) {
+                checkCancellation();
+                progress.add(singles);
+                singles = 0;
+            }
+            final int s = start + count[b];
+            final int size = count[b + 1] - count[b];
+            if (size <= 1) {
+                singles += size;
+            } else if (size <= smallSortThreshold) {
+                networkSort(s, size);
+            } else {
+                quickSort3Way(s, s + size); //數值分布不平均時，大桶子中可能有很多重複的元素
+            }
+        }
+        progress.add(singles);
+    }
+
+    /**
+     * 鍵值前綴排序。先用PrimitiveSort排序由(前綴, 索引)組成的陣列，並依照索引重新排列元素，再用指定的演算法排序前綴相同的區段。只有前綴相同的元素才會使用比較器。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param algorithm 傳入排序前綴相同的區段時使用的演算法
+     */
+    private void prefixSort(final int start, final int end, final Algorithm algorithm) {
+        final int length = end - start;
+        final long[] keys = new long[length];
+        final int[] indexes = new int[length];
+        for (int i = 0; i < length; ++i) {
+            keys[i] = prefixFunction.applyAsLong(data[start + i]);
+            indexes[i] = i;
+        }
+        checkCancellation();
+        PrimitiveSort.sort(keys, indexes, 0, length);
+        for (int i = 0; i < length;) { //前綴相同的元素先恢復原本的先後順序
+            final int j = nextPrefix(keys, i, length);
+            if (j - i > 1) {
+                PrimitiveSort.sort(indexes, i, j);
+            }
+            i = j;
+        }
+        final T[] temp = Arrays.copyOfRange(data, start, end);
+        for (int i = 0; i < length; ++i) {
+            data[start + i] = temp[indexes[i]];
+        }
+        if (statistics != null) {
+            statistics.addMoves(2L * length);
+        }
+
+        int singles = 0; //不需要排序的元素數量
+        for (int i = 0; i < length;) {
+            final int j = nextPrefix(keys, i, length);
+            if (j - i == 1) {
+                ++singles;
+            } else {
+                progress.add(singles);
+                singles = 0;
+                checkCancellation();
+                sortTies(start + i, start + j, algorithm);
+            }
+            i = j;
+        }
+        progress.add(singles);
+    }
+
+    /**
+     * 找出下一個前綴不同的位置。
+     *
+     * @param keys 傳入排序後的前綴
+     * @param from 傳入區段的開始位置
+     * @param length 傳入前綴的數量
+     * @return 傳回第一個前綴與開始位置不同的位置，若都相同，傳回length
+     */
+    private static int nextPrefix(final long[] keys, final int from, final int length) {
+        final long key = keys[from];
+        int i = from + 1;
+        while (i < length && keys[i] == key) {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * 排序前綴相同的區段。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param algorithm 傳入演算法
+     */
+    private void sortTies(final int start, final int end, final Algorithm algorithm) {
+        if (end - start <= smallSortThreshold) {
+            insertionSort(start, end);
+            return;
+        }
+        switch (algorithm) {
+            case QUICKSORT:
+                quickSort(start, end);
+                break;
+            case SELECTIONSORT:
+                sellectionSort(start, end);
+                break;
+            case BUBBLESORT:
+                bubbleSort(start, end);
+                break;
+            case BUBBLESORT_OPTIMIZED:
+                bubbleSortOptimized(start, end);
+                break;
+            case EXCHANGESORT:
+                exchangeSort(start, end);
+                break;
+            case INSERTIONSORT:
+                insertionSort(start, end);
+                break;
+            case MERGESORT:
+                mergeSort(start, end);
+                break;
+            case NATURAL_MERGESORT:
+                naturalMergeSort(start, end);
+                break;
+            case MERGE_INSERTION:
+                mergeInsertionSort(start, end);
+                break;
+            default:
+                quickSort3Way(start, end);
+                break;
+        }
+    }
+
+    /**
+     * 合併插入排序法(Ford-Johnson)。只排序元素的位置，最後再一次將元素搬到排序後的位置。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void mergeInsertionSort(final int start, final int end) {
+        final int length = end - start;
+        final int[] ids = new int[length];
+        for (int i = 0; i < length; ++i) {
+            ids[i] = start + i;
+        }
+        final int[] order = mergeInsertion(ids);
+        final T[] temp = Arrays.copyOfRange(data, start, end);
+        for (int i = 0; i < length; ++i) {
+            data[start + i] = temp[order[i]];
+        }
+        if (statistics != null) {
+            statistics.addMoves(2L * length);
+        }
+    }
+
+    /**
+     * 合併插入排序法的遞迴實作。
+     *
+     * @param ids 傳入要排序的元素在資料陣列中的位置
+     * @return 傳回排序後的順序，第i個元素為排序後第i小的元素在ids中的位置
+     */
+    private int[] mergeInsertion(final int[] ids) {
+        final int n = ids.length;
+        if (n <= 1) {
+            progress.add(n);
+            return n == 0 ? new int[0] : new int[]{0};
+        }
+        final int half = n / 2;
+        final int[] larger = new int[half], smaller = new int[half]; //每一對中較大和較小的元素在ids中的位置
+        final int[] largerIds = new int[half];
+        for (int k = 0; k < half; ++k) {
+            final int a = 2 * k, b = a + 1;
+            if (compare(data[ids[a]], data[ids[b]]) > 0) {
+                larger[k] = a;
+                smaller[k] = b;
+            } else {
+                larger[k] = b;
+                smaller[k] = a;
+            }
+            largerIds[k] = ids[larger[k]];
+        }
+        checkCancellation();
+        final int[] pairs = mergeInsertion(largerIds); //依照較大的元素排序後的每一對
+
+        final int pend = n - half; //要插入的元素數量，包含落單的元素
+        final int[] chain = new int[n];
+        final int[] positions = new int[half]; //排序後第k對的較大元素在chain中的位置，只記錄目前這一組
+        int size = 0;
+        chain[size++] = smaller[pairs[0]]; //第1對的較小元素一定是最小的元素
+        for (int k = 0; k < half; ++k) {
+            chain[size++] = larger[pairs[k]];
+        }
+        progress.add(1);
+        long moves = 0; //搬移次數
+        int inserted = 1; //已插入的元素數量
+        for (int g = 2; inserted < pend; ++g) {
+            final int last = Math.min(((1 << (g + 1)) + ((g & 1) == 0 ? 1 : -1)) / 3, pend); //Jacobsthal數，這一組最後一個要插入的元素
+            for (int k = inserted; k < last && k < half; ++k) { //之前插入的元素都在第k對的較大元素之前
+                positions[k] = inserted + k;
+            }
+            for (int i = last - 1; i >= inserted; --i) { //由後往前插入，每個元素的搜尋範圍都不超過2^g-1
+                final int element;
+                final int limit;
+                if (i < half) {
+                    element = smaller[pairs[i]];
+                    limit = positions[i]; //只需要在同一對的較大元素之前搜尋
+                } else {
+                    element = n - 1; //落單的元素
+                    limit = size;
+                }
+                final T t = data[ids[element]];
+                int lo = 0, hi = limit;
+                while (lo < hi) {
+                    final int mid = (lo + hi) >>> 1;
+                    if (compare(t, data[ids[chain[mid]]]) < 0) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                System.arraycopy(chain, lo, chain, lo + 1, size - lo);
+                chain[lo] = element;
+                moves += size - lo + 1;
+                ++size;
+                for (int k = i - 1; k >= inserted && positions[k] >= lo; --k) { //只有這一組還沒插入的元素需要更新
+                    ++positions[k];
+                }
+            }
+            progress.add(last - inserted);
+            inserted = last;
+            checkCancellation();
+        }
+        if (statistics != null) {
+            statistics.addMoves(moves);
+        }
+        return chain;
+    }
+
     /**
      * 合併排序法，在所有案例中都有好的成效。
      *
@@ -1247,14 +2905,20 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void mergeSort(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
         final int length = end - start;
         final T[] temp = data.clone();
+        int passes = 0; //合併的總次數
+        for (int i = 1; i < length; i *= 2) {
+            ++passes;
+        }
+        int pass = 0;
+        long reported = 0; //已回報的長度
 
         for (int i = 1; i < length; i *= 2) {
             final int ii = i * 2;
             final int je = end - i;
             for (int j = start; j < je; j += ii) {
+                checkCancellation(); //每個區塊合併完成後，data和temp在這個區塊的內容相同，陣列仍是原本元素的排列
                 int e = j + ii;
                 if (e > end) {
                     e = end;
@@ -1278,9 +2942,14 @@ public final class MagicSort<T> {
                 }
                 System.arraycopy(data, j, temp, j, e - j);
             }
-            sortedLength.set(baseSortedLength + i);
+            final long done = (long) length * ++pass / passes; //每次合併的工作量都相同
+            progress.add(done - reported);
+            reported = done;
+        }
+        progress.add(length - reported);
+        if (statistics != null) {
+            statistics.addMoves((long) length * passes * 2); //每次合併都會寫入data再複製回temp
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
@@ -1290,17 +2959,26 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void insertionSort(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
+        int reported = 0; //已回報的長度
+        long moves = 0; //搬移次數
         for (int i = start + 1; i < end; ++i) {
+            checkCancellation();
             final T temp = data[i];
             int j = i - 1;
-            while (j >= 0 && compare(data[j], temp) > 0) {
+            while (j >= start && compare(data[j], temp) > 0) {
                 data[j + 1] = data[j--];
             }
             data[j + 1] = temp;
-            sortedLength.incrementAndGet();
+            moves += i - j; //往後移動的元素加上插入的元素
+            if ((i & PROGRESS_MASK) == 0) {
+                progress.add(i - start - reported);
+                reported = i - start;
+            }
+        }
+        progress.add(end - start - reported);
+        if (statistics != null) {
+            statistics.addMoves(moves);
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
@@ -1310,17 +2988,26 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void exchangeSort(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
+        int reported = 0; //已回報的長度
+        long swaps = 0; //交換次數
         final int e = end - 1;
         for (int i = start; i < e; ++i) {
+            checkCancellation();
             for (int j = i + 1; j <= e; ++j) {
                 if (compare(data[i], data[j]) > 0) {
                     swap(i, j);
+                    ++swaps;
                 }
             }
-            sortedLength.incrementAndGet();
+            if ((i & PROGRESS_MASK) == 0) {
+                progress.add(i - start - reported);
+                reported = i - start;
+            }
+        }
+        progress.add(end - start - reported);
+        if (statistics != null) {
+            statistics.addSwaps(swaps);
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
@@ -1330,17 +3017,20 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void bubbleSortOptimized(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
-
+        int reported = 0; //已回報的長度
+        long swaps = 0; //交換次數
         final int e = end - 1;
         int i = 0;
         while (true) {
+            checkCancellation();
             boolean sorted = true;
+            final int ss = start + i;
             final int ee = e - i;
-            for (int j = i; j < ee; ++j) {
+            for (int j = ss; j < ee; ++j) {
                 final int jj = j + 1;
                 if (compare(data[j], data[jj]) > 0) {
                     swap(j, jj);
+                    ++swaps;
                     sorted = false;
                 }
             }
@@ -1348,10 +3038,11 @@ public final class MagicSort<T> {
                 break;
             }
             sorted = true;
-            for (int j = ee - 1; j > i; --j) {
+            for (int j = ee - 1; j > ss; --j) {
                 final int jj = j - 1;
                 if (compare(data[j], data[jj]) < 0) {
                     swap(j, jj);
+                    ++swaps;
                     sorted = false;
                 }
             }
@@ -1359,9 +3050,16 @@ public final class MagicSort<T> {
                 break;
             }
             ++i;
-            sortedLength.incrementAndGet();
+            if ((i & PROGRESS_MASK) == 0) {
+                final int done = Math.min(i * 2, end - start); //每一輪會從兩端各排好一個元素
+                progress.add(done - reported);
+                reported = done;
+            }
+        }
+        progress.add(end - start - reported);
+        if (statistics != null) {
+            statistics.addSwaps(swaps);
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
@@ -1371,22 +3069,57 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void bubbleSort(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
-        for (int i = end - 1; i > 0; --i) {
+        int reported = 0; //已回報的長度
+        long swaps = 0; //交換次數
+        for (int i = end - 1; i > start; --i) {
+            checkCancellation();
             boolean sorted = true;
-            for (int j = 0; j < i; ++j) {
+            for (int j = start; j < i; ++j) {
                 final int jj = j + 1;
                 if (compare(data[j], data[jj]) > 0) {
                     swap(j, jj);
+                    ++swaps;
                     sorted = false;
                 }
             }
             if (sorted) {
                 break;
             }
-            sortedLength.incrementAndGet();
+            if ((i & PROGRESS_MASK) == 0) {
+                final int done = Math.min(end - i, end - start);
+                progress.add(done - reported);
+                reported = done;
+            }
+        }
+        progress.add(end - start - reported);
+        if (statistics != null) {
+            statistics.addSwaps(swaps);
+        }
+    }
+
+    /**
+     * 用排序網路排序很小的範圍。
+     *
+     * @param start 排序起點位置
+     * @param length 元素數量，不可超過SortingNetworks.MAX_SIZE
+     */
+    private void networkSort(final int start, final int length) {
+        final int[] network = SortingNetworks.get(length);
+        int swaps = 0; //交換次數
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final T ta = data[a], tb = data[b];
+            if (compare(ta, tb) > 0) {
+                data[a] = tb;
+                data[b] = ta;
+                ++swaps;
+            }
+        }
+        progress.add(length);
+        if (statistics != null) {
+            statistics.addSmallRangeSort();
+            statistics.addSwaps(swaps);
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
@@ -1396,9 +3129,11 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     private void sellectionSort(final int start, final int end) {
-        final int baseSortedLength = sortedLength.get();
+        int reported = 0; //已回報的長度
+        long swaps = 0; //交換次數
         final int e = end - 1;
         for (int i = start; i < e; ++i) {
+            checkCancellation();
             int temp = i;
             for (int j = i + 1; j <= e; ++j) {
                 if (compare(data[temp], data[j]) > 0) {
@@ -1408,20 +3143,29 @@ public final class MagicSort<T> {
 
             if (i != temp) {
                 swap(i, temp);
-                sortedLength.set(baseSortedLength + i - start + 1);
+                ++swaps;
             }
+            if ((i & PROGRESS_MASK) == 0) {
+                progress.add(i - start - reported);
+                reported = i - start;
+            }
+        }
+        progress.add(end - start - reported);
+        if (statistics != null) {
+            statistics.addSwaps(swaps);
         }
-        sortedLength.set(baseSortedLength + end - start);
     }
 
     /**
-     * 多執行緒、無遞迴的快速排序法，在多執行緒的機器下可以發揮很大的效用。
+     * 多執行緒、無遞迴的快速排序法，在多執行緒的機器下可以發揮很大的效用。分割後的子區段會交給排程器，長度小於直接排序門檻或是排程器的佇列已滿時，則直接在目前的執行緒上排序。
      *
      * @param start 排序起點位置
      * @param end 排序終點位置
+     * @param depth 分割的遞迴深度
      */
-    private void quickSortMultiThread(final int start, final int end) {
+    private void quickSortMultiThread(final int start, final int end, final int depth) {
         int s = start, e = end - 1;
+        int swaps = 0; //交換次數
         int tempSortedLength = (e - s + 1);
         final T x = data[s]; // pivot
         int l = s + 1;
@@ -1435,9 +3179,11 @@ public final class MagicSort<T> {
             }
             if (l < r) {
                 swap(l, r);
+                ++swaps;
             } else {
                 if (r > s) {
                     swap(r, s);
+                    ++swaps;
                 }
                 break;
             }
@@ -1451,27 +3197,118 @@ public final class MagicSort<T> {
         if (rl > 1) {
             tempSortedLength -= rl;
         }
-        if (ll > 1) {
-            executorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    quickSortMultiThread(ls, le + 1);
-                }
-            });
+        if (statistics != null) {
+            statistics.addPartition(swaps, depth);
         }
-        if (rl > 1) {
-            executorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    quickSortMultiThread(rs, re + 1);
+        final boolean leftInline = ll > 1 && !submitParallelTask(ls, le + 1, depth + 1);
+        final boolean rightInline = rl > 1 && !submitParallelTask(rs, re + 1, depth + 1);
+        progress.add(tempSortedLength);
+        if (leftInline) { //先交出另一個子區段，再直接排序
+            quickSortOptimized(ls, le + 1);
+        }
+        if (rightInline) {
+            quickSortOptimized(rs, re + 1);
+        }
+    }
+
+    /**
+     * 將多執行緒快速排序的子工作交給排程器。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param depth 分割的遞迴深度
+     * @return 傳回是否已交給排程器，若為false，呼叫者必須直接排序這個子區段
+     */
+    private boolean submitParallelTask(final int start, final int end, final int depth) {
+        if (activeScheduler.shouldInline(end - start)) {
+            return false;
+        }
+        pendingTasks.incrementAndGet();
+        if (activeScheduler.trySubmit(() -> runParallelTask(start, end, depth))) {
+            if (statistics != null) {
+                statistics.addParallelTask();
+            }
+            return true;
+        }
+        pendingTasks.decrementAndGet(); //目前的工作尚未完成，所以不會歸零
+        return false;
+    }
+
+    /**
+     * 執行多執行緒快速排序的一個工作。工作開始前會先檢查排序是否已被取消，若已取消則直接結束；工作中發生的錯誤會被記錄下來，並取消其他的工作。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param depth 分割的遞迴深度
+     */
+    private void runParallelTask(final int start, final int end, final int depth) {
+        final ParallelTaskEvent event = new ParallelTaskEvent();
+        event.begin();
+        try {
+            if (!isCancellationRequested()) {
+                quickSortMultiThread(start, end, depth);
+            }
+        } catch (final Throwable ex) {
+            parallelFailure.compareAndSet(null, ex);
+            cancelled = true;
+        } finally {
+            if (pendingTasks.decrementAndGet() == 0) { //子工作在這之前就已經計入，所以歸零時表示全部的工作都完成了
+                synchronized (pendingTasks) {
+                    pendingTasks.notifyAll();
                 }
-            });
+            }
+        }
+        if (event.shouldCommit()) {
+            event.start = start;
+            event.end = end;
+            event.depth = depth;
+            event.commit();
+        }
+    }
+
+    /**
+     * 判斷這次排序是否需要取消，會檢查cancel方法、CancellationToken、時間限制和目前執行緒的中斷狀態。
+     *
+     * @return 傳回是否需要取消
+     */
+    private boolean isCancellationRequested() {
+        if (cancelled) {
+            return true;
+        }
+        final SortCancelledException.Reason reason;
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            reason = SortCancelledException.Reason.CANCELLED;
+        } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            reason = SortCancelledException.Reason.TIMEOUT;
+        } else if (Thread.currentThread().isInterrupted()) {
+            reason = SortCancelledException.Reason.INTERRUPTED;
+        } else {
+            return false;
         }
-        if (this.sortedLength.addAndGet(tempSortedLength) == data.length) {
-            executorService.shutdown();
+        cancelReason = reason;
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * 檢查點，若這次排序需要取消，則拋出SortCancelledException。演算法只會在區段、回合或區塊的邊界呼叫這個方法，此時陣列仍是原本元素的排列。
+     */
+    private void checkCancellation() {
+        if (isCancellationRequested()) {
+            throw new SortCancelledException(getCancelReason());
         }
     }
 
+    /**
+     * 取得這次排序被取消的原因。
+     *
+     * @return 傳回取消的原因
+     */
+    private SortCancelledException.Reason getCancelReason() {
+        final SortCancelledException.Reason reason = cancelReason;
+        return reason == null ? SortCancelledException.Reason.CANCELLED : reason;
+    }
+
     /**
      * 無遞迴的快速排序法，在各方面表現普通。
      *
@@ -1485,10 +3322,11 @@ public final class MagicSort<T> {
         stack[++top] = start;
         stack[++top] = end - 1;
         while (top >= 0) {
-            int tempSortedLength = this.sortedLength.get();
+            checkCancellation();
             e = stack[top--];
             s = stack[top--];
-            tempSortedLength += (e - s + 1);
+            int tempSortedLength = (e - s + 1);
+            int swaps = 0; //交換次數
             final T x = data[s]; // pivot
             int l = s + 1;
             int r = e;
@@ -1501,9 +3339,11 @@ public final class MagicSort<T> {
                 }
                 if (l < r) {
                     swap(l, r);
+                    ++swaps;
                 } else {
                     if (r > s) {
                         swap(r, s);
+                        ++swaps;
                     }
                     break;
                 }
@@ -1518,7 +3358,10 @@ public final class MagicSort<T> {
             if (rl > 1) {
                 tempSortedLength -= rl;
             }
-            this.sortedLength.set(tempSortedLength);
+            progress.add(tempSortedLength);
+            if (statistics != null) {
+                statistics.addPartition(swaps, (top + 1) / 2 + 1); //包含目前的區段
+            }
             if (ll > 1) {
                 stack[++top] = ls;
                 stack[++top] = le;
@@ -1531,7 +3374,7 @@ public final class MagicSort<T> {
     }
 
     /**
-     * 改良版、無遞迴的快速排序法，採用隨機pivot並在元素數量不超過7個時使用選擇排序法，在大多數的案例中都可以有很好的成效，為預設排序法。
+     * 改良版、無遞迴的快速排序法，採用隨機pivot並在元素數量不超過小範圍排序門檻時使用排序網路，在大多數的案例中都可以有很好的成效，為預設排序法。
      *
      * @param start 排序起點位置
      * @param end 排序終點位置
@@ -1543,12 +3386,13 @@ public final class MagicSort<T> {
         stack[++top] = start;
         stack[++top] = end - 1;
         while (top >= 0) {
-            int tempSortedLength = this.sortedLength.get();
+            checkCancellation();
             e = stack[top--];
             s = stack[top--];
-            tempSortedLength += (e - s + 1);
+            int tempSortedLength = (e - s + 1);
             // 採用random pivot
             swap(random(s, e), s); // 先將random出來的pivot與最左邊交換
+            int swaps = 1; //交換次數
             final T x = data[s]; // pivot
             int l = s + 1;
             int r = e;
@@ -1561,9 +3405,11 @@ public final class MagicSort<T> {
                 }
                 if (l < r) {
                     swap(l, r);
+                    ++swaps;
                 } else {
                     if (r > s) {
                         swap(r, s);
+                        ++swaps;
                     }
                     break;
                 }
@@ -1578,18 +3424,125 @@ public final class MagicSort<T> {
             if (rl > 1) {
                 tempSortedLength -= rl;
             }
-            this.sortedLength.set(tempSortedLength);
-            if (ll > 7) {
+            progress.add(tempSortedLength);
+            if (statistics != null) {
+                statistics.addPartition(swaps, (top + 1) / 2 + 1); //包含目前的區段
+            }
+            if (ll > smallSortThreshold) {
+                stack[++top] = ls;
+                stack[++top] = le;
+            } else if (ll > 1) {
+                networkSort(ls, ll);
+            }
+            if (rl > smallSortThreshold) {
+                stack[++top] = rs;
+                stack[++top] = re;
+            } else if (rl > 1) {
+                networkSort(rs, rl);
+            }
+        }
+    }
+
+    /**
+     * 使用比較器類別專用的排序核心進行快速排序，與quickSortOptimized相同，但不記錄統計資料。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    @SuppressWarnings("unchecked")
+    private void specializedQuickSort(final int start, final int end) {
+        ComparatorKernels.get(comparator.getClass()).sort(data, start, end, (Comparator<Object>) comparator, smallSortThreshold, progress, this::checkCancellation);
+    }
+
+    /**
+     * 三路分割、無遞迴的快速排序法。分割時採用Bentley-McIlroy的方式，先將與pivot相等的元素交換到區段的兩端，分割完成後再交換到中間，因此沒有重複元素時的比較次數與一般的快速排序法差不多。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void quickSort3Way(final int start, final int end) {
+        if (end - start < 2) { // 分割時至少需要兩個元素
+            progress.add(end - start);
+            return;
+        }
+        final int[] stack = new int[end - start + 1]; // 建立堆疊空間
+        int top = -1;
+        int s, e;
+        stack[++top] = start;
+        stack[++top] = end - 1;
+        while (top >= 0) {
+            checkCancellation();
+            e = stack[top--];
+            s = stack[top--];
+            int tempSortedLength = (e - s + 1);
+            swap(random(s, e), s); // 先將random出來的pivot與最左邊交換
+            int swaps = 1; //交換次數
+            final T x = data[s]; // pivot
+            int i = s, j = e + 1;
+            int p = s, q = e + 1; // [s, p]和[q, e]是與pivot相等的元素
+            while (true) {
+                while (compare(data[++i], x) < 0) {
+                    if (i == e) {
+                        break;
+                    }
+                }
+                while (compare(x, data[--j]) < 0) {
+                    if (j == s) {
+                        break;
+                    }
+                }
+                if (i == j && compare(data[i], x) == 0) {
+                    swap(++p, i);
+                    ++swaps;
+                }
+                if (i >= j) {
+                    break;
+                }
+                swap(i, j);
+                ++swaps;
+                if (compare(data[i], x) == 0) {
+                    swap(++p, i);
+                    ++swaps;
+                }
+                if (compare(data[j], x) == 0) {
+                    swap(--q, j);
+                    ++swaps;
+                }
+            }
+            i = j + 1;
+            for (int k = s; k <= p; ++k) { // 將與pivot相等的元素交換到中間
+                swap(k, j--);
+                ++swaps;
+            }
+            for (int k = e; k >= q; --k) {
+                swap(k, i++);
+                ++swaps;
+            }
+
+            final int ls = s, le = j;
+            final int rs = i, re = e;
+            final int ll = le - ls + 1, rl = re - rs + 1;
+            if (ll > 1) {
+                tempSortedLength -= ll;
+            }
+            if (rl > 1) {
+                tempSortedLength -= rl;
+            }
+            progress.add(tempSortedLength);
+            if (statistics != null) {
+                statistics.addPartition(swaps, (top + 1) / 2 + 1); //包含目前的區段
+            }
+            if (ll > smallSortThreshold) {
                 stack[++top] = ls;
                 stack[++top] = le;
             } else if (ll > 1) {
-                sellectionSort(ls, le + 1);
+                networkSort(ls, ll);
             }
-            if (rl > 7) {
+            if (rl > smallSortThreshold) {
                 stack[++top] = rs;
                 stack[++top] = re;
             } else if (rl > 1) {
-                sellectionSort(rs, re + 1);
+                networkSort(rs, rl);
             }
         }
     }
@@ -1713,56 +3666,188 @@ public final class MagicSort<T> {
      * @param end 排序終點位置
      */
     public synchronized void sort(final int start, final int end) {
+        sortInternal(start, end);
+    }
+
+    /**
+     * 排序的實作。不會取得物件的鎖，非同步排序時會在設定的快照上直接呼叫，避免虛擬執行緒在讀取檔案時被固定在平台執行緒上。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void sortInternal(final int start, final int end) {
+        cancelReason = null;
+        cancelled = false;
+        countingRange = null;
+        bucketRange = null;
+        Algorithm algorithm = this.algorithm == Algorithm.AUTO ? (prefixFunction != null ? Algorithm.QUICKSORT_3WAY : chooseAlgorithm(start, end)) : this.algorithm;
+        if (prefixFunction == null && algorithm == Algorithm.COUNTINGSORT && countingRange == null) { //有前綴函數時，演算法只用來排序前綴相同的元素
+            countingRange = comparator == NATURAL_ORDER ? findCountingRange(start, end) : null;
+            if (countingRange == null) { //無法使用計數排序
+                algorithm = Algorithm.QUICKSORT_OPTIMIZED;
+            }
+        }
+        if (prefixFunction == null && algorithm == Algorithm.BUCKETSORT && bucketRange == null) {
+            bucketRange = comparator == NATURAL_ORDER ? findBucketRange(start, end) : null;
+            if (bucketRange == null) { //無法使用桶子排序，可能是所有的數值都相同
+                algorithm = Algorithm.QUICKSORT_3WAY;
+            }
+        }
+        resolvedAlgorithm = algorithm;
         sorting = true;
-        if (isClonable()) { //如果排序前要先複製
-            data = data.clone();  //複製陣列
-        }
-        if (end > start) { //如果需要排序
-            sortsLength = end - start;
-            sortedLength.set(0);
-            switch (algorithm) {
-                case QUICKSORT_MULTITHREAD:
-                    executorService = Executors.newFixedThreadPool(MAX_THREAD);
-                    quickSortMultiThread(start, end);
-                    try {
-                        executorService.awaitTermination(7, TimeUnit.DAYS);
-                    } catch (final InterruptedException ex) {
-                        throw new RuntimeException(ex);
+        final SortEvent event = new SortEvent();
+        event.begin();
+        statistics = statisticsEnabled ? new SortStatistics(algorithm, Math.max(0, end - start)) : null;
+        deadline = timeout > 0 ? (System.nanoTime() + timeout) | 1 : 0; //避免截止時間剛好是0
+        final Comparator<? super T> originalComparator = comparator;
+        long time = 0;
+        if (statistics != null) {
+            time = System.nanoTime();
+            comparator = statistics.wrap(originalComparator); //只有啟用統計模式時才會包裝比較器，因此比較迴圈中不需要額外的判斷
+        }
+        try {
+            if (isClonable()) { //如果排序前要先複製
+                data = data.clone();  //複製陣列
+            }
+            if (end > start) { //如果需要排序
+                progress.start(end - start);
+                time = lap(SortStatistics.Phase.PREPARE, time);
+                if (prefixFunction != null) {
+                    prefixSort(start, end, algorithm);
+                } else {
+                    switch (algorithm) {
+                        case QUICKSORT_MULTITHREAD:
+                            activeScheduler = scheduler != null ? scheduler : SortScheduler.getDefault();
+                            if (activeScheduler.shouldInline(end - start)) { //資料量小的時候，直接在呼叫的執行緒上排序
+                                quickSortOptimized(start, end);
+                                time = lap(SortStatistics.Phase.SORT, time);
+                                break;
+                            }
+                            pendingTasks.set(1);
+                            parallelFailure.set(null);
+                            runParallelTask(start, end, 1);
+                            time = lap(SortStatistics.Phase.SORT, time);
+                            awaitParallelTasks();
+                            time = lap(SortStatistics.Phase.WAIT, time);
+                            break;
+                        case QUICKSORT_OPTIMIZED:
+                            if (specializedKernels && statistics == null) {
+                                specializedQuickSort(start, end);
+                            } else {
+                                quickSortOptimized(start, end);
+                            }
+                            break;
+                        case QUICKSORT_3WAY:
+                            quickSort3Way(start, end);
+                            break;
+                        case QUICKSORT:
+                            quickSort(start, end);
+                            break;
+                        case SELECTIONSORT:
+                            sellectionSort(start, end);
+                            break;
+                        case BUBBLESORT:
+                            bubbleSort(start, end);
+                            break;
+                        case BUBBLESORT_OPTIMIZED:
+                            bubbleSortOptimized(start, end);
+                            break;
+                        case EXCHANGESORT:
+                            exchangeSort(start, end);
+                            break;
+                        case INSERTIONSORT:
+                            insertionSort(start, end);
+                            break;
+                        case MERGESORT:
+                            mergeSort(start, end);
+                            break;
+                        case NATURAL_MERGESORT:
+                            naturalMergeSort(start, end);
+                            break;
+                        case COUNTINGSORT:
+                            countingSort(start, end);
+                            break;
+                        case MERGE_INSERTION:
+                            mergeInsertionSort(start, end);
+                            break;
+                        case BUCKETSORT:
+                            bucketSort(start, end, parallelBuckets || (this.algorithm == Algorithm.AUTO && end - start >= AUTO_PARALLEL_THRESHOLD && (scheduler != null ? scheduler : SortScheduler.getDefault()).getParallelism() > 1));
+                            break;
                     }
-                    break;
-                case QUICKSORT_OPTIMIZED:
-                    quickSortOptimized(start, end);
-                    break;
-                case QUICKSORT:
-                    quickSort(start, end);
-                    break;
-                case SELECTIONSORT:
-                    sellectionSort(start, end);
-                    break;
-                case BUBBLESORT:
-                    bubbleSort(start, end);
-                    break;
-                case BUBBLESORT_OPTIMIZED:
-                    bubbleSortOptimized(start, end);
-                    break;
-                case EXCHANGESORT:
-                    exchangeSort(start, end);
-                    break;
-                case INSERTIONSORT:
-                    insertionSort(start, end);
-                    break;
-                case MERGESORT:
-                    mergeSort(start, end);
-                    break;
+                }
+                if (prefixFunction != null || algorithm != Algorithm.QUICKSORT_MULTITHREAD) {
+                    time = lap(SortStatistics.Phase.SORT, time);
+                }
+            } else {
+                progress.start(1);
             }
-        } else {
-            sortsLength = 1;
-            sortedLength.set(1);
+        } catch (final RuntimeException | Error ex) {
+            progress.stop();
+            sorting = false;
+            throw ex;
+        } finally {
+            comparator = originalComparator;
+            activeScheduler = null;
+        }
+        progress.finish();
+        if (event.shouldCommit()) {
+            event.sorter = MagicSort.class.getSimpleName();
+            event.algorithm = algorithm.name();
+            event.length = Math.max(0, end - start);
+            event.comparatorClass = comparator.getClass();
+            event.commit();
         }
         sorting = false;
         if (callback != null) {
             callback.sortFinished(data); //回呼
+            lap(SortStatistics.Phase.CALLBACK, time);
+        }
+    }
+
+    /**
+     * 等待多執行緒排序的所有工作完成。等待期間會定時檢查是否需要取消，取消後尚未開始的工作會直接結束，執行中的工作則會在下一個檢查點停止。等到所有的工作都停止之後才會拋出例外，因此例外拋出後陣列不會再被修改。
+     */
+    private void awaitParallelTasks() {
+        boolean interrupted = false;
+        synchronized (pendingTasks) {
+            while (pendingTasks.get() != 0) {
+                try {
+                    pendingTasks.wait(CANCELLATION_POLL_INTERVAL);
+                    isCancellationRequested();
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                    cancelReason = SortCancelledException.Reason.INTERRUPTED;
+                    cancelled = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt(); //保留中斷狀態
+        }
+        final Throwable failure = parallelFailure.getAndSet(null);
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (cancelled) {
+            throw new SortCancelledException(getCancelReason());
+        }
+    }
+
+    /**
+     * 記錄一個階段的耗時，沒有啟用統計模式時不做任何事。
+     *
+     * @param phase 傳入階段
+     * @param time 傳入階段開始的時間(奈秒)
+     * @return 傳回目前的時間(奈秒)，作為下一個階段開始的時間
+     */
+    private long lap(final SortStatistics.Phase phase, final long time) {
+        if (statistics == null) {
+            return 0;
         }
+        final long now = System.nanoTime();
+        statistics.addPhaseTime(phase, now - time);
+        return now;
     }
 
     /**
@@ -1772,6 +3857,192 @@ public final class MagicSort<T> {
         sort(0, data.length);
     }
 
+    /**
+     * 取得排序後的索引順序，不會搬移資料陣列中的元素。傳回的陣列中，第i個數值是排序後第i個元素原本的索引，可以用applyPermutation依照這個順序重新排列資料陣列或其他相關的陣列。呼叫時會先複製目前的設定(演算法、比較器、鍵值前綴函數、進度監聽器、統計模式、取消標記、時間限制、排程器和演算法的參數)，在另一個排序索引的MagicSort物件上進行排序，因此不需要為了保留原本的順序而複製整個資料陣列，這個物件的狀態也不會改變。與sortAsync相同，這個物件的getProgress、getStatistics和getResolvedAlgorithm不會反映這次排序，cancel方法也不會取消這次排序，請使用進度監聽器和取消標記。
+     * <p>
+     * 使用預設排序方式，演算法為AUTO、COUNTINGSORT或BUCKETSORT，而且元素都是同一種Integer、Long、Short、Byte、Double或Float類別時，會直接用數值作為鍵值前綴，用PrimitiveSort排序(數值, 索引)，不需要呼叫比較器。數值相同的元素會維持原本的先後順序。
+     * </p>
+     *
+     * @return 傳回排序後的索引順序
+     * @see #applyPermutation(Object[], int[])
+     */
+    public int[] argsort() {
+        final T[] elements;
+        final Comparator<? super T> elementComparator;
+        final ToLongFunction<? super T> keyFunction;
+        final MagicSort<Integer> snapshot;
+        synchronized (this) {
+            elements = data;
+            elementComparator = comparator;
+            keyFunction = prefixFunction == null && comparator == NATURAL_ORDER && (algorithm == Algorithm.AUTO || algorithm == Algorithm.COUNTINGSORT || algorithm == Algorithm.BUCKETSORT) ? findNumericKey(elements) : prefixFunction;
+
+            final Integer[] indexes = new Integer[elements.length];
+            for (int i = 0; i < indexes.length; ++i) {
+                indexes[i] = i;
+            }
+            snapshot = new MagicSort<>(indexes, false);
+            snapshot.algorithm = algorithm;
+            snapshot.specializedKernels = specializedKernels;
+            snapshot.statisticsEnabled = statisticsEnabled;
+            snapshot.progress.setListener(progress.getListener(), progress.getInterval());
+            snapshot.cancellationToken = cancellationToken;
+            snapshot.timeout = timeout;
+            snapshot.scheduler = scheduler;
+            snapshot.smallSortThreshold = smallSortThreshold;
+            snapshot.bucketMin = bucketMin;
+            snapshot.bucketMax = bucketMax;
+            snapshot.parallelBuckets = parallelBuckets;
+        }
+        snapshot.comparator = (i, j) -> elementComparator.compare(elements[i], elements[j]);
+        snapshot.prefixFunction = keyFunction == null ? null : i -> keyFunction.applyAsLong(elements[i]);
+        snapshot.sortInternal(0, elements.length);
+
+        final Integer[] indexes = snapshot.data;
+        final int[] permutation = new int[indexes.length];
+        for (int i = 0; i < indexes.length; ++i) {
+            permutation[i] = indexes[i];
+        }
+        return permutation;
+    }
+
+    /**
+     * 若元素都是同一種數值的包裝類別，取得與預設排序方式一致的數值鍵值函數。
+     *
+     * @param elements 傳入元素
+     * @return 傳回鍵值函數，若無法使用，傳回null
+     */
+    private static ToLongFunction<Object> findNumericKey(final Object[] elements) {
+        if (elements.length == 0 || elements[0] == null) {
+            return null;
+        }
+        final Class<?> type = elements[0].getClass();
+        for (final Object element : elements) {
+            if (element == null || element.getClass() != type) { //類別不同時，與sort相同，交給比較器拋出例外
+                return null;
+            }
+        }
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            return element -> ((Number) element).longValue();
+        } else if (type == Double.class || type == Float.class) {
+            return element -> radixKey(((Number) element).doubleValue()); // float轉成double不會改變順序
+        }
+        return null;
+    }
+
+    /**
+     * 使用預設的執行器非同步地排序。
+     *
+     * @return 傳回排序結果的CompletableFuture
+     * @see #getDefaultAsyncExecutor()
+     * @see #sortAsync(Executor)
+     */
+    public CompletableFuture<T[]> sortAsync() {
+        return sortAsync(getDefaultAsyncExecutor());
+    }
+
+    /**
+     * 使用指定的執行器非同步地排序。呼叫時會先複製目前的設定(資料陣列、是否先複製資料、演算法、比較器、鍵值前綴函數、回呼物件、進度監聽器、統計模式、取消標記、時間限制、排程器和演算法的參數)，排序在這份快照上進行，因此排序期間可以繼續修改這個物件的設定，也可以同時進行多個非同步排序。排序的進度請使用進度監聽器取得，這個物件的getProgress、getStatistics和getData不會反映非同步排序的結果，cancel方法也不會取消非同步排序。若沒有設定先複製資料，陣列會被直接排序，此時不可同時對同一個陣列進行多個排序。
+     *
+     * @param executor 傳入執行排序的執行器
+     * @return 傳回排序結果的CompletableFuture，比較器拋出的例外或SortCancelledException會讓它以例外完成。取消這個CompletableFuture也會取消排序
+     */
+    public CompletableFuture<T[]> sortAsync(final Executor executor) {
+        final MagicSort<T> snapshot;
+        synchronized (this) {
+            snapshot = new MagicSort<>(data, clonable);
+            snapshot.algorithm = algorithm;
+            snapshot.comparator = comparator;
+            snapshot.prefixFunction = prefixFunction;
+            snapshot.specializedKernels = specializedKernels;
+            snapshot.callback = callback;
+            snapshot.statisticsEnabled = statisticsEnabled;
+            snapshot.progress.setListener(progress.getListener(), progress.getInterval());
+            snapshot.cancellationToken = new CancellationToken(cancellationToken); //子標記，取消CompletableFuture時不會影響到其他排序
+            snapshot.timeout = timeout;
+            snapshot.scheduler = scheduler;
+            snapshot.smallSortThreshold = smallSortThreshold;
+            snapshot.bucketMin = bucketMin;
+            snapshot.bucketMax = bucketMax;
+            snapshot.parallelBuckets = parallelBuckets;
+        }
+        final CompletableFuture<T[]> future = CompletableFuture.supplyAsync(() -> {
+            snapshot.sortInternal(0, snapshot.data.length);
+            return snapshot.data;
+        }, executor);
+        future.whenComplete((result, ex) -> {
+            if (future.isCancelled()) {
+                snapshot.cancellationToken.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 取消目前正在進行的排序，排序的執行緒會在下一個檢查點拋出SortCancelledException。若目前沒有在排序，則沒有任何作用。
+     */
+    public void cancel() {
+        if (sorting) {
+            cancelReason = SortCancelledException.Reason.CANCELLED;
+            cancelled = true;
+        }
+    }
+
+    /**
+     * 設定取消排序的標記。排序時會在每個分割、回合或合併區塊的邊界檢查標記，標記被取消後，排序會拋出SortCancelledException。同一個標記可以用來同時取消多個排序。
+     *
+     * @param cancellationToken 傳入取消排序的標記，若為null，則只能用cancel方法、時間限制或中斷執行緒來取消排序
+     */
+    public synchronized void setCancellationToken(final CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * 設定多執行緒排序使用的排程器。所有使用同一個排程器的MagicSort物件會共用同一組執行緒。
+     *
+     * @param scheduler 傳入排程器，若為null，則使用SortScheduler.getDefault()取得的預設排程器
+     */
+    public synchronized void setScheduler(final SortScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 取得多執行緒排序使用的排程器。
+     *
+     * @return 傳回排程器，若沒有設定，傳回null
+     */
+    public SortScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 取得取消排序的標記。
+     *
+     * @return 傳回取消排序的標記
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * 設定排序的時間限制，從排序開始時計算，超過時間限制時排序會拋出原因為TIMEOUT的SortCancelledException。
+     *
+     * @param timeout 傳入時間限制，若小於或等於0，表示沒有限制
+     * @param unit 傳入時間限制的單位
+     */
+    public synchronized void setTimeout(final long timeout, final TimeUnit unit) {
+        this.timeout = timeout > 0 ? unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * 取得排序的時間限制。
+     *
+     * @param unit 傳入時間限制的單位
+     * @return 傳回時間限制，0表示沒有限制
+     */
+    public long getTimeout(final TimeUnit unit) {
+        return unit.convert(timeout, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * 排序比較方式，若要改寫排序方式，請使用setComparator方法。
      *
@@ -1789,7 +4060,62 @@ public final class MagicSort<T> {
      * @return 傳回進度
      */
     public double getProgress() {
-        return (sortedLength.get() * 1.0 / sortsLength);
+        return progress.getProgress();
+    }
+
+    /**
+     * 設定進度監聽器，排序時每100毫秒發送一次進度事件。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     */
+    public synchronized void setProgressListener(final ProgressListener listener) {
+        setProgressListener(listener, ProgressTracker.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * 設定進度監聽器和發送進度事件的時間間隔。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     * @param interval 傳入發送進度事件的時間間隔(毫秒)，必須大於0
+     */
+    public synchronized void setProgressListener(final ProgressListener listener, final long interval) {
+        progress.setListener(listener, interval);
+    }
+
+    /**
+     * 設定是否啟用統計模式。啟用後，每次排序都會記錄比較次數、交換次數和各階段的耗時等統計資料；沒有啟用時，排序的過程與原本完全相同。
+     *
+     * @param statisticsEnabled 傳入是否啟用統計模式
+     */
+    public synchronized void setStatisticsEnabled(final boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * 是否啟用統計模式。
+     *
+     * @return 傳回是否啟用統計模式
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * 取得最近一次排序的統計資料。
+     *
+     * @return 傳回統計資料，若最近一次排序沒有啟用統計模式，傳回null
+     */
+    public SortStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 取得進度監聽器。
+     *
+     * @return 傳回進度監聽器
+     */
+    public ProgressListener getProgressListener() {
+        return progress.getListener();
     }
 
     /**
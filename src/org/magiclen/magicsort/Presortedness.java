@@ -0,0 +1,267 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 資料已排序程度的分析結果，包含遞增區段的數量、最長的遞增區段、逆序對的數量和重複元素的比例，可以用來選擇排序演算法或是估計排序的成本。逆序對的數量可以精確計算，也可以只取樣估計。
+ *
+ * @author Magic Len
+ * @see MagicSort#analyze(int, int, int)
+ */
+public final class Presortedness {
+
+    // -----類別方法-----
+    /**
+     * 分析資料。
+     *
+     * @param <T> 資料的類別
+     * @param data 傳入資料陣列
+     * @param start 傳入分析起點位置
+     * @param end 傳入分析終點位置
+     * @param comparator 傳入比較器
+     * @param sampleSize 傳入計算逆序對和重複元素時的樣本數量，若小於2，或是不小於資料長度，則使用全部的資料精確計算
+     * @return 傳回分析結果
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Presortedness analyze(final T[] data, final int start, final int end, final Comparator<? super T> comparator, final int sampleSize) {
+        final int length = Math.max(0, end - start);
+        int runs = length > 0 ? 1 : 0;
+        int longestRun = runs;
+        int run = runs;
+        for (int i = start + 1; i < end; ++i) {
+            if (comparator.compare(data[i - 1], data[i]) > 0) {
+                ++runs;
+                run = 1;
+            } else if (++run > longestRun) {
+                longestRun = run;
+            }
+        }
+
+        final boolean sampled = sampleSize > 1 && sampleSize < length;
+        final Object[] values;
+        if (sampled) { //分層取樣，樣本會保持原本的順序
+            values = new Object[sampleSize];
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < sampleSize; ++i) {
+                final int s = (int) ((long) length * i / sampleSize);
+                final int e = (int) ((long) length * (i + 1) / sampleSize);
+                values[i] = data[start + s + random.nextInt(e - s)];
+            }
+        } else {
+            values = Arrays.copyOfRange(data, start, end, Object[].class);
+        }
+        final Comparator<Object> c = (Comparator<Object>) comparator;
+        final long sampleInversions = countInversions(values, c); //values會被排序
+        final int n = values.length;
+
+        long inversions;
+        long distinct;
+        if (sampled) {
+            final double pairs = (double) length * (length - 1);
+            inversions = Math.round(sampleInversions * pairs / ((double) n * (n - 1)));
+            long groups = 0, once = 0, twice = 0; //樣本中不同數值的數量、只出現一次和剛好出現兩次的數值數量
+            for (int i = 0; i < n;) {
+                int j = i + 1;
+                while (j < n && c.compare(values[i], values[j]) == 0) {
+                    ++j;
+                }
+                ++groups;
+                if (j - i == 1) {
+                    ++once;
+                } else if (j - i == 2) {
+                    ++twice;
+                }
+                i = j;
+            }
+            final double unseen = (double) once * (once - 1) / (2 * (twice + 1)); //Chao1估計法(偏差修正)，估計樣本中沒有出現的數值數量
+            distinct = Math.min(groups + Math.round(unseen), length);
+        } else {
+            inversions = sampleInversions;
+            distinct = n > 0 ? 1 : 0;
+            for (int i = 1; i < n; ++i) {
+                if (c.compare(values[i - 1], values[i]) != 0) {
+                    ++distinct;
+                }
+            }
+        }
+        return new Presortedness(length, runs, longestRun, inversions, distinct, sampled);
+    }
+
+    /**
+     * 使用合併排序法計算逆序對的數量，計算完成後陣列會被排序。
+     *
+     * @param values 傳入陣列
+     * @param comparator 傳入比較器
+     * @return 傳回逆序對的數量
+     */
+    private static long countInversions(final Object[] values, final Comparator<Object> comparator) {
+        final int length = values.length;
+        Object[] src = values;
+        Object[] dst = new Object[length];
+        long inversions = 0;
+        for (int width = 1; width < length; width *= 2) {
+            for (int s = 0; s < length; s += width * 2) {
+                final int m = Math.min(s + width, length);
+                final int e = Math.min(s + width * 2, length);
+                int l = s, r = m, k = s;
+                while (l < m && r < e) {
+                    if (comparator.compare(src[r], src[l]) < 0) {
+                        inversions += m - l; //右邊的元素比左邊剩下的元素都小
+                        dst[k++] = src[r++];
+                    } else {
+                        dst[k++] = src[l++];
+                    }
+                }
+                System.arraycopy(src, l, dst, k, m - l);
+                System.arraycopy(src, r, dst, k + m - l, e - r);
+            }
+            final Object[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != values) {
+            System.arraycopy(src, 0, values, 0, length);
+        }
+        return inversions;
+    }
+
+    // -----物件常數-----
+    private final int length; //資料長度
+    private final int runs; //遞增區段的數量
+    private final int longestRun; //最長遞增區段的長度
+    private final long inversions; //逆序對的數量
+    private final long distinct; //不同數值的數量
+    private final boolean sampled; //是否為取樣估計的結果
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param length 傳入資料長度
+     * @param runs 傳入遞增區段的數量
+     * @param longestRun 傳入最長遞增區段的長度
+     * @param inversions 傳入逆序對的數量
+     * @param distinct 傳入不同數值的數量
+     * @param sampled 傳入是否為取樣估計的結果
+     */
+    private Presortedness(final int length, final int runs, final int longestRun, final long inversions, final long distinct, final boolean sampled) {
+        this.length = length;
+        this.runs = runs;
+        this.longestRun = longestRun;
+        this.inversions = inversions;
+        this.distinct = distinct;
+        this.sampled = sampled;
+    }
+
+    // -----物件方法-----
+    /**
+     * 取得資料長度。
+     *
+     * @return 傳回資料長度
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 取得遞增(相等也算)區段的數量，已經排序完成的資料只有1個區段。
+     *
+     * @return 傳回區段數量
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * 取得最長遞增區段的長度。
+     *
+     * @return 傳回區段長度
+     */
+    public int getLongestRun() {
+        return longestRun;
+    }
+
+    /**
+     * 取得逆序對的數量，也就是前面的元素比後面的元素大的索引對數量。取樣時為估計值。
+     *
+     * @return 傳回逆序對的數量
+     */
+    public long getInversions() {
+        return inversions;
+    }
+
+    /**
+     * 取得逆序對佔所有索引對的比例，已排序的資料為0，嚴格遞減的資料為1，隨機的資料約為0.5。
+     *
+     * @return 傳回0到1之間的比例
+     */
+    public double getInversionRatio() {
+        return length < 2 ? 0 : inversions * 2.0 / ((double) length * (length - 1));
+    }
+
+    /**
+     * 取得不同數值的數量。取樣時為估計值。
+     *
+     * @return 傳回不同數值的數量
+     */
+    public long getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * 取得重複元素的比例，也就是不是第一次出現的元素佔資料長度的比例。
+     *
+     * @return 傳回0到1之間的比例
+     */
+    public double getDuplicateRatio() {
+        return length == 0 ? 0 : 1 - (double) distinct / length;
+    }
+
+    /**
+     * 是否為取樣估計的結果。區段的數量和最長區段的長度一定是精確的。
+     *
+     * @return 傳回是否為取樣估計的結果
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * 是否已經排序完成。
+     *
+     * @return 傳回是否已經排序完成
+     */
+    public boolean isSorted() {
+        return runs <= 1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("length=").append(length);
+        sb.append(" runs=").append(runs);
+        sb.append(" longestRun=").append(longestRun);
+        sb.append(sampled ? " inversions~" : " inversions=").append(inversions);
+        sb.append(sampled ? " distinct~" : " distinct=").append(distinct);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,810 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * 基本型態陣列的排序類別，使用區塊分割(BlockQuicksort)的快速排序法。特色如下：
+ * </p>
+ * <ol>
+ * <li>分割時先逐一比較一整個區塊的元素，將需要交換的元素位置記錄在緩衝區中，比較的結果只會用來累加位置的數量，不需要分支；之後再成批交換兩邊緩衝區中的元素。因此在隨機的資料中不會因為分支預測錯誤而變慢。</li>
+ * <li>採用三個隨機元素的中位數作為pivot，並且只將較大的區段放入堆疊，堆疊深度不會超過log n。</li>
+ * <li>元素數量不超過16個的區段使用排序網路，比較交換使用Math.min和Math.max，同樣不需要分支。</li>
+ * <li>可以排序long、int和float陣列，也可以用long鍵值排序int索引陣列。float陣列的順序與Arrays.sort相同，-0.0排在0.0之前，NaN排在最後面。</li>
+ * <li>若類別路徑中有實作VectorSortKernel的向量化排序核心(例如magicsort-simd模組)，而且執行環境支援，排序long、int和float陣列時會交給它處理，結果與純量的排序完全相同。可以用系統屬性org.magiclen.magicsort.vector=false停用。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ * @see RecordSort
+ * @see VectorSortKernel
+ */
+public final class PrimitiveSort {
+
+    // -----類別類別-----
+    /**
+     * 延遲載入向量化排序核心，第一次排序基本型態陣列時才會尋找。
+     */
+    private static final class KernelHolder {
+
+        private static final VectorSortKernel KERNEL = load(); //向量化排序核心，若為null，則使用純量的排序
+
+        /**
+         * 用ServiceLoader載入第一個可以使用的向量化排序核心。
+         *
+         * @return 傳回向量化排序核心，若沒有可以使用的核心，傳回null
+         */
+        private static VectorSortKernel load() {
+            if (!Boolean.parseBoolean(System.getProperty("org.magiclen.magicsort.vector", "true"))) {
+                return null;
+            }
+            try {
+                for (final VectorSortKernel kernel : ServiceLoader.load(VectorSortKernel.class, PrimitiveSort.class.getClassLoader())) {
+                    if (kernel.isSupported()) {
+                        return kernel;
+                    }
+                }
+            } catch (final ServiceConfigurationError | LinkageError ex) {
+                // 向量化的模組無法載入(例如執行時沒有加入jdk.incubator.vector模組)，使用純量的排序
+            }
+            return null;
+        }
+    }
+
+    // -----類別常數-----
+    /**
+     * 分割時每個區塊的元素數量。
+     */
+    private static final int BLOCK = 128;
+    /**
+     * 使用排序網路的元素數量上限。
+     */
+    private static final int NETWORK_THRESHOLD = SortingNetworks.MAX_SIZE;
+    /**
+     * 堆疊的大小，只將較大的區段放入堆疊，因此深度不會超過log n。
+     */
+    private static final int STACK_SIZE = 64;
+
+    // -----類別方法-----
+    /**
+     * 遞增排序long陣列。
+     *
+     * @param array 傳入要排序的陣列
+     */
+    public static void sort(final long[] array) {
+        sort(array, 0, array.length);
+    }
+
+    /**
+     * 遞增排序long陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    public static void sort(final long[] array, final int start, final int end) {
+        final VectorSortKernel kernel = KernelHolder.KERNEL;
+        if (kernel != null) {
+            kernel.sort(array, start, end);
+        } else {
+            sort(array, start, end, null);
+        }
+    }
+
+    /**
+     * 遞增排序int陣列。
+     *
+     * @param array 傳入要排序的陣列
+     */
+    public static void sort(final int[] array) {
+        sort(array, 0, array.length);
+    }
+
+    /**
+     * 遞增排序int陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    public static void sort(final int[] array, final int start, final int end) {
+        final VectorSortKernel kernel = KernelHolder.KERNEL;
+        if (kernel != null) {
+            kernel.sort(array, start, end);
+        } else {
+            sort(array, start, end, null);
+        }
+    }
+
+    /**
+     * 遞增排序float陣列。-0.0排在0.0之前，NaN排在最後面。
+     *
+     * @param array 傳入要排序的陣列
+     */
+    public static void sort(final float[] array) {
+        sort(array, 0, array.length);
+    }
+
+    /**
+     * 遞增排序float陣列的某範圍。-0.0排在0.0之前，NaN排在最後面。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    public static void sort(final float[] array, final int start, final int end) {
+        final int last = moveNaNsToEnd(array, start, end);
+        final VectorSortKernel kernel = KernelHolder.KERNEL;
+        if (kernel != null) {
+            kernel.sort(array, start, last);
+        } else {
+            sort(array, start, last, null);
+        }
+        orderZeros(array, start, last);
+    }
+
+    /**
+     * 是否使用向量化排序核心來排序long、int和float陣列。
+     *
+     * @return 傳回是否使用向量化排序核心
+     */
+    public static boolean isVectorized() {
+        return KernelHolder.KERNEL != null;
+    }
+
+    /**
+     * 取得排序long、int和float陣列時使用的核心名稱。
+     *
+     * @return 傳回向量化排序核心的名稱，若沒有使用向量化排序核心，傳回scalar
+     */
+    public static String getKernelName() {
+        final VectorSortKernel kernel = KernelHolder.KERNEL;
+        return kernel != null ? kernel.getName() : "scalar";
+    }
+
+    /**
+     * 將float陣列某範圍中的NaN移到範圍的最後面，NaN之間的順序是固定的。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入範圍起點位置
+     * @param end 傳入範圍終點位置
+     * @return 傳回第一個NaN的位置，若沒有NaN，傳回end
+     */
+    private static int moveNaNsToEnd(final float[] array, final int start, final int end) {
+        int last = end;
+        for (int i = end - 1; i >= start; --i) {
+            final float v = array[i];
+            if (v != v) {
+                array[i] = array[--last];
+                array[last] = v;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 在已排序且沒有NaN的float陣列範圍中，將-0.0排在0.0之前。排序時它們被視為相等，所以要另外調整順序，讓結果不受排序方式影響。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入範圍起點位置
+     * @param end 傳入範圍終點位置
+     */
+    private static void orderZeros(final float[] array, final int start, final int end) {
+        int low = start, high = end;
+        while (low < high) { // 找到第一個不小於0的元素
+            final int mid = (low + high) >>> 1;
+            if (array[mid] < 0.0f) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int negativeZeros = 0, i = low;
+        for (; i < end && array[i] == 0.0f; ++i) {
+            if (Float.floatToRawIntBits(array[i]) < 0) {
+                ++negativeZeros;
+            }
+        }
+        for (int j = low; j < i; ++j) {
+            array[j] = j - low < negativeZeros ? -0.0f : 0.0f;
+        }
+    }
+
+    /**
+     * 用long鍵值遞增排序int索引陣列的某範圍，鍵值陣列會一起被排序。鍵值相同的元素順序不固定。
+     *
+     * @param keys 傳入鍵值陣列
+     * @param indexes 傳入跟著鍵值移動的索引陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    public static void sort(final long[] keys, final int[] indexes, final int start, final int end) {
+        sort(keys, indexes, start, end, null);
+    }
+
+    /**
+     * long陣列的區塊分割快速排序法。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param progress 傳入排序進度，若為null，則不回報進度
+     */
+    static void sort(final long[] array, final int start, final int end, final ProgressTracker progress) {
+        final int[] stack = new int[STACK_SIZE];
+        final int[] offsetsL = new int[BLOCK]; //左邊區塊中需要移到右邊的元素位置
+        final int[] offsetsR = new int[BLOCK]; //右邊區塊中需要移到左邊的元素位置
+        int top = -1;
+        int lo = start, hi = end - 1;
+        while (true) {
+            final int size = hi - lo + 1;
+            if (size <= NETWORK_THRESHOLD) {
+                if (size > 1) {
+                    SortingNetworks.sort(array, lo, size);
+                }
+                if (progress != null && size > 0) {
+                    progress.add(size);
+                }
+                if (top < 0) {
+                    break;
+                }
+                hi = stack[top--];
+                lo = stack[top--];
+                continue;
+            }
+            final int p = partition(array, lo, hi, offsetsL, offsetsR);
+            if (progress != null) {
+                progress.add(1); //pivot已經在最終的位置上
+            }
+            if (p - lo < hi - p) { //較大的區段放入堆疊，先處理較小的區段
+                stack[++top] = p + 1;
+                stack[++top] = hi;
+                hi = p - 1;
+            } else {
+                stack[++top] = lo;
+                stack[++top] = p - 1;
+                lo = p + 1;
+            }
+        }
+    }
+
+    /**
+     * 區塊分割。
+     *
+     * @param array 傳入要排序的陣列
+     * @param lo 傳入分割起點位置
+     * @param hi 傳入分割終點位置(包含)
+     * @param offsetsL 傳入左邊區塊的位置緩衝區
+     * @param offsetsR 傳入右邊區塊的位置緩衝區
+     * @return 傳回pivot最後的位置，左邊的元素都不大於pivot，右邊的元素都不小於pivot
+     */
+    private static int partition(final long[] array, final int lo, final int hi, final int[] offsetsL, final int[] offsetsR) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = hi - lo + 1;
+        final int m = medianOf3(array, lo + random.nextInt(size), lo + random.nextInt(size), lo + random.nextInt(size));
+        swap(array, lo, m); // 將pivot與最左邊交換
+        final long pivot = array[lo];
+        int l = lo + 1, r = hi;
+        int numL = 0, numR = 0, startL = 0, startR = 0;
+        while (r - l + 1 >= 2 * BLOCK) {
+            if (numL == 0) {
+                startL = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsL[numL] = i;
+                    numL += array[l + i] >= pivot ? 1 : 0; // 只累加數量，不需要分支
+                }
+            }
+            if (numR == 0) {
+                startR = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsR[numR] = i;
+                    numR += pivot >= array[r - i] ? 1 : 0;
+                }
+            }
+            final int num = Math.min(numL, numR);
+            for (int i = 0; i < num; ++i) {
+                swap(array, l + offsetsL[startL + i], r - offsetsR[startR + i]);
+            }
+            numL -= num;
+            numR -= num;
+            startL += num;
+            startR += num;
+            if (numL == 0) { // 左邊區塊的元素都已不大於pivot
+                l += BLOCK;
+            }
+            if (numR == 0) { // 右邊區塊的元素都已不小於pivot
+                r -= BLOCK;
+            }
+        }
+        // 剩下不到兩個區塊(包含還沒交換完的區塊)，[lo + 1, l)都不大於pivot，(r, hi]都不小於pivot，中間的部分用一般的方式分割
+        int i = l, j = r;
+        while (true) {
+            while (i <= j && array[i] < pivot) {
+                ++i;
+            }
+            while (i <= j && array[j] > pivot) {
+                --j;
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(array, i++, j--);
+        }
+        final int p = i == j ? i : i - 1; // i == j時，該元素等於pivot
+        swap(array, lo, p);
+        return p;
+    }
+
+    /**
+     * 取得三個位置中，元素為中位數的位置。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     * @param c 位置c
+     * @return 傳回中位數的位置
+     */
+    private static int medianOf3(final long[] array, final int a, final int b, final int c) {
+        final long va = array[a], vb = array[b], vc = array[c];
+        if (va < vb) {
+            return vb < vc ? b : va < vc ? c : a;
+        }
+        return va < vc ? a : vb < vc ? c : b;
+    }
+
+    /**
+     * int陣列的區塊分割快速排序法。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param progress 傳入排序進度，若為null，則不回報進度
+     */
+    static void sort(final int[] array, final int start, final int end, final ProgressTracker progress) {
+        final int[] stack = new int[STACK_SIZE];
+        final int[] offsetsL = new int[BLOCK]; //左邊區塊中需要移到右邊的元素位置
+        final int[] offsetsR = new int[BLOCK]; //右邊區塊中需要移到左邊的元素位置
+        int top = -1;
+        int lo = start, hi = end - 1;
+        while (true) {
+            final int size = hi - lo + 1;
+            if (size <= NETWORK_THRESHOLD) {
+                if (size > 1) {
+                    SortingNetworks.sort(array, lo, size);
+                }
+                if (progress != null && size > 0) {
+                    progress.add(size);
+                }
+                if (top < 0) {
+                    break;
+                }
+                hi = stack[top--];
+                lo = stack[top--];
+                continue;
+            }
+            final int p = partition(array, lo, hi, offsetsL, offsetsR);
+            if (progress != null) {
+                progress.add(1); //pivot已經在最終的位置上
+            }
+            if (p - lo < hi - p) { //較大的區段放入堆疊，先處理較小的區段
+                stack[++top] = p + 1;
+                stack[++top] = hi;
+                hi = p - 1;
+            } else {
+                stack[++top] = lo;
+                stack[++top] = p - 1;
+                lo = p + 1;
+            }
+        }
+    }
+
+    /**
+     * 區塊分割。
+     *
+     * @param array 傳入要排序的陣列
+     * @param lo 傳入分割起點位置
+     * @param hi 傳入分割終點位置(包含)
+     * @param offsetsL 傳入左邊區塊的位置緩衝區
+     * @param offsetsR 傳入右邊區塊的位置緩衝區
+     * @return 傳回pivot最後的位置，左邊的元素都不大於pivot，右邊的元素都不小於pivot
+     */
+    private static int partition(final int[] array, final int lo, final int hi, final int[] offsetsL, final int[] offsetsR) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = hi - lo + 1;
+        final int m = medianOf3(array, lo + random.nextInt(size), lo + random.nextInt(size), lo + random.nextInt(size));
+        swap(array, lo, m); // 將pivot與最左邊交換
+        final int pivot = array[lo];
+        int l = lo + 1, r = hi;
+        int numL = 0, numR = 0, startL = 0, startR = 0;
+        while (r - l + 1 >= 2 * BLOCK) {
+            if (numL == 0) {
+                startL = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsL[numL] = i;
+                    numL += array[l + i] >= pivot ? 1 : 0; // 只累加數量，不需要分支
+                }
+            }
+            if (numR == 0) {
+                startR = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsR[numR] = i;
+                    numR += pivot >= array[r - i] ? 1 : 0;
+                }
+            }
+            final int num = Math.min(numL, numR);
+            for (int i = 0; i < num; ++i) {
+                swap(array, l + offsetsL[startL + i], r - offsetsR[startR + i]);
+            }
+            numL -= num;
+            numR -= num;
+            startL += num;
+            startR += num;
+            if (numL == 0) { // 左邊區塊的元素都已不大於pivot
+                l += BLOCK;
+            }
+            if (numR == 0) { // 右邊區塊的元素都已不小於pivot
+                r -= BLOCK;
+            }
+        }
+        // 剩下不到兩個區塊(包含還沒交換完的區塊)，[lo + 1, l)都不大於pivot，(r, hi]都不小於pivot，中間的部分用一般的方式分割
+        int i = l, j = r;
+        while (true) {
+            while (i <= j && array[i] < pivot) {
+                ++i;
+            }
+            while (i <= j && array[j] > pivot) {
+                --j;
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(array, i++, j--);
+        }
+        final int p = i == j ? i : i - 1; // i == j時，該元素等於pivot
+        swap(array, lo, p);
+        return p;
+    }
+
+    /**
+     * 取得三個位置中，元素為中位數的位置。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     * @param c 位置c
+     * @return 傳回中位數的位置
+     */
+    private static int medianOf3(final int[] array, final int a, final int b, final int c) {
+        final int va = array[a], vb = array[b], vc = array[c];
+        if (va < vb) {
+            return vb < vc ? b : va < vc ? c : a;
+        }
+        return va < vc ? a : vb < vc ? c : b;
+    }
+
+    /**
+     * float陣列的區塊分割快速排序法。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param progress 傳入排序進度，若為null，則不回報進度
+     */
+    static void sort(final float[] array, final int start, final int end, final ProgressTracker progress) {
+        final int[] stack = new int[STACK_SIZE];
+        final int[] offsetsL = new int[BLOCK]; //左邊區塊中需要移到右邊的元素位置
+        final int[] offsetsR = new int[BLOCK]; //右邊區塊中需要移到左邊的元素位置
+        int top = -1;
+        int lo = start, hi = end - 1;
+        while (true) {
+            final int size = hi - lo + 1;
+            if (size <= NETWORK_THRESHOLD) {
+                if (size > 1) {
+                    SortingNetworks.sort(array, lo, size);
+                }
+                if (progress != null && size > 0) {
+                    progress.add(size);
+                }
+                if (top < 0) {
+                    break;
+                }
+                hi = stack[top--];
+                lo = stack[top--];
+                continue;
+            }
+            final int p = partition(array, lo, hi, offsetsL, offsetsR);
+            if (progress != null) {
+                progress.add(1); //pivot已經在最終的位置上
+            }
+            if (p - lo < hi - p) { //較大的區段放入堆疊，先處理較小的區段
+                stack[++top] = p + 1;
+                stack[++top] = hi;
+                hi = p - 1;
+            } else {
+                stack[++top] = lo;
+                stack[++top] = p - 1;
+                lo = p + 1;
+            }
+        }
+    }
+
+    /**
+     * 區塊分割。
+     *
+     * @param array 傳入要排序的陣列
+     * @param lo 傳入分割起點位置
+     * @param hi 傳入分割終點位置(包含)
+     * @param offsetsL 傳入左邊區塊的位置緩衝區
+     * @param offsetsR 傳入右邊區塊的位置緩衝區
+     * @return 傳回pivot最後的位置，左邊的元素都不大於pivot，右邊的元素都不小於pivot
+     */
+    private static int partition(final float[] array, final int lo, final int hi, final int[] offsetsL, final int[] offsetsR) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = hi - lo + 1;
+        final int m = medianOf3(array, lo + random.nextInt(size), lo + random.nextInt(size), lo + random.nextInt(size));
+        swap(array, lo, m); // 將pivot與最左邊交換
+        final float pivot = array[lo];
+        int l = lo + 1, r = hi;
+        int numL = 0, numR = 0, startL = 0, startR = 0;
+        while (r - l + 1 >= 2 * BLOCK) {
+            if (numL == 0) {
+                startL = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsL[numL] = i;
+                    numL += array[l + i] >= pivot ? 1 : 0; // 只累加數量，不需要分支
+                }
+            }
+            if (numR == 0) {
+                startR = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsR[numR] = i;
+                    numR += pivot >= array[r - i] ? 1 : 0;
+                }
+            }
+            final int num = Math.min(numL, numR);
+            for (int i = 0; i < num; ++i) {
+                swap(array, l + offsetsL[startL + i], r - offsetsR[startR + i]);
+            }
+            numL -= num;
+            numR -= num;
+            startL += num;
+            startR += num;
+            if (numL == 0) { // 左邊區塊的元素都已不大於pivot
+                l += BLOCK;
+            }
+            if (numR == 0) { // 右邊區塊的元素都已不小於pivot
+                r -= BLOCK;
+            }
+        }
+        // 剩下不到兩個區塊(包含還沒交換完的區塊)，[lo + 1, l)都不大於pivot，(r, hi]都不小於pivot，中間的部分用一般的方式分割
+        int i = l, j = r;
+        while (true) {
+            while (i <= j && array[i] < pivot) {
+                ++i;
+            }
+            while (i <= j && array[j] > pivot) {
+                --j;
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(array, i++, j--);
+        }
+        final int p = i == j ? i : i - 1; // i == j時，該元素等於pivot
+        swap(array, lo, p);
+        return p;
+    }
+
+    /**
+     * 取得三個位置中，元素為中位數的位置。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     * @param c 位置c
+     * @return 傳回中位數的位置
+     */
+    private static int medianOf3(final float[] array, final int a, final int b, final int c) {
+        final float va = array[a], vb = array[b], vc = array[c];
+        if (va < vb) {
+            return vb < vc ? b : va < vc ? c : a;
+        }
+        return va < vc ? a : vb < vc ? c : b;
+    }
+
+    /**
+     * 用long鍵值排序int索引陣列的區塊分割快速排序法。
+     *
+     * @param keys 傳入鍵值陣列
+     * @param indexes 傳入跟著鍵值移動的索引陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     * @param progress 傳入排序進度，若為null，則不回報進度
+     */
+    static void sort(final long[] keys, final int[] indexes, final int start, final int end, final ProgressTracker progress) {
+        final int[] stack = new int[STACK_SIZE];
+        final int[] offsetsL = new int[BLOCK]; //左邊區塊中需要移到右邊的元素位置
+        final int[] offsetsR = new int[BLOCK]; //右邊區塊中需要移到左邊的元素位置
+        int top = -1;
+        int lo = start, hi = end - 1;
+        while (true) {
+            final int size = hi - lo + 1;
+            if (size <= NETWORK_THRESHOLD) {
+                if (size > 1) {
+                    SortingNetworks.sort(keys, indexes, lo, size);
+                }
+                if (progress != null && size > 0) {
+                    progress.add(size);
+                }
+                if (top < 0) {
+                    break;
+                }
+                hi = stack[top--];
+                lo = stack[top--];
+                continue;
+            }
+            final int p = partition(keys, indexes, lo, hi, offsetsL, offsetsR);
+            if (progress != null) {
+                progress.add(1); //pivot已經在最終的位置上
+            }
+            if (p - lo < hi - p) { //較大的區段放入堆疊，先處理較小的區段
+                stack[++top] = p + 1;
+                stack[++top] = hi;
+                hi = p - 1;
+            } else {
+                stack[++top] = lo;
+                stack[++top] = p - 1;
+                lo = p + 1;
+            }
+        }
+    }
+
+    /**
+     * 區塊分割。
+     *
+     * @param keys 傳入鍵值陣列
+     * @param indexes 傳入跟著鍵值移動的索引陣列
+     * @param lo 傳入分割起點位置
+     * @param hi 傳入分割終點位置(包含)
+     * @param offsetsL 傳入左邊區塊的位置緩衝區
+     * @param offsetsR 傳入右邊區塊的位置緩衝區
+     * @return 傳回pivot最後的位置，左邊的元素都不大於pivot，右邊的元素都不小於pivot
+     */
+    private static int partition(final long[] keys, final int[] indexes, final int lo, final int hi, final int[] offsetsL, final int[] offsetsR) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = hi - lo + 1;
+        final int m = medianOf3(keys, lo + random.nextInt(size), lo + random.nextInt(size), lo + random.nextInt(size));
+        swap(keys, indexes, lo, m); // 將pivot與最左邊交換
+        final long pivot = keys[lo];
+        int l = lo + 1, r = hi;
+        int numL = 0, numR = 0, startL = 0, startR = 0;
+        while (r - l + 1 >= 2 * BLOCK) {
+            if (numL == 0) {
+                startL = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsL[numL] = i;
+                    numL += keys[l + i] >= pivot ? 1 : 0; // 只累加數量，不需要分支
+                }
+            }
+            if (numR == 0) {
+                startR = 0;
+                for (int i = 0; i < BLOCK; ++i) {
+                    offsetsR[numR] = i;
+                    numR += pivot >= keys[r - i] ? 1 : 0;
+                }
+            }
+            final int num = Math.min(numL, numR);
+            for (int i = 0; i < num; ++i) {
+                swap(keys, indexes, l + offsetsL[startL + i], r - offsetsR[startR + i]);
+            }
+            numL -= num;
+            numR -= num;
+            startL += num;
+            startR += num;
+            if (numL == 0) { // 左邊區塊的元素都已不大於pivot
+                l += BLOCK;
+            }
+            if (numR == 0) { // 右邊區塊的元素都已不小於pivot
+                r -= BLOCK;
+            }
+        }
+        // 剩下不到兩個區塊(包含還沒交換完的區塊)，[lo + 1, l)都不大於pivot，(r, hi]都不小於pivot，中間的部分用一般的方式分割
+        int i = l, j = r;
+        while (true) {
+            while (i <= j && keys[i] < pivot) {
+                ++i;
+            }
+            while (i <= j && keys[j] > pivot) {
+                --j;
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(keys, indexes, i++, j--);
+        }
+        final int p = i == j ? i : i - 1; // i == j時，該元素等於pivot
+        swap(keys, indexes, lo, p);
+        return p;
+    }
+
+    /**
+     * 交換陣列中a,b位置的元素。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     */
+    private static void swap(final long[] array, final int a, final int b) {
+        final long t = array[a];
+        array[a] = array[b];
+        array[b] = t;
+    }
+
+    /**
+     * 交換陣列中a,b位置的元素。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     */
+    private static void swap(final int[] array, final int a, final int b) {
+        final int t = array[a];
+        array[a] = array[b];
+        array[b] = t;
+    }
+
+    /**
+     * 交換陣列中a,b位置的元素。
+     *
+     * @param array 傳入陣列
+     * @param a 位置a
+     * @param b 位置b
+     */
+    private static void swap(final float[] array, final int a, final int b) {
+        final float t = array[a];
+        array[a] = array[b];
+        array[b] = t;
+    }
+
+    /**
+     * 交換鍵值陣列和索引陣列中a,b位置的元素。
+     *
+     * @param keys 傳入鍵值陣列
+     * @param indexes 傳入索引陣列
+     * @param a 位置a
+     * @param b 位置b
+     */
+    private static void swap(final long[] keys, final int[] indexes, final int a, final int b) {
+        final long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        final int i = indexes[a];
+        indexes[a] = indexes[b];
+        indexes[b] = i;
+    }
+
+    // -----建構子-----
+    /**
+     * 私有的建構子，將無法被實體化。
+     */
+    private PrimitiveSort() {
+    }
+}
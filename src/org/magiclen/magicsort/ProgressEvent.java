@@ -0,0 +1,115 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * 排序進度事件。
+ *
+ * @author Magic Len
+ * @see ProgressListener
+ */
+public final class ProgressEvent {
+
+    // -----物件常數-----
+    private final long completed; //已排序的長度
+    private final long total; //總共要排序的長度
+    private final long elapsedTime; //經過的時間(毫秒)
+    private final boolean finished; //是否已排序完成
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param completed 傳入已排序的長度
+     * @param total 傳入總共要排序的長度
+     * @param elapsedTime 傳入經過的時間(毫秒)
+     * @param finished 傳入是否已排序完成
+     */
+    ProgressEvent(final long completed, final long total, final long elapsedTime, final boolean finished) {
+        this.completed = completed;
+        this.total = total;
+        this.elapsedTime = elapsedTime;
+        this.finished = finished;
+    }
+
+    // -----物件方法-----
+    /**
+     * 取得已排序的長度。
+     *
+     * @return 傳回已排序的長度
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * 取得總共要排序的長度。
+     *
+     * @return 傳回總共要排序的長度
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 取得排序進度。
+     *
+     * @return 傳回0到1之間的進度
+     */
+    public double getProgress() {
+        return total == 0 ? 1 : Math.min(1, completed * 1.0 / total);
+    }
+
+    /**
+     * 取得從開始排序到現在經過的時間。
+     *
+     * @return 傳回經過的時間(毫秒)
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * 依照目前的排序速度估計剩餘的時間。
+     *
+     * @return 傳回剩餘的時間(毫秒)，若還無法估計，傳回-1
+     */
+    public long getEstimatedRemainingTime() {
+        if (finished) {
+            return 0;
+        }
+        if (completed <= 0) {
+            return -1;
+        }
+        return (long) (elapsedTime * ((total - completed) * 1.0 / completed));
+    }
+
+    /**
+     * 是否已排序完成。
+     *
+     * @return 傳回是否已排序完成
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f%% (%d/%d), elapsed %d ms, ETA %d ms", getProgress() * 100, completed, total, elapsedTime, getEstimatedRemainingTime());
+    }
+}
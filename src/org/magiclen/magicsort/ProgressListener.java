@@ -0,0 +1,34 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * 排序進度的監聽介面。進度事件會以固定的時間間隔(預設為100毫秒)在背景執行緒中發送，排序完成時會再發送一次進度為1的事件。
+ *
+ * @author Magic Len
+ * @see MagicSort#setProgressListener(ProgressListener)
+ */
+public interface ProgressListener {
+
+    /**
+     * 排序進度更新。這個方法會在背景執行緒中被呼叫，應盡快返回，以免延遲之後的事件。
+     *
+     * @param event 傳入進度事件
+     */
+    public void progressUpdated(final ProgressEvent event);
+}
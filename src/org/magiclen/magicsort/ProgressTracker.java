@@ -0,0 +1,183 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 排序進度的追蹤類別。已排序的長度使用LongAdder累加，多個執行緒同時回報時會分散到不同的計數格中，只有在讀取進度時才會加總，因此輪詢進度不會拖慢排序。排序演算法應該先在區域變數中累計，在一個區段完成時再回報一次，不要在內層迴圈中回報。
+ *
+ * @author Magic Len
+ */
+final class ProgressTracker {
+
+    // -----類別常數-----
+    /**
+     * 預設發送進度事件的時間間隔(毫秒)。
+     */
+    static final long DEFAULT_INTERVAL = 100;
+
+    // -----類別變數-----
+    private static ScheduledExecutorService scheduler; //發送進度事件的執行緒，所有的追蹤器共用
+
+    // -----類別方法-----
+    /**
+     * 取得發送進度事件的執行緒。
+     *
+     * @return 傳回發送進度事件的執行緒
+     */
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "MagicSort-Progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    // -----物件常數-----
+    private final LongAdder completed = new LongAdder(); //已排序的長度
+
+    // -----物件變數-----
+    private volatile long total; //總共要排序的長度
+    private volatile long startTime; //開始排序的時間(奈秒)
+    private ProgressListener listener; //進度監聽器
+    private long interval = DEFAULT_INTERVAL; //發送進度事件的時間間隔(毫秒)
+    private ScheduledFuture<?> future; //定時發送進度事件的工作
+    private boolean finished; //是否已發送完成事件
+
+    // -----物件方法-----
+    /**
+     * 設定進度監聽器。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     * @param interval 傳入發送進度事件的時間間隔(毫秒)
+     */
+    synchronized void setListener(final ProgressListener listener, final long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.listener = listener;
+        this.interval = interval;
+    }
+
+    /**
+     * 取得進度監聽器。
+     *
+     * @return 傳回進度監聽器
+     */
+    synchronized ProgressListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 取得發送進度事件的時間間隔。
+     *
+     * @return 傳回時間間隔(毫秒)
+     */
+    synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * 開始追蹤新的排序工作。
+     *
+     * @param total 傳入總共要排序的長度
+     */
+    synchronized void start(final long total) {
+        completed.reset();
+        this.total = total;
+        startTime = System.nanoTime();
+        finished = false;
+        if (listener != null) {
+            future = getScheduler().scheduleAtFixedRate(this::fire, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 回報已排序的長度。
+     *
+     * @param length 傳入這次新增的已排序長度
+     */
+    void add(final long length) {
+        completed.add(length);
+    }
+
+    /**
+     * 結束排序工作，將進度設為完成，並發送最後一次進度事件。
+     */
+    synchronized void finish() {
+        final long remain = total - completed.sum();
+        if (remain != 0) {
+            completed.add(remain);
+        }
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        if (listener != null) {
+            finished = true;
+            listener.progressUpdated(snapshot(true));
+        }
+    }
+
+    /**
+     * 中止排序工作，停止發送進度事件，進度會保持在目前的值。
+     */
+    synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        finished = true;
+    }
+
+    /**
+     * 定時發送進度事件。
+     */
+    private synchronized void fire() {
+        if (!finished && listener != null) {
+            listener.progressUpdated(snapshot(false));
+        }
+    }
+
+    /**
+     * 建立目前的進度事件。
+     *
+     * @param finished 傳入是否已排序完成
+     * @return 傳回進度事件
+     */
+    private ProgressEvent snapshot(final boolean finished) {
+        return new ProgressEvent(completed.sum(), total, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), finished);
+    }
+
+    /**
+     * 取得排序進度。
+     *
+     * @return 傳回進度
+     */
+    double getProgress() {
+        return (completed.sum() * 1.0 / total);
+    }
+}
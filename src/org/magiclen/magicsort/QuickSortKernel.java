@@ -0,0 +1,123 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.Comparator;
+
+/**
+ * 專用排序核心的範本，與MagicSort的QUICKSORT_OPTIMIZED相同，採用隨機pivot並在元素數量不超過門檻時使用排序網路。ComparatorKernels會用這個類別的位元組碼定義隱藏類別，每一份複本都有自己的型態剖析資料，因此這個類別不可以有內部類別或Lambda。
+ *
+ * @author Magic Len
+ * @see ComparatorKernels
+ */
+final class QuickSortKernel implements ComparatorKernel {
+
+    // -----物件方法-----
+    @Override
+    public void sort(final Object[] array, final int start, final int end, final Comparator<Object> comparator, final int threshold, final ProgressTracker progress, final Runnable checkpoint) {
+        final int[] stack = new int[end - start + 1]; // 建立堆疊空間
+        int top = -1;
+        int s, e;
+        stack[++top] = start;
+        stack[++top] = end - 1;
+        while (top >= 0) {
+            checkpoint.run();
+            e = stack[top--];
+            s = stack[top--];
+            int tempSortedLength = (e - s + 1);
+            swap(array, s + (int) ((e - s + 1) * Math.random()), s); // 先將random出來的pivot與最左邊交換
+            final Object x = array[s]; // pivot
+            int l = s + 1;
+            int r = e;
+            while (true) {
+                while (r > s && comparator.compare(array[r], x) >= 0) {
+                    --r;
+                }
+                while (l <= r && comparator.compare(array[l], x) <= 0) {
+                    ++l;
+                }
+                if (l < r) {
+                    swap(array, l, r);
+                } else {
+                    if (r > s) {
+                        swap(array, r, s);
+                    }
+                    break;
+                }
+            }
+
+            final int ls = s, le = r - 1;
+            final int rs = r + 1, re = e;
+            final int ll = le - ls + 1, rl = re - rs + 1;
+            if (ll > 1) {
+                tempSortedLength -= ll;
+            }
+            if (rl > 1) {
+                tempSortedLength -= rl;
+            }
+            progress.add(tempSortedLength);
+            if (ll > threshold) {
+                stack[++top] = ls;
+                stack[++top] = le;
+            } else if (ll > 1) {
+                networkSort(array, ls, ll, comparator, progress);
+            }
+            if (rl > threshold) {
+                stack[++top] = rs;
+                stack[++top] = re;
+            } else if (rl > 1) {
+                networkSort(array, rs, rl, comparator, progress);
+            }
+        }
+    }
+
+    /**
+     * 用排序網路排序很小的範圍。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param length 傳入元素數量，不可超過SortingNetworks.MAX_SIZE
+     * @param comparator 傳入比較器
+     * @param progress 傳入排序進度
+     */
+    private static void networkSort(final Object[] array, final int start, final int length, final Comparator<Object> comparator, final ProgressTracker progress) {
+        final int[] network = SortingNetworks.get(length);
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final Object ta = array[a], tb = array[b];
+            if (comparator.compare(ta, tb) > 0) {
+                array[a] = tb;
+                array[b] = ta;
+            }
+        }
+        progress.add(length);
+    }
+
+    /**
+     * 交換索引a,b的資料。
+     *
+     * @param array 傳入陣列
+     * @param a 索引a
+     * @param b 索引b
+     */
+    private static void swap(final Object[] array, final int a, final int b) {
+        final Object tmp = array[a];
+        array[a] = array[b];
+        array[b] = tmp;
+    }
+}
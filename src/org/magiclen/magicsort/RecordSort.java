@@ -0,0 +1,596 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.nio.ByteBuffer;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+import org.magiclen.magicsort.jfr.SortEvent;
+
+/**
+ * <p>
+ * 固定長度記錄的排序類別，可以直接排序存放在ByteBuffer(包含Direct ByteBuffer)中的記錄，不需要將每筆記錄轉成物件。特色如下：
+ * </p>
+ * <ol>
+ * <li>只會排序由(鍵值前綴, 記錄索引)組成的索引陣列，不會在排序過程中搬動記錄本身。</li>
+ * <li>排序完成後可以用getIndexes取得排序後的記錄索引，或是用applyPermutation將記錄在原本的緩衝區中就地重新排列。</li>
+ * <li>鍵值長度超過8個位元組時，前綴相同的記錄會再比較剩餘的鍵值位元組。</li>
+ * <li>可以使用setAlgorithm來改變排序演算法，在排序過程中還可用getProgress或setProgressListener來取得排序進度。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ * @see MagicSort
+ */
+public final class RecordSort {
+
+    // -----類別列舉-----
+    /**
+     * 鍵值的型態。
+     */
+    public static enum KeyType {
+        /**
+         * 無號的位元組序列，以字典順序比較，長度不限。
+         */
+        BYTES,
+        /**
+         * 32位元的有號整數，依照緩衝區的位元組順序讀取。
+         */
+        INT,
+        /**
+         * 64位元的有號整數，依照緩衝區的位元組順序讀取。
+         */
+        LONG,
+        /**
+         * 64位元的浮點數，依照緩衝區的位元組順序讀取，排序結果與Double.compare一致。
+         */
+        DOUBLE
+    }
+
+    // -----物件常數-----
+    private final ByteBuffer buffer; //存放記錄的緩衝區
+    private final int base; //第一筆記錄在緩衝區中的位置
+    private final int recordLength; //每筆記錄的長度
+    private final int recordCount; //記錄的數量
+    private final int keyOffset; //鍵值在記錄中的位置
+    private final int keyLength; //鍵值的長度
+    private final KeyType keyType; //鍵值的型態
+    private final ProgressTracker progress = new ProgressTracker(); //儲存排序進度
+
+    // -----物件變數-----
+    private long[] keys; //鍵值前綴
+    private int[] indexes; //記錄索引
+    private boolean sorting; //儲存是否正在排序中
+    private Algorithm algorithm = Algorithm.QUICKSORT_OPTIMIZED; //儲存排序時使用的演算法
+
+    // -----類別方法-----
+    /**
+     * 取得數值型態鍵值的長度。在建構子委派之前檢查鍵值的型態。
+     *
+     * @param keyType 傳入鍵值的型態
+     * @return 傳回鍵值的長度
+     * @throws IllegalArgumentException 鍵值的型態為null或BYTES時拋出
+     */
+    private static int numericKeyLength(final KeyType keyType) {
+        if (keyType == null) {
+            throw new IllegalArgumentException("key type must not be null");
+        }
+        switch (keyType) {
+            case INT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                throw new IllegalArgumentException("BYTES keys need an explicit key length");
+        }
+    }
+
+    // -----建構子-----
+    /**
+     * 建構子，鍵值視為無號的位元組序列。緩衝區從position到limit之間的資料會被當作記錄。
+     *
+     * @param buffer 傳入存放記錄的緩衝區
+     * @param recordLength 傳入每筆記錄的長度
+     * @param keyOffset 傳入鍵值在記錄中的位置
+     * @param keyLength 傳入鍵值的長度
+     */
+    public RecordSort(final ByteBuffer buffer, final int recordLength, final int keyOffset, final int keyLength) {
+        this(buffer, recordLength, keyOffset, keyLength, KeyType.BYTES);
+    }
+
+    /**
+     * 建構子，鍵值為固定長度的數值型態。緩衝區從position到limit之間的資料會被當作記錄。
+     *
+     * @param buffer 傳入存放記錄的緩衝區
+     * @param recordLength 傳入每筆記錄的長度
+     * @param keyOffset 傳入鍵值在記錄中的位置
+     * @param keyType 傳入鍵值的型態，不可為BYTES
+     * @throws IllegalArgumentException 鍵值的型態為null或BYTES時拋出
+     */
+    public RecordSort(final ByteBuffer buffer, final int recordLength, final int keyOffset, final KeyType keyType) {
+        this(buffer, recordLength, keyOffset, numericKeyLength(keyType), keyType);
+    }
+
+    /**
+     * 建構子。
+     *
+     * @param buffer 傳入存放記錄的緩衝區
+     * @param recordLength 傳入每筆記錄的長度
+     * @param keyOffset 傳入鍵值在記錄中的位置
+     * @param keyLength 傳入鍵值的長度
+     * @param keyType 傳入鍵值的型態
+     */
+    private RecordSort(final ByteBuffer buffer, final int recordLength, final int keyOffset, final int keyLength, final KeyType keyType) {
+        if (recordLength <= 0 || keyOffset < 0 || keyLength <= 0 || keyOffset + keyLength > recordLength) {
+            throw new IllegalArgumentException();
+        }
+        this.buffer = buffer;
+        this.base = buffer.position();
+        this.recordLength = recordLength;
+        this.recordCount = buffer.remaining() / recordLength;
+        this.keyOffset = keyOffset;
+        this.keyLength = keyLength;
+        this.keyType = keyType;
+    }
+
+    // -----物件方法-----
+    /**
+     * 設定排序演算法。目前支援QUICKSORT_OPTIMIZED、QUICKSORT、INSERTIONSORT和MERGESORT，其餘的演算法都會使用QUICKSORT_OPTIMIZED。鍵值不超過8個位元組或是數值型態時，QUICKSORT_OPTIMIZED會使用PrimitiveSort的區塊分割快速排序法。
+     *
+     * @param algorithm 傳入排序演算法，若為null，則使用預設值
+     */
+    public synchronized void setAlgorithm(final Algorithm algorithm) {
+        if (algorithm == null) {
+            this.algorithm = Algorithm.QUICKSORT_OPTIMIZED;
+        } else {
+            this.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * 取得排序演算法。
+     *
+     * @return 傳回排序演算法
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 取得記錄的數量。
+     *
+     * @return 傳回記錄的數量
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 是否正在排序中。
+     *
+     * @return 傳回是否正在排序中。
+     */
+    public boolean isSorting() {
+        return sorting;
+    }
+
+    /**
+     * 取得排序進度。
+     *
+     * @return 傳回進度
+     */
+    public double getProgress() {
+        return progress.getProgress();
+    }
+
+    /**
+     * 設定進度監聽器，排序時每100毫秒發送一次進度事件。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     */
+    public synchronized void setProgressListener(final ProgressListener listener) {
+        setProgressListener(listener, ProgressTracker.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * 設定進度監聽器和發送進度事件的時間間隔。
+     *
+     * @param listener 傳入進度監聽器，若為null，則不發送進度事件
+     * @param interval 傳入發送進度事件的時間間隔(毫秒)，必須大於0
+     */
+    public synchronized void setProgressListener(final ProgressListener listener, final long interval) {
+        progress.setListener(listener, interval);
+    }
+
+    /**
+     * 取得排序後的記錄索引，第i個元素為排序後第i筆記錄在緩衝區中的索引位置。記錄在緩衝區中的位置為position + 索引 * recordLength。
+     *
+     * @return 傳回排序後的記錄索引，若尚未排序則傳回null
+     */
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * 排序索引陣列，不會搬動緩衝區中的記錄。
+     *
+     * @return 傳回排序後的記錄索引
+     */
+    public synchronized int[] sort() {
+        sorting = true;
+        final SortEvent event = new SortEvent();
+        event.begin();
+        final int length = recordCount;
+        keys = new long[length];
+        indexes = new int[length];
+        for (int i = 0; i < length; ++i) {
+            keys[i] = readKeyPrefix(i);
+            indexes[i] = i;
+        }
+        if (length > 1) {
+            progress.start(length);
+            switch (algorithm) {
+                case QUICKSORT:
+                    quickSort(0, length, 1);
+                    break;
+                case INSERTIONSORT:
+                    insertionSort(0, length);
+                    break;
+                case MERGESORT:
+                    mergeSort(0, length);
+                    break;
+                default:
+                    if (keyLength <= 8 || keyType != KeyType.BYTES) { //鍵值前綴可以決定順序時，使用沒有分支的區塊分割
+                        PrimitiveSort.sort(keys, indexes, 0, length, progress);
+                    } else {
+                        quickSort(0, length, MagicSort.DEFAULT_SMALL_SORT_THRESHOLD);
+                    }
+                    break;
+            }
+        } else {
+            progress.start(1);
+        }
+        progress.finish();
+        if (event.shouldCommit()) {
+            event.sorter = RecordSort.class.getSimpleName();
+            event.algorithm = algorithm.name();
+            event.length = recordCount;
+            event.commit();
+        }
+        sorting = false;
+        return indexes;
+    }
+
+    /**
+     * 依照排序後的記錄索引，將緩衝區中的記錄就地重新排列。會沿著置換的循環搬移記錄，只需要額外兩筆記錄大小的暫存空間。完成後索引陣列會變回0, 1, 2, ...。
+     */
+    public synchronized void applyPermutation() {
+        if (indexes == null) {
+            sort();
+        }
+        final int length = recordCount;
+        final ByteBuffer src = buffer.duplicate();
+        final ByteBuffer dst = buffer.duplicate();
+        final byte[] first = new byte[recordLength];
+        final byte[] temp = new byte[recordLength];
+        for (int i = 0; i < length; ++i) {
+            int k = indexes[i];
+            if (k == i || k < 0) {
+                continue;
+            }
+            readRecord(src, i, first);
+            int j = i;
+            while (k != i) {
+                readRecord(src, k, temp);
+                writeRecord(dst, j, temp);
+                indexes[j] = ~k; //標記為已搬移
+                j = k;
+                k = indexes[j];
+            }
+            writeRecord(dst, j, first);
+            indexes[j] = ~i;
+        }
+        for (int i = 0; i < length; ++i) {
+            indexes[i] = i;
+            keys[i] = readKeyPrefix(i);
+        }
+    }
+
+    /**
+     * 讀取一筆記錄。
+     *
+     * @param b 傳入緩衝區
+     * @param index 傳入記錄索引
+     * @param record 傳入用來存放記錄的陣列
+     */
+    private void readRecord(final ByteBuffer b, final int index, final byte[] record) {
+        b.position(base + index * recordLength);
+        b.get(record);
+    }
+
+    /**
+     * 寫入一筆記錄。
+     *
+     * @param b 傳入緩衝區
+     * @param index 傳入記錄索引
+     * @param record 傳入要寫入的記錄
+     */
+    private void writeRecord(final ByteBuffer b, final int index, final byte[] record) {
+        b.position(base + index * recordLength);
+        b.put(record);
+    }
+
+    /**
+     * 讀取記錄的鍵值前綴，轉換成可以直接用有號長整數比較大小的數值。
+     *
+     * @param index 傳入記錄索引
+     * @return 傳回鍵值前綴
+     */
+    private long readKeyPrefix(final int index) {
+        final int p = base + index * recordLength + keyOffset;
+        switch (keyType) {
+            case INT:
+                return buffer.getInt(p);
+            case LONG:
+                return buffer.getLong(p);
+            case DOUBLE: {
+                final long bits = Double.doubleToLongBits(buffer.getDouble(p));
+                return bits ^ ((bits >> 63) & 0x7FFFFFFFFFFFFFFFL);
+            }
+            default: {
+                long prefix = 0;
+                final int l = Math.min(keyLength, 8);
+                for (int i = 0; i < l; ++i) {
+                    prefix = (prefix << 8) | (buffer.get(p + i) & 0xFF);
+                }
+                prefix <<= (8 - l) * 8;
+                return prefix ^ Long.MIN_VALUE; //翻轉符號位元，讓無號的比較可以用有號的方式進行
+            }
+        }
+    }
+
+    /**
+     * 比較兩筆記錄的鍵值。前綴不同時直接比較前綴，否則再比較剩餘的鍵值位元組。
+     *
+     * @param k1 鍵值前綴1
+     * @param i1 記錄索引1
+     * @param k2 鍵值前綴2
+     * @param i2 記錄索引2
+     * @return 大於0，表示記錄1比記錄2大；等於0，表示記錄1和記錄2一樣大；小於0，表示記錄1比記錄2小
+     */
+    private int compare(final long k1, final int i1, final long k2, final int i2) {
+        if (k1 != k2) {
+            return k1 < k2 ? -1 : 1;
+        }
+        if (keyLength <= 8 || keyType != KeyType.BYTES) {
+            return 0;
+        }
+        final int p1 = base + i1 * recordLength + keyOffset, p2 = base + i2 * recordLength + keyOffset;
+        for (int i = 8; i < keyLength; ++i) {
+            final int b1 = buffer.get(p1 + i) & 0xFF, b2 = buffer.get(p2 + i) & 0xFF;
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 比較索引陣列中a,b位置的記錄。
+     *
+     * @param a 索引a
+     * @param b 索引b
+     * @return 比較結果
+     */
+    private int compareAt(final int a, final int b) {
+        return compare(keys[a], indexes[a], keys[b], indexes[b]);
+    }
+
+    /**
+     * 交換索引陣列中a,b位置的資料。
+     *
+     * @param a 索引a
+     * @param b 索引b
+     */
+    private void swap(final int a, final int b) {
+        final long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        final int i = indexes[a];
+        indexes[a] = indexes[b];
+        indexes[b] = i;
+    }
+
+    /**
+     * 在某範圍內取得隨機的值。
+     *
+     * @param min 最小值
+     * @param max 最大值
+     * @return min~max中的隨機整數
+     */
+    private int random(final int min, final int max) {
+        final int l = max - min + 1;
+        return (int) (l * Math.random()) + min;
+    }
+
+    /**
+     * 無遞迴的快速排序法，與MagicSort的QUICKSORT_OPTIMIZED相同，採用隨機pivot並在元素數量不超過threshold時使用排序網路。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     * @param threshold 使用排序網路的元素數量上限，不可超過SortingNetworks.MAX_SIZE
+     */
+    private void quickSort(final int start, final int end, final int threshold) {
+        final int[] stack = new int[end - start + 1]; // 建立堆疊空間
+        int top = -1;
+        int s, e;
+        stack[++top] = start;
+        stack[++top] = end - 1;
+        while (top >= 0) {
+            e = stack[top--];
+            s = stack[top--];
+            int tempSortedLength = (e - s + 1);
+            swap(random(s, e), s); // 先將random出來的pivot與最左邊交換
+            final long xk = keys[s]; // pivot
+            final int xi = indexes[s];
+            int l = s + 1;
+            int r = e;
+            while (true) {
+                while (r > s && compare(keys[r], indexes[r], xk, xi) >= 0) {
+                    --r;
+                }
+                while (l <= r && compare(keys[l], indexes[l], xk, xi) <= 0) {
+                    ++l;
+                }
+                if (l < r) {
+                    swap(l, r);
+                } else {
+                    if (r > s) {
+                        swap(r, s);
+                    }
+                    break;
+                }
+            }
+
+            final int ls = s, le = r - 1;
+            final int rs = r + 1, re = e;
+            final int ll = le - ls + 1, rl = re - rs + 1;
+            if (ll > 1) {
+                tempSortedLength -= ll;
+            }
+            if (rl > 1) {
+                tempSortedLength -= rl;
+            }
+            progress.add(tempSortedLength);
+            if (ll > threshold) {
+                stack[++top] = ls;
+                stack[++top] = le;
+            } else if (ll > 1) {
+                networkSort(ls, ll);
+            }
+            if (rl > threshold) {
+                stack[++top] = rs;
+                stack[++top] = re;
+            } else if (rl > 1) {
+                networkSort(rs, rl);
+            }
+        }
+    }
+
+    /**
+     * 用排序網路排序很小的範圍。鍵值前綴可以決定順序時，比較交換不需要分支。
+     *
+     * @param start 排序起點位置
+     * @param length 元素數量，不可超過SortingNetworks.MAX_SIZE
+     */
+    private void networkSort(final int start, final int length) {
+        if (keyLength <= 8 || keyType != KeyType.BYTES) {
+            SortingNetworks.sort(keys, indexes, start, length);
+        } else {
+            final int[] network = SortingNetworks.get(length);
+            for (int k = 0; k < network.length; k += 2) {
+                final int a = start + network[k], b = start + network[k + 1];
+                if (compareAt(a, b) > 0) {
+                    swap(a, b);
+                }
+            }
+        }
+        progress.add(length);
+    }
+
+    /**
+     * 插入排序法。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void insertionSort(final int start, final int end) {
+        int reported = 0; //已回報的長度
+        for (int i = start + 1; i < end; ++i) {
+            final long tk = keys[i];
+            final int ti = indexes[i];
+            int j = i - 1;
+            while (j >= start && compare(keys[j], indexes[j], tk, ti) > 0) {
+                keys[j + 1] = keys[j];
+                indexes[j + 1] = indexes[j--];
+            }
+            keys[j + 1] = tk;
+            indexes[j + 1] = ti;
+            if ((i & 0xFF) == 0) {
+                progress.add(i - start - reported);
+                reported = i - start;
+            }
+        }
+        progress.add(end - start - reported);
+    }
+
+    /**
+     * 合併排序法，為穩定排序，鍵值相同的記錄會保持原本的先後順序。
+     *
+     * @param start 排序起點位置
+     * @param end 排序終點位置
+     */
+    private void mergeSort(final int start, final int end) {
+        final int length = end - start;
+        int passes = 0; //合併的總次數
+        for (int i = 1; i < length; i *= 2) {
+            ++passes;
+        }
+        int pass = 0;
+        long reported = 0; //已回報的長度
+        long[] keysFrom = keys, keysTo = new long[keys.length];
+        int[] indexesFrom = indexes, indexesTo = new int[indexes.length];
+
+        for (int i = 1; i < length; i *= 2) {
+            final int ii = i * 2;
+            for (int j = start; j < end; j += ii) {
+                final int m = Math.min(j + i, end);
+                final int e = Math.min(j + ii, end);
+                int ls = j, r = m, k = j;
+                while (ls < m && r < e) {
+                    if (compare(keysFrom[ls], indexesFrom[ls], keysFrom[r], indexesFrom[r]) > 0) {
+                        keysTo[k] = keysFrom[r];
+                        indexesTo[k++] = indexesFrom[r++];
+                    } else {
+                        keysTo[k] = keysFrom[ls];
+                        indexesTo[k++] = indexesFrom[ls++];
+                    }
+                }
+                while (ls < m) {
+                    keysTo[k] = keysFrom[ls];
+                    indexesTo[k++] = indexesFrom[ls++];
+                }
+                while (r < e) {
+                    keysTo[k] = keysFrom[r];
+                    indexesTo[k++] = indexesFrom[r++];
+                }
+            }
+            final long[] tk = keysFrom;
+            keysFrom = keysTo;
+            keysTo = tk;
+            final int[] ti = indexesFrom;
+            indexesFrom = indexesTo;
+            indexesTo = ti;
+            final long done = (long) length * ++pass / passes; //每次合併的工作量都相同
+            progress.add(done - reported);
+            reported = done;
+        }
+        keys = keysFrom;
+        indexes = indexesFrom;
+        progress.add(length - reported);
+    }
+}
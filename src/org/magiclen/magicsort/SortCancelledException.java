@@ -0,0 +1,72 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * 排序被取消時拋出的例外。排序被取消後，陣列中仍然是原本的那些元素，不會遺失或重複，但是順序未定。
+ *
+ * @author Magic Len
+ */
+public class SortCancelledException extends RuntimeException {
+
+    // -----類別列舉-----
+    /**
+     * 取消的原因。
+     */
+    public static enum Reason {
+        /**
+         * 使用CancellationToken或cancel方法取消。
+         */
+        CANCELLED,
+        /**
+         * 超過排序的時間限制。
+         */
+        TIMEOUT,
+        /**
+         * 排序的執行緒被中斷。
+         */
+        INTERRUPTED
+    }
+
+    // -----類別常數-----
+    private static final long serialVersionUID = 1L;
+
+    // -----物件常數-----
+    private final Reason reason; //取消的原因
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param reason 傳入取消的原因
+     */
+    public SortCancelledException(final Reason reason) {
+        super("The sort was cancelled: " + reason);
+        this.reason = reason;
+    }
+
+    // -----物件方法-----
+    /**
+     * 取得取消的原因。
+     *
+     * @return 傳回取消的原因
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * 排序排程器，讓多個MagicSort物件的多執行緒排序共用同一個工作竊取(work-stealing)的執行緒池，避免每個排序都建立自己的執行緒池而超額使用處理器。特色如下：
+ * </p>
+ * <ol>
+ * <li>長度小於直接排序門檻的排序或子區段，會直接在呼叫的執行緒上排序，不會交給執行緒池。</li>
+ * <li>等待執行的工作數量有上限，佇列滿了的時候，子區段會直接在目前的執行緒上排序。</li>
+ * <li>可以取得工作數量、等待中的工作數量、飽和度等指標。</li>
+ * </ol>
+ * <p>
+ * 預設的排程器可以用系統屬性設定：org.magiclen.magicsort.scheduler.parallelism(執行緒數量)、org.magiclen.magicsort.scheduler.maxQueuedTasks(等待中工作數量的上限)和org.magiclen.magicsort.scheduler.inlineThreshold(直接排序門檻)。
+ * </p>
+ *
+ * @author Magic Len
+ * @see MagicSort#setScheduler(SortScheduler)
+ */
+public final class SortScheduler {
+
+    // -----類別常數-----
+    /**
+     * 預設的等待中工作數量上限。
+     */
+    public static final int DEFAULT_MAX_QUEUED_TASKS = 4096;
+    /**
+     * 預設的直接排序門檻。
+     */
+    public static final int DEFAULT_INLINE_THRESHOLD = 8192;
+
+    // -----類別變數-----
+    private static SortScheduler defaultScheduler; //預設的排程器
+
+    // -----類別方法-----
+    /**
+     * 取得預設的排程器，第一次取得時才會依照系統屬性建立。
+     *
+     * @return 傳回預設的排程器
+     */
+    public static synchronized SortScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new SortScheduler(Integer.getInteger("org.magiclen.magicsort.scheduler.parallelism", Runtime.getRuntime().availableProcessors()), Integer.getInteger("org.magiclen.magicsort.scheduler.maxQueuedTasks", DEFAULT_MAX_QUEUED_TASKS), Integer.getInteger("org.magiclen.magicsort.scheduler.inlineThreshold", DEFAULT_INLINE_THRESHOLD));
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * 設定預設的排程器，沒有另外設定排程器的MagicSort物件都會使用它。原本的預設排程器不會被關閉。
+     *
+     * @param scheduler 傳入排程器，若為null，則下次取得時重新建立
+     */
+    public static synchronized void setDefault(final SortScheduler scheduler) {
+        defaultScheduler = scheduler;
+    }
+
+    // -----物件常數-----
+    private final ForkJoinPool pool; //工作竊取的執行緒池
+    private final int maxQueuedTasks; //等待中工作數量的上限
+    private final int inlineThreshold; //直接排序門檻
+    private final Semaphore queuePermits; //等待中工作的許可
+    private final LongAdder submittedTasks = new LongAdder(); //交給執行緒池的工作數量
+    private final LongAdder inlineSorts = new LongAdder(); //因為長度小於門檻而直接排序的數量
+    private final LongAdder rejectedTasks = new LongAdder(); //因為佇列已滿而直接排序的數量
+
+    // -----建構子-----
+    /**
+     * 建構子，使用和處理器數量相同的執行緒以及預設的佇列上限和直接排序門檻。
+     */
+    public SortScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_QUEUED_TASKS, DEFAULT_INLINE_THRESHOLD);
+    }
+
+    /**
+     * 建構子。
+     *
+     * @param parallelism 傳入執行緒數量，必須大於0
+     * @param maxQueuedTasks 傳入等待中工作數量的上限，必須大於0
+     * @param inlineThreshold 傳入直接排序門檻，長度小於它的排序或子區段會直接在目前的執行緒上排序
+     */
+    public SortScheduler(final int parallelism, final int maxQueuedTasks, final int inlineThreshold) {
+        if (parallelism <= 0 || maxQueuedTasks <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("MagicSort-Scheduler-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true); //工作不會被合併等待，所以使用先進先出的模式
+        this.maxQueuedTasks = maxQueuedTasks;
+        this.inlineThreshold = Math.max(2, inlineThreshold);
+        this.queuePermits = new Semaphore(maxQueuedTasks);
+    }
+
+    // -----物件方法-----
+    /**
+     * 判斷指定長度的排序或子區段是否應該直接在目前的執行緒上排序。
+     *
+     * @param length 傳入長度
+     * @return 傳回是否直接排序
+     */
+    boolean shouldInline(final int length) {
+        if (length < inlineThreshold) {
+            inlineSorts.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 嘗試將工作交給執行緒池。等待中的工作數量已達上限或是排程器已關閉時，不會執行工作。
+     *
+     * @param task 傳入工作
+     * @return 傳回工作是否已交給執行緒池，若為false，呼叫者必須自己執行工作
+     */
+    boolean trySubmit(final Runnable task) {
+        if (pool.isShutdown() || !queuePermits.tryAcquire()) {
+            rejectedTasks.increment();
+            return false;
+        }
+        try {
+            pool.execute(() -> {
+                queuePermits.release(); //開始執行之後就不算是等待中的工作
+                task.run();
+            });
+        } catch (final RuntimeException ex) {
+            queuePermits.release();
+            rejectedTasks.increment();
+            return false;
+        }
+        submittedTasks.increment();
+        return true;
+    }
+
+    /**
+     * 關閉排程器，已交給執行緒池的工作仍會執行完畢，之後的工作都會直接在呼叫的執行緒上排序。
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 等待排程器關閉後所有的工作執行完畢。
+     *
+     * @param timeout 傳入最長的等待時間
+     * @param unit 傳入時間單位
+     * @return 傳回是否所有的工作都已執行完畢
+     * @throws InterruptedException 等待時被中斷
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 是否已關閉。
+     *
+     * @return 傳回是否已關閉
+     */
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * 取得執行緒數量。
+     *
+     * @return 傳回執行緒數量
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * 取得等待中工作數量的上限。
+     *
+     * @return 傳回等待中工作數量的上限
+     */
+    public int getMaxQueuedTasks() {
+        return maxQueuedTasks;
+    }
+
+    /**
+     * 取得直接排序門檻。
+     *
+     * @return 傳回直接排序門檻
+     */
+    public int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    /**
+     * 取得正在執行工作的執行緒數量。
+     *
+     * @return 傳回執行緒數量
+     */
+    public int getActiveThreadCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    /**
+     * 取得等待中的工作數量。
+     *
+     * @return 傳回工作數量
+     */
+    public int getQueuedTaskCount() {
+        return maxQueuedTasks - queuePermits.availablePermits();
+    }
+
+    /**
+     * 取得飽和度，也就是等待中的工作數量佔上限的比例。接近1時表示新的子區段大多會直接在目前的執行緒上排序。
+     *
+     * @return 傳回0到1之間的飽和度
+     */
+    public double getSaturation() {
+        return (double) getQueuedTaskCount() / maxQueuedTasks;
+    }
+
+    /**
+     * 取得被其他執行緒竊取的工作數量。
+     *
+     * @return 傳回工作數量
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    /**
+     * 取得交給執行緒池的工作數量。
+     *
+     * @return 傳回工作數量
+     */
+    public long getSubmittedTaskCount() {
+        return submittedTasks.sum();
+    }
+
+    /**
+     * 取得因為長度小於直接排序門檻而直接排序的數量。
+     *
+     * @return 傳回數量
+     */
+    public long getInlineSortCount() {
+        return inlineSorts.sum();
+    }
+
+    /**
+     * 取得因為佇列已滿或排程器已關閉而直接排序的數量。
+     *
+     * @return 傳回數量
+     */
+    public long getRejectedTaskCount() {
+        return rejectedTasks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SortScheduler[parallelism=" + getParallelism() + ", active=" + getActiveThreadCount() + ", queued=" + getQueuedTaskCount() + "/" + maxQueuedTasks + ", saturation=" + String.format("%.2f", getSaturation()) + ", submitted=" + getSubmittedTaskCount() + ", inline=" + getInlineSortCount() + ", rejected=" + getRejectedTaskCount() + ", steals=" + getStealCount() + "]";
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+
+/**
+ * 排序的統計資料，記錄一次排序的比較次數、交換和搬移次數、快速排序的區段資訊、多執行緒工作數量以及各個階段的耗時。只有在啟用統計模式之後排序才會產生統計資料。
+ *
+ * @author Magic Len
+ * @see MagicSort#setStatisticsEnabled(boolean)
+ */
+public final class SortStatistics {
+
+    // -----類別列舉-----
+    /**
+     * 排序的階段。
+     */
+    public static enum Phase {
+        /**
+         * 準備階段，包含複製資料。
+         */
+        PREPARE,
+        /**
+         * 執行排序演算法。
+         */
+        SORT,
+        /**
+         * 等待多執行緒的排序工作全部完成。
+         */
+        WAIT,
+        /**
+         * 呼叫排序完成的回呼物件。
+         */
+        CALLBACK
+    }
+
+    // -----類別類別-----
+    /**
+     * 計算比較次數的比較器。
+     *
+     * @param <T> 要比較的類別
+     */
+    private static final class CountingComparator<T> implements Comparator<T> {
+
+        private final Comparator<T> comparator; //實際進行比較的比較器
+        private final LongAdder comparisons; //比較次數
+
+        /**
+         * 建構子。
+         *
+         * @param comparator 傳入實際進行比較的比較器
+         * @param comparisons 傳入比較次數的計數器
+         */
+        CountingComparator(final Comparator<T> comparator, final LongAdder comparisons) {
+            this.comparator = comparator;
+            this.comparisons = comparisons;
+        }
+
+        @Override
+        public int compare(final T t1, final T t2) {
+            comparisons.increment();
+            return comparator.compare(t1, t2);
+        }
+    }
+
+    // -----物件常數-----
+    private final Algorithm algorithm; //使用的演算法
+    private final int length; //排序的長度
+    private final LongAdder comparisons = new LongAdder(); //比較次數
+    private final LongAdder swaps = new LongAdder(); //交換次數
+    private final LongAdder moves = new LongAdder(); //搬移次數
+    private final LongAdder partitions = new LongAdder(); //快速排序的分割次數
+    private final LongAdder smallRangeSorts = new LongAdder(); //小範圍改用排序網路的次數
+    private final LongAdder parallelTasks = new LongAdder(); //多執行緒的工作數量
+    private final AtomicInteger maxPartitionDepth = new AtomicInteger(); //最大的區段深度
+    private final long[] phaseTimes = new long[Phase.values().length]; //各階段的耗時(奈秒)
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param algorithm 傳入使用的演算法
+     * @param length 傳入排序的長度
+     */
+    SortStatistics(final Algorithm algorithm, final int length) {
+        this.algorithm = algorithm;
+        this.length = length;
+    }
+
+    // -----物件方法-----
+    /**
+     * 包裝比較器，讓每次比較都會被計數。
+     *
+     * @param <T> 要比較的類別
+     * @param comparator 傳入比較器
+     * @return 傳回會計算比較次數的比較器
+     */
+    <T> Comparator<T> wrap(final Comparator<T> comparator) {
+        return new CountingComparator<>(comparator, comparisons);
+    }
+
+    /**
+     * 記錄交換次數。
+     *
+     * @param count 傳入交換次數
+     */
+    void addSwaps(final long count) {
+        swaps.add(count);
+    }
+
+    /**
+     * 記錄搬移次數。
+     *
+     * @param count 傳入搬移次數
+     */
+    void addMoves(final long count) {
+        moves.add(count);
+    }
+
+    /**
+     * 記錄一次快速排序的分割。
+     *
+     * @param swapCount 傳入這次分割的交換次數
+     * @param depth 傳入這次分割的區段深度
+     */
+    void addPartition(final int swapCount, final int depth) {
+        partitions.increment();
+        swaps.add(swapCount);
+        int max;
+        while ((max = maxPartitionDepth.get()) < depth && !maxPartitionDepth.compareAndSet(max, depth)) {
+        }
+    }
+
+    /**
+     * 記錄一次小範圍的排序網路排序。
+     */
+    void addSmallRangeSort() {
+        smallRangeSorts.increment();
+    }
+
+    /**
+     * 記錄一個多執行緒的工作。
+     */
+    void addParallelTask() {
+        parallelTasks.increment();
+    }
+
+    /**
+     * 記錄階段的耗時。
+     *
+     * @param phase 傳入階段
+     * @param nanos 傳入耗時(奈秒)
+     */
+    void addPhaseTime(final Phase phase, final long nanos) {
+        phaseTimes[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * 取得使用的演算法。
+     *
+     * @return 傳回使用的演算法
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 取得排序的長度。
+     *
+     * @return 傳回排序的長度
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 取得比較次數。
+     *
+     * @return 傳回比較次數
+     */
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    /**
+     * 取得資訊理論的比較次數下限，也就是ceil(log<sub>2</sub>(n!))。任何以比較為基礎的排序演算法，在最差的情況下都至少需要這麼多次比較，可以用來評估MERGE_INSERTION等演算法的比較次數。
+     *
+     * @return 傳回比較次數的下限
+     */
+    public long getComparisonLowerBound() {
+        double bits = 0;
+        for (int i = 2; i <= length; ++i) {
+            bits += Math.log(i);
+        }
+        return (long) Math.ceil(bits / Math.log(2) - 1e-9); //扣掉誤差，避免剛好是整數時多算一次
+    }
+
+    /**
+     * 取得兩個元素互相交換的次數。
+     *
+     * @return 傳回交換次數
+     */
+    public long getSwaps() {
+        return swaps.sum();
+    }
+
+    /**
+     * 取得單一元素的搬移次數，插入排序法和合併排序法不是用交換的方式移動元素。
+     *
+     * @return 傳回搬移次數
+     */
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * 取得快速排序的分割次數。
+     *
+     * @return 傳回分割次數
+     */
+    public long getPartitions() {
+        return partitions.sum();
+    }
+
+    /**
+     * 取得最大的區段深度。多執行緒的快速排序為分割的遞迴深度，其他無遞迴的快速排序則為堆疊中同時等待處理的區段數量。
+     *
+     * @return 傳回最大的區段深度
+     */
+    public int getMaxPartitionDepth() {
+        return maxPartitionDepth.get();
+    }
+
+    /**
+     * 取得快速排序中，小範圍的區段改用排序網路的次數。
+     *
+     * @return 傳回次數
+     */
+    public long getSmallRangeSorts() {
+        return smallRangeSorts.sum();
+    }
+
+    /**
+     * 取得多執行緒排序時建立的工作數量。
+     *
+     * @return 傳回工作數量
+     */
+    public long getParallelTasks() {
+        return parallelTasks.sum();
+    }
+
+    /**
+     * 取得階段的耗時。
+     *
+     * @param phase 傳入階段
+     * @return 傳回耗時(奈秒)
+     */
+    public long getPhaseTime(final Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * 取得所有階段的總耗時。
+     *
+     * @return 傳回總耗時(奈秒)
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (final long time : phaseTimes) {
+            total += time;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(algorithm).append(" length=").append(length);
+        sb.append(" comparisons=").append(getComparisons());
+        sb.append(" comparisonLowerBound=").append(getComparisonLowerBound());
+        sb.append(" swaps=").append(getSwaps());
+        sb.append(" moves=").append(getMoves());
+        sb.append(" partitions=").append(getPartitions());
+        sb.append(" maxPartitionDepth=").append(getMaxPartitionDepth());
+        sb.append(" smallRangeSorts=").append(getSmallRangeSorts());
+        sb.append(" parallelTasks=").append(getParallelTasks());
+        for (final Phase phase : Phase.values()) {
+            sb.append(' ').append(phase.name().toLowerCase()).append("Nanos=").append(getPhaseTime(phase));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * 排序網路，用固定順序的比較交換來排序2到16個元素。比較的順序與資料無關，因此比選擇排序法或插入排序法更少分支預測錯誤，比較次數也是目前已知最少或接近最少的。
+ *
+ * @author Magic Len
+ */
+final class SortingNetworks {
+
+    // -----類別常數-----
+    /**
+     * 排序網路可以排序的最大元素數量。
+     */
+    static final int MAX_SIZE = 16;
+    /**
+     * 2到16個元素的排序網路，每兩個數字為一組比較交換的位置，同一層的比較交換互不相關。
+     */
+    private static final int[][] NETWORKS = {
+        {},
+        {},
+        {0, 1}, //2個元素，1次比較
+        {0, 2, 0, 1, 1, 2}, //3個元素，3次比較
+        {0, 2, 1, 3, 0, 1, 2, 3, 1, 2}, //4個元素，5次比較
+        {0, 3, 1, 4, 0, 2, 1, 3, 0, 1, 2, 4, 1, 2, 3, 4, 2, 3}, //5個元素，9次比較
+        {0, 5, 1, 3, 2, 4, 1, 2, 3, 4, 0, 3, 2, 5, 0, 1, 2, 3, 4, 5, 1, 2, 3, 4}, //6個元素，12次比較
+        {0, 6, 2, 3, 4, 5, 0, 2, 1, 4, 3, 6, 0, 1, 2, 5, 3, 4, 1, 2, 4, 6, 2, 3, 4, 5, 1, 2, 3, 4, 5, 6}, //7個元素，16次比較
+        {0, 2, 1, 3, 4, 6, 5, 7, 0, 4, 1, 5, 2, 6, 3, 7, 0, 1, 2, 3, 4, 5, 6, 7, 2, 4, 3, 5, 1, 4, 3, 6, 1, 2, 3, 4, 5, 6}, //8個元素，19次比較
+        {0, 3, 1, 7, 2, 5, 4, 8, 0, 7, 2, 4, 3, 8, 5, 6, 0, 2, 1, 3, 4, 5, 7, 8, 1, 4, 3, 6, 5, 7, 0, 1, 2, 4, 3, 5, 6, 8, 2, 3, 4, 5, 6, 7, 1, 2, 3, 4, 5, 6}, //9個元素，25次比較
+        {0, 8, 1, 9, 2, 7, 3, 5, 4, 6, 0, 2, 1, 4, 5, 8, 7, 9, 0, 3, 2, 4, 5, 7, 6, 9, 0, 1, 3, 6, 8, 9, 1, 5, 2, 3, 4, 8, 6, 7, 1, 2, 3, 5, 4, 6, 7, 8, 2, 3, 4, 5, 6, 7, 3, 4, 5, 6}, //10個元素，29次比較
+        {0, 9, 1, 6, 2, 4, 3, 7, 5, 8, 0, 1, 3, 5, 4, 10, 6, 9, 7, 8, 1, 3, 2, 5, 4, 7, 8, 10, 0, 4, 1, 2, 3, 7, 5, 9, 6, 8, 0, 1, 2, 6, 4, 5, 7, 8, 9, 10, 2, 4, 3, 6, 5, 7, 8, 9, 1, 2, 3, 4, 5, 6, 7, 8, 2, 3, 4, 5, 6, 7}, //11個元素，35次比較
+        {0, 8, 1, 7, 2, 6, 3, 11, 4, 10, 5, 9, 0, 1, 2, 5, 3, 4, 6, 9, 7, 8, 10, 11, 0, 2, 1, 6, 5, 10, 9, 11, 0, 3, 1, 2, 4, 6, 5, 7, 8, 11, 9, 10, 1, 4, 3, 5, 6, 8, 7, 10, 1, 3, 2, 5, 6, 9, 8, 10, 2, 3, 4, 5, 6, 7, 8, 9, 4, 6, 5, 7, 3, 4, 5, 6, 7, 8}, //12個元素，39次比較
+        {0, 12, 1, 10, 2, 9, 3, 7, 5, 11, 6, 8, 1, 6, 2, 3, 4, 11, 7, 9, 8, 10, 0, 4, 1, 2, 3, 6, 7, 8, 9, 10, 11, 12, 4, 6, 5, 9, 8, 11, 10, 12, 0, 5, 3, 8, 4, 7, 6, 11, 9, 10, 0, 1, 2, 5, 6, 9, 7, 8, 10, 11, 1, 3, 2, 4, 5, 6, 9, 10, 1, 2, 3, 4, 5, 7, 6, 8, 2, 3, 4, 5, 6, 7, 8, 9, 3, 4, 5, 6}, //13個元素，45次比較
+        {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 0, 2, 1, 3, 4, 8, 5, 9, 10, 12, 11, 13, 0, 4, 1, 2, 3, 7, 5, 8, 6, 10, 9, 13, 11, 12, 0, 6, 1, 5, 3, 9, 4, 10, 7, 13, 8, 12, 2, 10, 3, 11, 4, 6, 7, 9, 1, 3, 2, 8, 5, 11, 6, 7, 10, 12, 1, 4, 2, 6, 3, 5, 7, 11, 8, 10, 9, 12, 2, 4, 3, 6, 5, 8, 7, 10, 9, 11, 3, 4, 5, 6, 7, 8, 9, 10, 6, 7}, //14個元素，51次比較
+        {0, 6, 1, 10, 2, 14, 3, 9, 4, 12, 5, 13, 7, 11, 0, 7, 2, 5, 3, 4, 6, 11, 8, 10, 9, 12, 13, 14, 1, 13, 2, 3, 4, 6, 5, 9, 7, 8, 10, 14, 11, 12, 0, 3, 1, 4, 5, 7, 6, 13, 8, 9, 10, 11, 12, 14, 0, 2, 1, 5, 3, 8, 4, 6, 7, 10, 9, 11, 12, 13, 0, 1, 2, 5, 3, 10, 4, 8, 6, 7, 9, 12, 11, 13, 1, 2, 3, 4, 5, 6, 7, 9, 8, 10, 11, 12, 3, 5, 4, 6, 7, 8, 9, 10, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, //15個元素，57次比較
+        {0, 5, 1, 4, 2, 12, 3, 13, 6, 7, 8, 9, 10, 15, 11, 14, 0, 2, 1, 10, 3, 6, 4, 7, 5, 14, 8, 11, 9, 12, 13, 15, 0, 8, 1, 3, 2, 11, 4, 13, 5, 9, 6, 10, 7, 15, 12, 14, 0, 1, 2, 4, 3, 8, 5, 6, 7, 12, 9, 10, 11, 13, 14, 15, 1, 3, 2, 5, 4, 8, 6, 9, 7, 11, 10, 13, 12, 14, 1, 2, 3, 5, 4, 11, 6, 8, 7, 9, 10, 12, 13, 14, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 4, 6, 5, 7, 8, 10, 9, 11, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12} //16個元素，61次比較
+    };
+
+    // -----類別方法-----
+    /**
+     * 取得排序網路。
+     *
+     * @param size 傳入元素數量，必須在0到MAX_SIZE之間
+     * @return 傳回比較交換的位置，每兩個數字為一組，前面的位置會放比較小的元素
+     */
+    static int[] get(final int size) {
+        return NETWORKS[size];
+    }
+
+    /**
+     * 用排序網路排序long陣列的某範圍，比較交換使用Math.min和Math.max，不需要分支。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param size 傳入元素數量，必須在0到MAX_SIZE之間
+     */
+    static void sort(final long[] array, final int start, final int size) {
+        final int[] network = NETWORKS[size];
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final long va = array[a], vb = array[b];
+            array[a] = Math.min(va, vb);
+            array[b] = Math.max(va, vb);
+        }
+    }
+
+    /**
+     * 用排序網路排序int陣列的某範圍，比較交換使用Math.min和Math.max，不需要分支。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param size 傳入元素數量，必須在0到MAX_SIZE之間
+     */
+    static void sort(final int[] array, final int start, final int size) {
+        final int[] network = NETWORKS[size];
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final int va = array[a], vb = array[b];
+            array[a] = Math.min(va, vb);
+            array[b] = Math.max(va, vb);
+        }
+    }
+
+    /**
+     * 用排序網路排序float陣列的某範圍，範圍中不可以有NaN，-0.0與0.0視為相等。比較交換使用條件運算式而不是分支，JIT會將它們編譯成條件搬移指令。
+     *
+     * @param array 傳入陣列
+     * @param start 傳入排序起點位置
+     * @param size 傳入元素數量，必須在0到MAX_SIZE之間
+     */
+    static void sort(final float[] array, final int start, final int size) {
+        final int[] network = NETWORKS[size];
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final float va = array[a], vb = array[b];
+            final boolean greater = va > vb;
+            array[a] = greater ? vb : va;
+            array[b] = greater ? va : vb;
+        }
+    }
+
+    /**
+     * 用排序網路排序鍵值和索引陣列的某範圍，鍵值相同的元素順序不固定。比較交換使用條件運算式而不是分支，JIT會將它們編譯成條件搬移指令。
+     *
+     * @param keys 傳入鍵值陣列
+     * @param indexes 傳入跟著鍵值移動的索引陣列
+     * @param start 傳入排序起點位置
+     * @param size 傳入元素數量，必須在0到MAX_SIZE之間
+     */
+    static void sort(final long[] keys, final int[] indexes, final int start, final int size) {
+        final int[] network = NETWORKS[size];
+        for (int k = 0; k < network.length; k += 2) {
+            final int a = start + network[k], b = start + network[k + 1];
+            final long ka = keys[a], kb = keys[b];
+            final int ia = indexes[a], ib = indexes[b];
+            final boolean greater = ka > kb;
+            keys[a] = greater ? kb : ka;
+            keys[b] = greater ? ka : kb;
+            indexes[a] = greater ? ib : ia;
+            indexes[b] = greater ? ia : ib;
+        }
+    }
+
+    // -----建構子-----
+    /**
+     * 私有的建構子，將無法被實體化。
+     */
+    private SortingNetworks() {
+    }
+}
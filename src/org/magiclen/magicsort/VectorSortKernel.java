@@ -0,0 +1,74 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort;
+
+/**
+ * <p>
+ * 向量化排序核心的服務介面。PrimitiveSort會用ServiceLoader尋找實作這個介面的類別，若找到並且isSupported傳回true，排序int、long和float陣列時就會交給它處理；否則使用純量的區塊分割快速排序法。
+ * </p>
+ *
+ * <p>
+ * 實作必須是無狀態而且執行緒安全的，並且只能將範圍中的元素遞增排序，不可以改變元素的值。float陣列的範圍中不會有NaN，-0.0與0.0視為相等，它們的順序會在之後由PrimitiveSort統一調整，因此結果會與純量的排序完全相同。
+ * </p>
+ *
+ * @author Magic Len
+ * @see PrimitiveSort#isVectorized()
+ */
+public interface VectorSortKernel {
+
+    /**
+     * 取得核心的名稱。
+     *
+     * @return 傳回核心的名稱
+     */
+    String getName();
+
+    /**
+     * 檢查目前的執行環境是否可以使用這個核心，例如所需的模組是否存在、向量的長度是否足夠。
+     *
+     * @return 傳回是否可以使用
+     */
+    boolean isSupported();
+
+    /**
+     * 遞增排序int陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    void sort(int[] array, int start, int end);
+
+    /**
+     * 遞增排序long陣列的某範圍。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    void sort(long[] array, int start, int end);
+
+    /**
+     * 遞增排序float陣列的某範圍，範圍中不會有NaN。
+     *
+     * @param array 傳入要排序的陣列
+     * @param start 傳入排序起點位置
+     * @param end 傳入排序終點位置
+     */
+    void sort(float[] array, int start, int end);
+}
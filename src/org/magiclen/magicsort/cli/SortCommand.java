@@ -0,0 +1,695 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.magiclen.magicsort.Version;
+import org.magiclen.magicsort.comparators.InverseComparator;
+import org.magiclen.magicsort.comparators.OrderComparator;
+import org.magiclen.magicsort.comparators.StringWithNumberComparator;
+import org.magiclen.magicsort.external.DelimitedSort;
+import org.magiclen.magicsort.external.ExternalSort;
+
+/**
+ * <p>
+ * 類似GNU sort的命令列程式，逐行排序文字檔案或是標準輸入。支援的選項如下：
+ * </p>
+ * <ul>
+ * <li>-V, --version-sort：使用StringWithNumberComparator，以自然順序排序。</li>
+ * <li>-r, --reverse：反轉排序結果。</li>
+ * <li>-u, --unique：比較結果相同的行只輸出輸入中的第一行。</li>
+ * <li>-k, --key=POS1[,POS2]：以第POS1個欄位到第POS2個欄位作為排序依據，欄位從1開始，可以重複指定。</li>
+ * <li>-t, --field-separator=SEP：欄位的分隔字元，預設為連續的空白字元。</li>
+ * <li>--parallel=N：平行度。</li>
+ * <li>-S, --buffer-size=SIZE：記憶體上限，可以使用K、M、G單位，超過時會寫到暫存檔。</li>
+ * <li>-T, --temporary-directory=DIR：暫存目錄。</li>
+ * <li>-o, --output=FILE：將結果寫到檔案，而不是標準輸出。</li>
+ * <li>--columns=SPEC：將輸入視為CSV/TSV等分隔字元檔案，依照有型態的欄位排序，例如2:int,1:natural,3:timestamp:desc。分隔字元預設為逗號，可用-t改變。</li>
+ * <li>--header：第一列為標題，不參與排序。</li>
+ * <li>--timestamp-format=PATTERN：timestamp欄位的格式，預設為ISO-8601。</li>
+ * </ul>
+ *
+ * @author Magic Len
+ */
+public final class SortCommand {
+
+    // -----類別常數-----
+    /**
+     * 執行成功的結束代碼。
+     */
+    public static final int EXIT_SUCCESS = 0;
+    /**
+     * 執行失敗的結束代碼。
+     */
+    public static final int EXIT_FAILURE = 2;
+
+    // -----類別方法-----
+    /**
+     * 程式進入點。
+     *
+     * @param args 傳入命令列參數
+     */
+    public static void main(final String[] args) {
+        System.exit(execute(args));
+    }
+
+    /**
+     * 執行排序命令。
+     *
+     * @param args 傳入命令列參數
+     * @return 傳回結束代碼
+     */
+    public static int execute(final String[] args) {
+        final SortCommand command = new SortCommand();
+        try {
+            if (!command.parse(args)) {
+                return EXIT_SUCCESS;
+            }
+        } catch (final IllegalArgumentException ex) {
+            System.err.println("magicsort: " + ex.getMessage());
+            printUsage(System.err);
+            return EXIT_FAILURE;
+        }
+        try {
+            command.run();
+            return EXIT_SUCCESS;
+        } catch (final IOException | RuntimeException ex) {
+            System.err.println("magicsort: " + ex);
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * 印出使用方式。
+     *
+     * @param out 傳入輸出
+     */
+    private static void printUsage(final PrintStream out) {
+        out.println("Usage: magicsort [OPTION]... [FILE]...");
+        out.println("MagicSort " + Version.getVersion());
+        out.println("  -V, --version-sort           natural sort of numbers within text");
+        out.println("  -r, --reverse                reverse the result of comparisons");
+        out.println("  -u, --unique                 output only the first of an equal run");
+        out.println("  -k, --key=POS1[,POS2]        sort via fields POS1 to POS2 (origin 1)");
+        out.println("  -t, --field-separator=SEP    use SEP instead of blank transitions");
+        out.println("      --parallel=N             sort with N threads");
+        out.println("  -S, --buffer-size=SIZE       memory limit before spilling, e.g. 512M");
+        out.println("  -T, --temporary-directory=DIR  directory for spill files");
+        out.println("  -o, --output=FILE            write result to FILE");
+        out.println("      --columns=SPEC           sort delimited rows by typed columns, e.g.");
+        out.println("                               2:int,1:natural,3:timestamp:desc");
+        out.println("                               (types: int, decimal, string, natural, timestamp)");
+        out.println("      --header                 keep the first row of delimited input on top");
+        out.println("      --timestamp-format=PATTERN  DateTimeFormatter pattern for timestamp columns");
+        out.println("  -h, --help                   display this help and exit");
+        out.println("With no FILE, or when FILE is -, read standard input.");
+        out.println("Lines end at \\n only; a \\r is kept as part of the line, as in GNU sort.");
+    }
+
+    /**
+     * 解析記憶體大小。
+     *
+     * @param size 傳入記憶體大小字串，例如512M
+     * @return 傳回位元組數
+     */
+    private static long parseSize(final String size) {
+        if (size.isEmpty()) {
+            throw new IllegalArgumentException("invalid buffer size");
+        }
+        final char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        long multiplier = 1;
+        String number = size.substring(0, size.length() - 1);
+        switch (unit) {
+            case 'B':
+                break;
+            case 'K':
+                multiplier = 1024L;
+                break;
+            case 'M':
+                multiplier = 1024L * 1024;
+                break;
+            case 'G':
+                multiplier = 1024L * 1024 * 1024;
+                break;
+            default:
+                multiplier = 1024L; //與GNU sort相同，沒有單位時為KiB
+                number = size;
+                break;
+        }
+        try {
+            final long value = Long.parseLong(number) * multiplier;
+            if (value <= 0) {
+                throw new IllegalArgumentException("invalid buffer size: " + size);
+            }
+            return value;
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid buffer size: " + size);
+        }
+    }
+
+    /**
+     * 解析正整數。
+     *
+     * @param value 傳入字串
+     * @param name 傳入參數名稱
+     * @return 傳回正整數
+     */
+    private static int parsePositive(final String value, final String name) {
+        try {
+            final int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (final NumberFormatException ex) {
+
+        }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    // -----物件變數-----
+    private boolean natural; //是否使用自然順序
+    private boolean reverse; //是否反轉
+    private boolean unique; //是否只輸出第一行
+    private final List<int[]> keys = new ArrayList<>(); //排序依據的欄位
+    private char separator; //欄位的分隔字元，0表示使用空白字元
+    private int parallelism = 1; //平行度
+    private long memoryLimit = ExternalSort.DEFAULT_MEMORY_LIMIT; //記憶體上限
+    private File tempDirectory; //暫存目錄
+    private String output; //輸出檔案
+    private final List<String> inputs = new ArrayList<>(); //輸入檔案
+    private String columns; //分隔字元檔案的排序欄位
+    private boolean header; //分隔字元檔案的第一列是否為標題
+    private DateTimeFormatter timestampFormat = DateTimeFormatter.ISO_DATE_TIME; //時間欄位的格式
+    private final Charset charset = Charset.defaultCharset(); //文字編碼
+
+    // -----建構子-----
+    /**
+     * 私有建構子，無法直接使用new運算子來實體化。
+     */
+    private SortCommand() {
+
+    }
+
+    // -----物件方法-----
+    /**
+     * 解析命令列參數。
+     *
+     * @param args 傳入命令列參數
+     * @return 傳回是否需要繼續執行排序
+     */
+    private boolean parse(final String[] args) {
+        boolean options = true;
+        for (int i = 0; i < args.length; ++i) {
+            final String arg = args[i];
+            if (!options || arg.equals("-") || !arg.startsWith("-")) {
+                inputs.add(arg);
+            } else if (arg.equals("--")) {
+                options = false;
+            } else if (arg.startsWith("--")) {
+                final int eq = arg.indexOf('=');
+                final String name = eq > 0 ? arg.substring(2, eq) : arg.substring(2);
+                String value = eq > 0 ? arg.substring(eq + 1) : null;
+                switch (name) {
+                    case "version-sort":
+                        natural = true;
+                        break;
+                    case "reverse":
+                        reverse = true;
+                        break;
+                    case "unique":
+                        unique = true;
+                        break;
+                    case "header":
+                        header = true;
+                        break;
+                    case "help":
+                        printUsage(System.out);
+                        return false;
+                    case "columns":
+                    case "timestamp-format":
+                    case "key":
+                    case "field-separator":
+                    case "parallel":
+                    case "buffer-size":
+                    case "temporary-directory":
+                    case "output":
+                        if (value == null) {
+                            if (++i >= args.length) {
+                                throw new IllegalArgumentException("option '--" + name + "' requires an argument");
+                            }
+                            value = args[i];
+                        }
+                        setOption(name, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unrecognized option '" + arg + "'");
+                }
+            } else {
+                for (int j = 1; j < arg.length(); ++j) {
+                    final char c = arg.charAt(j);
+                    switch (c) {
+                        case 'V':
+                            natural = true;
+                            break;
+                        case 'r':
+                            reverse = true;
+                            break;
+                        case 'u':
+                            unique = true;
+                            break;
+                        case 'h':
+                            printUsage(System.out);
+                            return false;
+                        case 'k':
+                        case 't':
+                        case 'S':
+                        case 'T':
+                        case 'o': {
+                            final String value;
+                            if (j + 1 < arg.length()) {
+                                value = arg.substring(j + 1);
+                            } else if (++i < args.length) {
+                                value = args[i];
+                            } else {
+                                throw new IllegalArgumentException("option requires an argument -- '" + c + "'");
+                            }
+                            setOption(c == 'k' ? "key" : c == 't' ? "field-separator" : c == 'S' ? "buffer-size" : c == 'T' ? "temporary-directory" : "output", value);
+                            j = arg.length();
+                            break;
+                        }
+                        default:
+                            throw new IllegalArgumentException("invalid option -- '" + c + "'");
+                    }
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            inputs.add("-");
+        }
+        if (columns != null) {
+            parseColumns();
+        }
+        return true;
+    }
+
+    /**
+     * 設定需要參數的選項。
+     *
+     * @param name 傳入選項名稱
+     * @param value 傳入參數
+     */
+    private void setOption(final String name, final String value) {
+        switch (name) {
+            case "key": {
+                final int comma = value.indexOf(',');
+                final int from = parsePositive(comma >= 0 ? value.substring(0, comma) : value, "field number");
+                final int to = comma >= 0 ? parsePositive(value.substring(comma + 1), "field number") : Integer.MAX_VALUE;
+                if (to < from) {
+                    throw new IllegalArgumentException("invalid key: " + value);
+                }
+                keys.add(new int[]{from, to});
+                break;
+            }
+            case "field-separator":
+                if (value.length() != 1) {
+                    throw new IllegalArgumentException("multi-character tab '" + value + "'");
+                }
+                separator = value.charAt(0);
+                break;
+            case "parallel":
+                parallelism = parsePositive(value, "number of threads");
+                break;
+            case "buffer-size":
+                memoryLimit = parseSize(value);
+                break;
+            case "temporary-directory":
+                tempDirectory = new File(value);
+                break;
+            case "output":
+                output = value;
+                break;
+            case "columns":
+                columns = value;
+                break;
+            case "timestamp-format":
+                try {
+                    timestampFormat = DateTimeFormatter.ofPattern(value);
+                } catch (final IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("invalid timestamp format: " + value);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 解析分隔字元檔案的排序欄位。
+     *
+     * @return 傳回排序欄位
+     */
+    private DelimitedSort.Column[] parseColumns() {
+        final String[] specs = columns.split(",");
+        final DelimitedSort.Column[] result = new DelimitedSort.Column[specs.length];
+        for (int i = 0; i < specs.length; ++i) {
+            final String[] parts = specs[i].trim().split(":");
+            if (parts.length < 2 || parts.length > 3 || (parts.length == 3 && !parts[2].equals("desc") && !parts[2].equals("asc"))) {
+                throw new IllegalArgumentException("invalid column: " + specs[i]);
+            }
+            final DelimitedSort.ColumnType type;
+            switch (parts[1]) {
+                case "int":
+                case "integer":
+                    type = DelimitedSort.ColumnType.INTEGER;
+                    break;
+                case "decimal":
+                case "double":
+                    type = DelimitedSort.ColumnType.DECIMAL;
+                    break;
+                case "string":
+                    type = DelimitedSort.ColumnType.STRING;
+                    break;
+                case "natural":
+                    type = DelimitedSort.ColumnType.NATURAL;
+                    break;
+                case "timestamp":
+                    type = DelimitedSort.ColumnType.TIMESTAMP;
+                    break;
+                default:
+                    throw new IllegalArgumentException("invalid column type: " + parts[1]);
+            }
+            final boolean descending = parts.length == 3 && parts[2].equals("desc");
+            result[i] = new DelimitedSort.Column(parsePositive(parts[0], "column number") - 1, type, descending ^ reverse, timestampFormat);
+        }
+        return result;
+    }
+
+    /**
+     * 取得一行中指定範圍的欄位。
+     *
+     * @param line 傳入一行文字
+     * @param from 傳入開始的欄位(從1開始)
+     * @param to 傳入結束的欄位(包含)
+     * @return 傳回欄位內容，若欄位不存在，傳回空字串
+     */
+    private String extractKey(final String line, final int from, final int to) {
+        final int length = line.length();
+        int field = 1;
+        int p = 0;
+        int start = -1;
+        while (true) {
+            if (separator == 0) {
+                while (p < length && Character.isWhitespace(line.charAt(p))) {
+                    ++p;
+                }
+            }
+            if (field == from) {
+                start = p;
+            }
+            if (separator == 0) {
+                while (p < length && !Character.isWhitespace(line.charAt(p))) {
+                    ++p;
+                }
+            } else {
+                while (p < length && line.charAt(p) != separator) {
+                    ++p;
+                }
+            }
+            if (field == to || p >= length) {
+                break;
+            }
+            if (separator != 0) {
+                ++p;
+            }
+            ++field;
+        }
+        if (start < 0 || start > length) {
+            return "";
+        }
+        return line.substring(start, p);
+    }
+
+    /**
+     * 建立排序方式。
+     *
+     * @return 傳回排序方式
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<String> createComparator() {
+        final Comparator<String> base = natural ? StringWithNumberComparator.getInstance() : new Comparator<String>() {
+            @Override
+            public int compare(final String s1, final String s2) {
+                return s1.compareTo(s2);
+            }
+        };
+        Comparator<String> comparator;
+        if (keys.isEmpty()) {
+            comparator = base;
+        } else {
+            final List<Comparator<String>> comparators = new ArrayList<>();
+            for (final int[] key : keys) {
+                final int from = key[0], to = key[1];
+                comparators.add(new Comparator<String>() {
+                    @Override
+                    public int compare(final String s1, final String s2) {
+                        return base.compare(extractKey(s1, from, to), extractKey(s2, from, to));
+                    }
+                });
+            }
+            if (!unique) {
+                comparators.add(base); //與GNU sort相同，欄位都相同時再比較整行
+            }
+            comparator = OrderComparator.getInstance(comparators.toArray(new Comparator[comparators.size()]));
+        }
+        if (reverse) {
+            comparator = InverseComparator.getInstance(comparator);
+        }
+        return comparator;
+    }
+
+    /**
+     * 執行排序。
+     *
+     * @throws IOException 讀寫失敗
+     */
+    private void run() throws IOException {
+        if (columns != null) {
+            runDelimited();
+            return;
+        }
+        final ExternalSort<String> sorter = new ExternalSort<>(createComparator(), ExternalSort.stringCodec());
+        sorter.setMemoryLimit(memoryLimit);
+        sorter.setParallelism(parallelism);
+        sorter.setUnique(unique);
+        sorter.setTempDirectory(tempDirectory);
+
+        final LineSource source = new LineSource();
+        final Writer[] writer = new Writer[1];
+        try {
+            sorter.sort(source, (final String line) -> {
+                if (writer[0] == null) {
+                    writer[0] = openOutput();
+                }
+                writer[0].write(line);
+                writer[0].write('\n');
+            });
+            if (writer[0] == null) {
+                writer[0] = openOutput();
+            }
+        } finally {
+            source.close();
+            if (writer[0] != null) {
+                writer[0].close();
+            }
+        }
+    }
+
+    /**
+     * 建立文字解碼器，無法解碼的位元組會被替換掉，而不會中斷排序。
+     *
+     * @return 傳回文字解碼器
+     */
+    private CharsetDecoder newDecoder() {
+        return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * 排序分隔字元檔案。
+     *
+     * @throws IOException 讀寫失敗，或是欄位的內容無法解析
+     */
+    private void runDelimited() throws IOException {
+        final DelimitedSort sorter = new DelimitedSort(separator == 0 ? ',' : separator, parseColumns());
+        sorter.setHeader(header);
+        sorter.setMemoryLimit(memoryLimit);
+        sorter.setParallelism(parallelism);
+        sorter.setUnique(unique);
+        sorter.setTempDirectory(tempDirectory);
+
+        final LineSource source = new LineSource();
+        final BufferedReader reader = new BufferedReader(new Reader() {
+            private String line;
+            private int position;
+
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                if (line == null || position >= line.length()) {
+                    line = source.next();
+                    if (line == null) {
+                        return -1;
+                    }
+                    line = line.concat("\n");
+                    position = 0;
+                }
+                final int n = Math.min(len, line.length() - position);
+                line.getChars(position, position + n, cbuf, off);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        }, 1 << 16);
+        if (output != null && inputs.contains(output)) {
+            throw new IOException("--columns cannot write to one of its input files");
+        }
+        try (Writer writer = openOutput()) {
+            sorter.sort(reader, writer);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 開啟輸出。所有輸入都讀取完畢之後才會開啟，因此輸出檔案可以和輸入檔案相同。
+     *
+     * @return 傳回輸出
+     * @throws IOException 開啟失敗
+     */
+    private Writer openOutput() throws IOException {
+        if (output == null || output.equals("-")) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, charset) {
+                @Override
+                public void close() throws IOException {
+                    flush(); //不要關閉標準輸出
+                }
+            }, 1 << 16);
+        }
+        return Files.newBufferedWriter(Paths.get(output), charset);
+    }
+
+    // -----物件類別-----
+    /**
+     * 依序讀取所有輸入檔案的每一行。與GNU sort相同，只有\n是行的分隔字元，\r會被當作行的內容保留下來。
+     */
+    private final class LineSource implements ExternalSort.RecordSource<String> {
+
+        private int index;
+        private Reader reader;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+
+        @Override
+        public String next() throws IOException {
+            while (true) {
+                if (reader == null) {
+                    if (index >= inputs.size()) {
+                        return null;
+                    }
+                    final String input = inputs.get(index++);
+                    if (input.equals("-")) {
+                        reader = Channels.newReader(Channels.newChannel(System.in), newDecoder(), -1);
+                    } else {
+                        reader = Channels.newReader(FileChannel.open(Paths.get(input)), newDecoder(), -1);
+                    }
+                    position = limit = 0;
+                }
+                final String line = readLine();
+                if (line != null) {
+                    return line;
+                }
+                close();
+            }
+        }
+
+        /**
+         * 讀取到下一個\n為止的內容。
+         *
+         * @return 傳回一行的內容，不包含\n，若已經讀到檔案結尾，傳回null
+         * @throws IOException 讀取失敗
+         */
+        private String readLine() throws IOException {
+            StringBuilder sb = null; //一行跨越多次讀取時才使用
+            while (true) {
+                if (position >= limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        return sb == null ? null : sb.toString(); //最後一行沒有\n
+                    }
+                }
+                int i = position;
+                while (i < limit && buffer[i] != '\n') {
+                    ++i;
+                }
+                if (i < limit) {
+                    final String line;
+                    if (sb == null) {
+                        line = new String(buffer, position, i - position);
+                    } else {
+                        line = sb.append(buffer, position, i - position).toString();
+                    }
+                    position = i + 1;
+                    return line;
+                }
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(buffer, position, limit - position);
+                position = limit;
+            }
+        }
+
+        void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+}
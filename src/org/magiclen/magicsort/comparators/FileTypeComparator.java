@@ -23,6 +23,7 @@ import java.io.FileInputStream;
 import java.net.URLConnection;
 import java.util.Comparator;
 import java.util.HashMap;
+import org.magiclen.magicsort.jfr.FileProbeEvent;
 
 /**
  * 排序檔案，依照檔案類型。
@@ -131,7 +132,14 @@ public class FileTypeComparator implements Comparator<File> {
 	    return informationMap.get(hashCode);
 	} else {
 	    final Information i = new Information();
+	    final FileProbeEvent event = new FileProbeEvent();
+	    event.begin();
 	    i.isDirctory = file.isDirectory();
+	    if (event.shouldCommit()) {
+		event.probe = FileProbeEvent.DIRECTORY;
+		event.path = file.getPath();
+		event.commit();
+	    }
 	    informationMap.put(hashCode, i);
 	    return i;
 	}
@@ -174,6 +182,8 @@ public class FileTypeComparator implements Comparator<File> {
 	} else {
 	    String type = URLConnection.guessContentTypeFromName(file.getName());
 	    if (type == null) {
+		final FileProbeEvent event = new FileProbeEvent();
+		event.begin();
 		try {
 		    try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file))) {
 			type = URLConnection.guessContentTypeFromStream(bis);
@@ -181,6 +191,11 @@ public class FileTypeComparator implements Comparator<File> {
 		} catch (final Exception ex) {
 
 		}
+		if (event.shouldCommit()) {
+		    event.probe = FileProbeEvent.CONTENT_TYPE;
+		    event.path = file.getPath();
+		    event.commit();
+		}
 	    }
 	    if (type == null) {
 		type = "";
@@ -0,0 +1,314 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.comparators;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * 排序計畫，以宣告的方式描述多個鍵值的排序，每個鍵值都可以個別指定遞增或遞減。計畫本身就是融合後的比較器：比較時直接依序取出每個鍵值比較，基本型態的鍵值不會被裝箱，遞減的鍵值只是交換比較的兩個物件，不需要用OrderComparator或InverseComparator一層一層包裝。
+ * </p>
+ *
+ * <p>
+ * 第一個鍵值是基本型態時，getPrefixFunction可以取得與計畫順序一致的鍵值前綴函數，MagicSort的setSortPlan會直接用它排序(包含遞減的鍵值)，只有第一個鍵值相同的物件才需要比較其他的鍵值。計畫是不可變的，每個then方法都會傳回新的計畫。
+ * </p>
+ *
+ * @author Magic Len
+ * @param <T> 要排序的類別。
+ */
+public final class SortPlan<T> implements Comparator<T> {
+
+    // -----類別常數-----
+    /**
+     * long鍵值。
+     */
+    private static final byte LONG = 0;
+    /**
+     * int鍵值。
+     */
+    private static final byte INT = 1;
+    /**
+     * double鍵值，順序與Double.compare一致。
+     */
+    private static final byte DOUBLE = 2;
+    /**
+     * 實作Comparable的鍵值。
+     */
+    private static final byte COMPARABLE = 3;
+    /**
+     * 比較器。
+     */
+    private static final byte COMPARATOR = 4;
+
+    // -----類別方法-----
+    /**
+     * 取得沒有任何鍵值的排序計畫，所有物件都視為相等。
+     *
+     * @param <T> 要排序的類別。
+     * @return 傳回排序計畫
+     */
+    public static synchronized <T> SortPlan<T> getInstance() {
+	return new SortPlan<>(new byte[0], new Object[0], new boolean[0]);
+    }
+
+    /**
+     * 將double轉成可以直接用有號長整數比較大小的數值，順序與Double.compare一致。
+     *
+     * @param value 傳入數值
+     * @return 傳回轉換後的數值
+     */
+    private static long doubleKey(final double value) {
+	final long bits = Double.doubleToLongBits(value);
+	return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    // -----物件常數-----
+    private final byte[] types; //鍵值的種類
+    private final Object[] keys; //鍵值的取出函數或比較器
+    private final boolean[] descending; //是否為遞減
+
+    // -----建構子-----
+    /**
+     * 私有建構子，無法直接使用new運算子來實體化。
+     *
+     * @param types 傳入鍵值的種類
+     * @param keys 傳入鍵值的取出函數或比較器
+     * @param descending 傳入是否為遞減
+     */
+    private SortPlan(final byte[] types, final Object[] keys, final boolean[] descending) {
+	this.types = types;
+	this.keys = keys;
+	this.descending = descending;
+    }
+
+    // -----物件方法-----
+    /**
+     * 加入一個鍵值，傳回新的計畫。
+     *
+     * @param type 傳入鍵值的種類
+     * @param key 傳入鍵值的取出函數或比較器
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    private SortPlan<T> then(final byte type, final Object key, final boolean descending) {
+	if (key == null) {
+	    throw new NullPointerException();
+	}
+	final int count = types.length;
+	final byte[] newTypes = Arrays.copyOf(types, count + 1);
+	final Object[] newKeys = Arrays.copyOf(keys, count + 1);
+	final boolean[] newDescending = Arrays.copyOf(this.descending, count + 1);
+	newTypes[count] = type;
+	newKeys[count] = key;
+	newDescending[count] = descending;
+	return new SortPlan<>(newTypes, newKeys, newDescending);
+    }
+
+    /**
+     * 加入一個遞增的long鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByLong(final ToLongFunction<? super T> key) {
+	return then(LONG, key, false);
+    }
+
+    /**
+     * 加入一個long鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByLong(final ToLongFunction<? super T> key, final boolean descending) {
+	return then(LONG, key, descending);
+    }
+
+    /**
+     * 加入一個遞增的int鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByInt(final ToIntFunction<? super T> key) {
+	return then(INT, key, false);
+    }
+
+    /**
+     * 加入一個int鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByInt(final ToIntFunction<? super T> key, final boolean descending) {
+	return then(INT, key, descending);
+    }
+
+    /**
+     * 加入一個遞增的double鍵值，順序與Double.compare一致。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByDouble(final ToDoubleFunction<? super T> key) {
+	return then(DOUBLE, key, false);
+    }
+
+    /**
+     * 加入一個double鍵值，順序與Double.compare一致。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByDouble(final ToDoubleFunction<? super T> key, final boolean descending) {
+	return then(DOUBLE, key, descending);
+    }
+
+    /**
+     * 加入一個遞增、使用自然排序的鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByKey(final Function<? super T, ? extends Comparable<?>> key) {
+	return then(COMPARABLE, key, false);
+    }
+
+    /**
+     * 加入一個使用自然排序的鍵值。
+     *
+     * @param key 傳入取出鍵值的函數
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenByKey(final Function<? super T, ? extends Comparable<?>> key, final boolean descending) {
+	return then(COMPARABLE, key, descending);
+    }
+
+    /**
+     * 加入一個遞增的比較器。
+     *
+     * @param comparator 傳入比較器
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenBy(final Comparator<? super T> comparator) {
+	return then(COMPARATOR, comparator, false);
+    }
+
+    /**
+     * 加入一個比較器。
+     *
+     * @param comparator 傳入比較器
+     * @param descending 傳入是否為遞減
+     * @return 傳回新的排序計畫
+     */
+    public SortPlan<T> thenBy(final Comparator<? super T> comparator, final boolean descending) {
+	return then(COMPARATOR, comparator, descending);
+    }
+
+    /**
+     * 取得鍵值的數量。
+     *
+     * @return 傳回鍵值的數量
+     */
+    public int getKeyCount() {
+	return types.length;
+    }
+
+    /**
+     * 取得與計畫順序一致的鍵值前綴函數。前綴就是第一個鍵值(遞減時為反轉所有位元後的鍵值)，因此前綴不同時，順序一定由第一個鍵值決定。
+     *
+     * @return 傳回鍵值前綴函數，若第一個鍵值不是基本型態，傳回null
+     */
+    @SuppressWarnings("unchecked")
+    public ToLongFunction<T> getPrefixFunction() {
+	if (types.length == 0) {
+	    return null;
+	}
+	final long mask = descending[0] ? -1 : 0; // 遞減時反轉所有位元
+	switch (types[0]) {
+	    case LONG: {
+		final ToLongFunction<? super T> key = (ToLongFunction<? super T>) keys[0];
+		return t -> key.applyAsLong(t) ^ mask;
+	    }
+	    case INT: {
+		final ToIntFunction<? super T> key = (ToIntFunction<? super T>) keys[0];
+		return t -> key.applyAsInt(t) ^ mask;
+	    }
+	    case DOUBLE: {
+		final ToDoubleFunction<? super T> key = (ToDoubleFunction<? super T>) keys[0];
+		return t -> doubleKey(key.applyAsDouble(t)) ^ mask;
+	    }
+	    default:
+		return null;
+	}
+    }
+
+    /**
+     * 比較兩個物件的第index個鍵值。
+     *
+     * @param index 傳入鍵值的索引
+     * @param a 傳入第一個物件
+     * @param b 傳入第二個物件
+     * @return 傳回比較結果
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compareKey(final int index, final T a, final T b) {
+	switch (types[index]) {
+	    case LONG: {
+		final ToLongFunction<? super T> key = (ToLongFunction<? super T>) keys[index];
+		return Long.compare(key.applyAsLong(a), key.applyAsLong(b));
+	    }
+	    case INT: {
+		final ToIntFunction<? super T> key = (ToIntFunction<? super T>) keys[index];
+		return Integer.compare(key.applyAsInt(a), key.applyAsInt(b));
+	    }
+	    case DOUBLE: {
+		final ToDoubleFunction<? super T> key = (ToDoubleFunction<? super T>) keys[index];
+		return Double.compare(key.applyAsDouble(a), key.applyAsDouble(b));
+	    }
+	    case COMPARABLE: {
+		final Function<? super T, ? extends Comparable> key = (Function<? super T, ? extends Comparable>) keys[index];
+		return key.apply(a).compareTo(key.apply(b));
+	    }
+	    default:
+		return ((Comparator<? super T>) keys[index]).compare(a, b);
+	}
+    }
+
+    @Override
+    public int compare(final T t1, final T t2) {
+	final int count = types.length;
+	for (int i = 0; i < count; ++i) {
+	    // 遞減時交換比較的兩個物件，不需要反轉比較結果
+	    final int compare = descending[i] ? compareKey(i, t2, t1) : compareKey(i, t1, t2);
+	    if (compare != 0) {
+		return compare;
+	    }
+	}
+	return 0;
+    }
+}
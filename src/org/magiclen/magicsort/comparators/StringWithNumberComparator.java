@@ -26,6 +26,12 @@ import java.util.Comparator;
  */
 public class StringWithNumberComparator implements Comparator<String> {
 
+    // -----類別常數-----
+    /**
+     * double可以精確表示的最大整數，鍵值前綴中的數值不會超過這個值。
+     */
+    private static final long MAX_EXACT_NUMBER = (1L << 53) - 1;
+
     // -----類別變數-----
     /**
      * 儲存比較器的實體。
@@ -53,6 +59,54 @@ public class StringWithNumberComparator implements Comparator<String> {
     }
 
     // -----物件方法-----
+    /**
+     * 取得字串的鍵值前綴，可以傳給MagicSort的setPrefixFunction。前綴與這個比較器的順序一致：前綴較小的字串，比較的結果一定也較小。前綴由字串開頭每個字元8位元的符號組成，遇到全形字時停止；遇到數字時則停止加入字元，用剩餘的位元儲存數值的位元長度和最高的幾個位元，類似浮點數的表示法。放不下的部份會在前綴相同時交給比較器處理。
+     *
+     * @param str 傳入字串
+     * @return 傳回非負的鍵值前綴
+     */
+    public long prefix(final String str) {
+	final int l = str.length();
+	long prefix = 0;
+	int bits = 63; // 剩餘的位元數
+	int p = 0;
+	while (bits >= 15 && p < l) { // 字串結束的符號為0，最後至少保留7個位元給數值
+	    final char c = str.charAt(p++);
+	    if (c > 252) {
+		// 全形字比所有半形字都小，符號為1；253到255的字元共用最大的符號。之後的字元都交給比較器
+		prefix = (prefix << 8) | (c > 255 ? 1 : 255);
+		bits -= 8;
+		break;
+	    }
+	    final boolean digit = c >= '0' && c <= '9';
+	    // 所有數字都使用'0'的符號，數字和其他字元之間的順序不會改變
+	    prefix = (prefix << 8) | ((digit ? '0' : c) + 2);
+	    bits -= 8;
+	    if (digit) {
+		long value = c - '0';
+		while (p < l) {
+		    final char d = str.charAt(p);
+		    if (d >= '0' && d <= '9') {
+			value = Math.min(value * 10 + d - '0', MAX_EXACT_NUMBER); // 比較器用double計算數值，超過的部份交給比較器
+			++p;
+		    } else {
+			break;
+		    }
+		}
+		// 先放6個位元的位元長度，再放去掉最高位元之後的數值
+		final int length = 64 - Long.numberOfLeadingZeros(value);
+		final int mantissaBits = bits - 6;
+		final long mantissa = length <= 1 ? 0 : value & ((1L << (length - 1)) - 1);
+		final int shift = mantissaBits - (length - 1);
+		prefix = (prefix << 6) | length;
+		prefix = (prefix << mantissaBits) | (shift >= 0 ? mantissa << shift : mantissa >>> -shift);
+		bits = 0;
+		break;
+	    }
+	}
+	return prefix << bits;
+    }
+
     @Override
     public int compare(final String str1, final String str2) {
 	char[] c1 = str1.toCharArray(), c2 = str2.toCharArray(); // 將字串str1和str2轉成字元陣列c1,c2
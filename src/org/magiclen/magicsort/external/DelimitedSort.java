@@ -0,0 +1,548 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.external;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * 分隔字元檔案(CSV、TSV等)的排序類別，可以依照多個有型態的欄位排序每一列。特色如下：
+ * </p>
+ * <ol>
+ * <li>每一列只會在讀入時解析一次要排序的欄位，並編碼成一個位元組陣列的排序鍵值(請參考SortKeyEncoder)。</li>
+ * <li>排序時只比較排序鍵值(大多數的列只需要比較鍵值的前8個位元組)，不會再重新解析欄位。排序鍵值相同的列會再比較整列，因此輸出的順序是固定的。</li>
+ * <li>超過記憶體上限時，會使用ExternalSort寫到暫存檔再合併。</li>
+ * <li>支援以雙引號包住的欄位，欄位中可以包含分隔字元、換行以及連續兩個雙引號所表示的雙引號。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ * @see SortKeyEncoder
+ * @see ExternalSort
+ */
+public final class DelimitedSort {
+
+    // -----類別列舉-----
+    /**
+     * 欄位的型態。
+     */
+    public static enum ColumnType {
+        /**
+         * 64位元的有號整數。
+         */
+        INTEGER,
+        /**
+         * 浮點數，順序與Double.compare一致。
+         */
+        DECIMAL,
+        /**
+         * 一般字串，順序與String.compareTo一致。
+         */
+        STRING,
+        /**
+         * 自然順序的字串，順序與StringWithNumberComparator一致。
+         */
+        NATURAL,
+        /**
+         * 時間，使用欄位設定的DateTimeFormatter解析，沒有時區的時間會視為UTC。
+         */
+        TIMESTAMP
+    }
+
+    // -----類別類別-----
+    /**
+     * 排序依據的欄位。
+     */
+    public static final class Column {
+
+        private final int index; //欄位索引
+        private final ColumnType type; //欄位型態
+        private final boolean descending; //是否為遞減順序
+        private final DateTimeFormatter formatter; //時間格式
+
+        /**
+         * 建構子，使用遞增順序。
+         *
+         * @param index 傳入欄位索引，從0開始
+         * @param type 傳入欄位型態
+         */
+        public Column(final int index, final ColumnType type) {
+            this(index, type, false);
+        }
+
+        /**
+         * 建構子。時間欄位會使用ISO-8601格式。
+         *
+         * @param index 傳入欄位索引，從0開始
+         * @param type 傳入欄位型態
+         * @param descending 傳入是否為遞減順序
+         */
+        public Column(final int index, final ColumnType type, final boolean descending) {
+            this(index, type, descending, DateTimeFormatter.ISO_DATE_TIME);
+        }
+
+        /**
+         * 建構子。
+         *
+         * @param index 傳入欄位索引，從0開始
+         * @param type 傳入欄位型態
+         * @param descending 傳入是否為遞減順序
+         * @param formatter 傳入時間欄位的格式
+         */
+        public Column(final int index, final ColumnType type, final boolean descending, final DateTimeFormatter formatter) {
+            if (index < 0 || type == null || formatter == null) {
+                throw new IllegalArgumentException();
+            }
+            this.index = index;
+            this.type = type;
+            this.descending = descending;
+            this.formatter = formatter;
+        }
+
+        /**
+         * 取得欄位索引。
+         *
+         * @return 傳回欄位索引
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * 取得欄位型態。
+         *
+         * @return 傳回欄位型態
+         */
+        public ColumnType getType() {
+            return type;
+        }
+
+        /**
+         * 是否為遞減順序。
+         *
+         * @return 傳回是否為遞減順序
+         */
+        public boolean isDescending() {
+            return descending;
+        }
+
+        /**
+         * 取得時間欄位的格式。
+         *
+         * @return 傳回時間欄位的格式
+         */
+        public DateTimeFormatter getFormatter() {
+            return formatter;
+        }
+    }
+
+    /**
+     * 一列資料與它的排序鍵值。
+     */
+    private static final class Row {
+
+        final byte[] key;
+        final String line;
+
+        Row(final byte[] key, final String line) {
+            this.key = key;
+            this.line = line;
+        }
+    }
+
+    // -----類別常數-----
+    /**
+     * 比較兩列資料的排序鍵值。
+     */
+    private static final Comparator<Row> KEY_COMPARATOR = new Comparator<Row>() {
+        @Override
+        public int compare(final Row r1, final Row r2) {
+            return SortKeyEncoder.compare(r1.key, r2.key);
+        }
+    };
+
+    /**
+     * 比較兩列資料的排序鍵值，排序鍵值相同時再比較整列，讓輸出的順序不受區塊大小和平行度影響。
+     */
+    private static final Comparator<Row> ROW_COMPARATOR = new Comparator<Row>() {
+        @Override
+        public int compare(final Row r1, final Row r2) {
+            final int c = SortKeyEncoder.compare(r1.key, r2.key);
+            return c != 0 ? c : r1.line.compareTo(r2.line);
+        }
+    };
+
+    /**
+     * 取得排序鍵值的前8個位元組作為鍵值前綴。
+     */
+    private static final ToLongFunction<Row> ROW_PREFIX = new ToLongFunction<Row>() {
+        @Override
+        public long applyAsLong(final Row row) {
+            return SortKeyEncoder.prefix(row.key);
+        }
+    };
+
+    /**
+     * 資料列的讀寫介面。
+     */
+    private static final ExternalSort.RecordCodec<Row> ROW_CODEC = new ExternalSort.RecordCodec<Row>() {
+        @Override
+        public void write(final DataOutput out, final Row record) throws IOException {
+            out.writeInt(record.key.length);
+            out.write(record.key);
+            final byte[] bytes = record.line.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public Row read(final DataInput in) throws IOException {
+            final byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new Row(key, new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public long estimateSize(final Row record) {
+            return 88 + record.key.length + record.line.length() * 2L;
+        }
+    };
+
+    // -----物件常數-----
+    private final char delimiter; //分隔字元
+    private final Column[] columns; //排序依據的欄位
+    private final int maxIndex; //最大的欄位索引
+
+    // -----物件變數-----
+    private char quote = '"'; //引號字元，0表示不使用引號
+    private boolean header; //第一列是否為標題
+    private long memoryLimit = ExternalSort.DEFAULT_MEMORY_LIMIT; //記憶體上限
+    private int parallelism = 1; //平行度
+    private boolean unique; //排序鍵值相同的列是否只輸出第一列
+    private File tempDirectory; //暫存目錄
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param delimiter 傳入分隔字元，例如','或是'\t'
+     * @param columns 按照順序傳入排序依據的欄位
+     */
+    public DelimitedSort(final char delimiter, final Column... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("at least one column is required");
+        }
+        this.delimiter = delimiter;
+        this.columns = columns.clone();
+        int max = 0;
+        for (final Column column : columns) {
+            max = Math.max(max, column.index);
+        }
+        this.maxIndex = max;
+    }
+
+    // -----物件方法-----
+    /**
+     * 設定引號字元。
+     *
+     * @param quote 傳入引號字元，若為0，則不處理引號
+     */
+    public synchronized void setQuote(final char quote) {
+        this.quote = quote;
+    }
+
+    /**
+     * 設定第一列是否為標題，標題列不會被排序，並會第一個輸出。
+     *
+     * @param header 傳入第一列是否為標題
+     */
+    public synchronized void setHeader(final boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * 設定記憶體上限。
+     *
+     * @param memoryLimit 傳入記憶體上限(位元組)
+     */
+    public synchronized void setMemoryLimit(final long memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * 設定平行度。
+     *
+     * @param parallelism 傳入平行度
+     */
+    public synchronized void setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 設定排序鍵值相同的列是否只輸出第一列。
+     *
+     * @param unique 傳入是否只輸出第一列
+     */
+    public synchronized void setUnique(final boolean unique) {
+        this.unique = unique;
+    }
+
+    /**
+     * 設定暫存目錄。
+     *
+     * @param tempDirectory 傳入暫存目錄，若為null，則使用系統的暫存目錄
+     */
+    public synchronized void setTempDirectory(final File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * 排序。每一列會以換行字元結尾輸出。
+     *
+     * @param reader 傳入輸入
+     * @param writer 傳入輸出
+     * @throws IOException 讀寫失敗，或是欄位的內容無法解析
+     */
+    public synchronized void sort(final BufferedReader reader, final Writer writer) throws IOException {
+        final ExternalSort<Row> sorter = new ExternalSort<>(unique ? KEY_COMPARATOR : ROW_COMPARATOR, ROW_CODEC); //只輸出第一列時，排序鍵值相同的列必須視為相同
+        sorter.setPrefixFunction(ROW_PREFIX);
+        sorter.setMemoryLimit(memoryLimit);
+        sorter.setParallelism(parallelism);
+        sorter.setUnique(unique);
+        sorter.setTempDirectory(tempDirectory);
+
+        final SortKeyEncoder encoder = new SortKeyEncoder();
+        final List<String> fields = new ArrayList<>(maxIndex + 1);
+        final long[] rowNumber = new long[1];
+        if (header) {
+            final String line = readRecord(reader);
+            if (line == null) {
+                return;
+            }
+            ++rowNumber[0];
+            writer.write(line);
+            writer.write('\n');
+        }
+        sorter.sort(() -> {
+            final String line = readRecord(reader);
+            if (line == null) {
+                return null;
+            }
+            ++rowNumber[0];
+            split(line, fields);
+            return new Row(encodeKey(fields, encoder, rowNumber[0]), line);
+        }, (final Row row) -> {
+            writer.write(row.line);
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    /**
+     * 讀取一列資料。引號中的換行字元會被視為欄位的一部份。
+     *
+     * @param reader 傳入輸入
+     * @return 傳回一列資料，若已經讀取完畢，傳回null
+     * @throws IOException 讀取失敗
+     */
+    private String readRecord(final BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || quote == 0) {
+            return line;
+        }
+        int quotes = count(line);
+        if ((quotes & 1) == 0) {
+            return line;
+        }
+        final StringBuilder sb = new StringBuilder(line);
+        while ((quotes & 1) == 1) {
+            line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            sb.append('\n').append(line);
+            quotes += count(line);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 計算引號字元的數量。
+     *
+     * @param line 傳入文字
+     * @return 傳回引號字元的數量
+     */
+    private int count(final String line) {
+        int count = 0;
+        final int l = line.length();
+        for (int i = 0; i < l; ++i) {
+            if (line.charAt(i) == quote) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 切割欄位，只會切割到最大的欄位索引為止。
+     *
+     * @param line 傳入一列資料
+     * @param fields 傳入用來存放欄位的清單
+     */
+    private void split(final String line, final List<String> fields) {
+        fields.clear();
+        final int l = line.length();
+        int p = 0;
+        while (fields.size() <= maxIndex && p <= l) {
+            if (quote != 0 && p < l && line.charAt(p) == quote) {
+                final StringBuilder sb = new StringBuilder();
+                ++p;
+                while (p < l) {
+                    final char c = line.charAt(p++);
+                    if (c == quote) {
+                        if (p < l && line.charAt(p) == quote) {
+                            sb.append(quote);
+                            ++p;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        sb.append(c);
+                    }
+                }
+                while (p < l && line.charAt(p) != delimiter) {
+                    sb.append(line.charAt(p++));
+                }
+                fields.add(sb.toString());
+            } else {
+                int e = line.indexOf(delimiter, p);
+                if (e < 0) {
+                    e = l;
+                }
+                fields.add(line.substring(p, e));
+                p = e;
+            }
+            ++p; //略過分隔字元
+        }
+    }
+
+    /**
+     * 將排序依據的欄位編碼成排序鍵值。空的欄位會被當作空值，排在非空值之前。
+     *
+     * @param fields 傳入欄位
+     * @param encoder 傳入編碼器
+     * @param rowNumber 傳入列號，用於錯誤訊息
+     * @return 傳回排序鍵值
+     * @throws IOException 欄位的內容無法解析
+     */
+    private byte[] encodeKey(final List<String> fields, final SortKeyEncoder encoder, final long rowNumber) throws IOException {
+        encoder.reset();
+        for (final Column column : columns) {
+            final String field = column.index < fields.size() ? fields.get(column.index) : "";
+            if (column.descending) {
+                encoder.beginDescending();
+            }
+            try {
+                encodeField(encoder, column, field);
+            } catch (final NumberFormatException | DateTimeParseException ex) {
+                throw new IOException(String.format("cannot parse row %d column %d as %s: %s", rowNumber, column.index + 1, column.type, field), ex);
+            }
+            if (column.descending) {
+                encoder.endDescending();
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * 編碼一個欄位。
+     *
+     * @param encoder 傳入編碼器
+     * @param column 傳入欄位
+     * @param field 傳入欄位內容
+     */
+    private static void encodeField(final SortKeyEncoder encoder, final Column column, final String field) {
+        if (column.type == ColumnType.STRING || column.type == ColumnType.NATURAL) {
+            if (column.type == ColumnType.STRING) {
+                encoder.writeString(field);
+            } else {
+                encoder.writeNatural(field);
+            }
+            return;
+        }
+        final String value = field.trim();
+        if (value.isEmpty()) {
+            encoder.writeNull();
+            return;
+        }
+        switch (column.type) {
+            case INTEGER:
+                encoder.writeLong(Long.parseLong(value));
+                break;
+            case DECIMAL:
+                encoder.writeDouble(Double.parseDouble(value));
+                break;
+            case TIMESTAMP: {
+                final TemporalAccessor t = column.formatter.parse(value);
+                final long epochSecond;
+                final int nano;
+                if (t.isSupported(ChronoField.INSTANT_SECONDS)) {
+                    final Instant instant = Instant.from(t);
+                    epochSecond = instant.getEpochSecond();
+                    nano = instant.getNano();
+                } else if (t.isSupported(ChronoField.HOUR_OF_DAY)) {
+                    final LocalDateTime dateTime = LocalDateTime.from(t);
+                    epochSecond = dateTime.toEpochSecond(ZoneOffset.UTC);
+                    nano = dateTime.getNano();
+                } else {
+                    epochSecond = LocalDate.from(t).toEpochDay() * 86400L;
+                    nano = 0;
+                }
+                encoder.writeTimestamp(epochSecond, nano);
+                break;
+            }
+            default:
+                break;
+        }
+    }
+}
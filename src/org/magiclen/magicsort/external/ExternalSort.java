@@ -0,0 +1,628 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToLongFunction;
+import org.magiclen.magicsort.MagicSort;
+import org.magiclen.magicsort.MagicSort.Algorithm;
+import org.magiclen.magicsort.SortScheduler;
+
+/**
+ * <p>
+ * 外部排序類別，可以排序無法一次放進記憶體的資料。特色如下：
+ * </p>
+ * <ol>
+ * <li>讀入的資料超過記憶體上限時，會先用MagicSort排序，再寫到暫存檔(spill)。</li>
+ * <li>所有資料讀取完畢之後，再將暫存檔與記憶體中剩下的資料合併輸出。</li>
+ * <li>可以設定平行度，讓多個區塊同時排序及寫入暫存檔。</li>
+ * <li>可以只輸出比較結果相同的資料中的第一筆。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ * @param <T> 要排序的類別。
+ */
+public final class ExternalSort<T> {
+
+    // -----類別常數-----
+    /**
+     * 預設的記憶體上限。
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = Math.max(16L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+    /**
+     * 一次最多合併的暫存檔數量。
+     */
+    private static final int MAX_FAN_IN = 64;
+    /**
+     * 讀寫暫存檔時使用的緩衝區大小。
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // -----類別介面-----
+    /**
+     * 資料的讀寫介面，用來將資料寫進暫存檔以及從暫存檔讀回資料。
+     *
+     * @param <E> 資料型態
+     */
+    public static interface RecordCodec<E> {
+
+        /**
+         * 寫入一筆資料。
+         *
+         * @param out 傳入輸出
+         * @param record 傳入要寫入的資料
+         * @throws IOException 寫入失敗
+         */
+        public void write(final DataOutput out, final E record) throws IOException;
+
+        /**
+         * 讀取一筆資料。
+         *
+         * @param in 傳入輸入
+         * @return 傳回讀取到的資料
+         * @throws IOException 讀取失敗
+         */
+        public E read(final DataInput in) throws IOException;
+
+        /**
+         * 估計一筆資料在記憶體中所佔用的大小。
+         *
+         * @param record 傳入資料
+         * @return 傳回佔用的位元組數
+         */
+        public long estimateSize(final E record);
+    }
+
+    /**
+     * 資料來源介面。
+     *
+     * @param <E> 資料型態
+     */
+    public static interface RecordSource<E> {
+
+        /**
+         * 讀取下一筆資料。
+         *
+         * @return 傳回下一筆資料，若已經沒有資料，傳回null
+         * @throws IOException 讀取失敗
+         */
+        public E next() throws IOException;
+    }
+
+    /**
+     * 資料輸出介面。
+     *
+     * @param <E> 資料型態
+     */
+    public static interface RecordSink<E> {
+
+        /**
+         * 輸出一筆排序好的資料。
+         *
+         * @param record 傳入資料
+         * @throws IOException 輸出失敗
+         */
+        public void accept(final E record) throws IOException;
+    }
+
+    // -----類別方法-----
+    /**
+     * 取得字串的讀寫介面，字串會用UTF-8編碼，長度不受DataOutput.writeUTF的限制。
+     *
+     * @return 傳回字串的讀寫介面
+     */
+    public static RecordCodec<String> stringCodec() {
+        return new RecordCodec<String>() {
+            @Override
+            public void write(final DataOutput out, final String record) throws IOException {
+                final byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public String read(final DataInput in) throws IOException {
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public long estimateSize(final String record) {
+                return 56 + record.length() * 2L;
+            }
+        };
+    }
+
+    // -----物件常數-----
+    private final Comparator<? super T> comparator; //排序方式
+    private final RecordCodec<T> codec; //資料的讀寫介面
+
+    // -----物件變數-----
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT; //記憶體上限
+    private int parallelism = 1; //平行度
+    private boolean unique; //是否只輸出相同資料中的第一筆
+    private ToLongFunction<? super T> prefixFunction; //鍵值前綴函數
+    private File tempDirectory; //暫存目錄
+    private int spillCount; //寫入暫存檔的次數
+
+    // -----建構子-----
+    /**
+     * 建構子。
+     *
+     * @param comparator 傳入排序方式
+     * @param codec 傳入資料的讀寫介面
+     */
+    public ExternalSort(final Comparator<? super T> comparator, final RecordCodec<T> codec) {
+        if (comparator == null || codec == null) {
+            throw new NullPointerException();
+        }
+        this.comparator = comparator;
+        this.codec = codec;
+    }
+
+    // -----物件方法-----
+    /**
+     * 設定記憶體上限，讀入的資料超過這個大小就會寫到暫存檔。
+     *
+     * @param memoryLimit 傳入記憶體上限(位元組)
+     */
+    public synchronized void setMemoryLimit(final long memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * 取得記憶體上限。
+     *
+     * @return 傳回記憶體上限(位元組)
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * 設定平行度。大於1時，多個區塊會同時排序及寫入暫存檔，不需要寫入暫存檔時則會用這個數量的執行緒進行多執行緒的快速排序法(只輸出相同資料中的第一筆，或是有設定鍵值前綴函數時除外)。
+     *
+     * @param parallelism 傳入平行度
+     */
+    public synchronized void setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 取得平行度。
+     *
+     * @return 傳回平行度
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 設定是否只輸出比較結果相同的資料中的第一筆。區塊會使用穩定的排序，合併時相同的資料也會依照暫存檔的順序，因此輸出的是輸入中的第一筆。
+     *
+     * @param unique 傳入是否只輸出相同資料中的第一筆
+     */
+    public synchronized void setUnique(final boolean unique) {
+        this.unique = unique;
+    }
+
+    /**
+     * 是否只輸出比較結果相同的資料中的第一筆。
+     *
+     * @return 傳回是否只輸出相同資料中的第一筆
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * 設定區塊排序時使用的鍵值前綴函數，前綴必須與比較器的順序一致(請參考MagicSort的setPrefixFunction)。設定之後，區塊會先依照前綴排序，只有前綴相同的資料才會使用比較器。
+     *
+     * @param prefixFunction 傳入鍵值前綴函數，若為null，則只使用比較器
+     */
+    public synchronized void setPrefixFunction(final ToLongFunction<? super T> prefixFunction) {
+        this.prefixFunction = prefixFunction;
+    }
+
+    /**
+     * 取得區塊排序時使用的鍵值前綴函數。
+     *
+     * @return 傳回鍵值前綴函數，若為null，表示只使用比較器
+     */
+    public ToLongFunction<? super T> getPrefixFunction() {
+        return prefixFunction;
+    }
+
+    /**
+     * 設定暫存目錄。
+     *
+     * @param tempDirectory 傳入暫存目錄，若為null，則使用系統的暫存目錄
+     */
+    public synchronized void setTempDirectory(final File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * 取得暫存目錄。
+     *
+     * @return 傳回暫存目錄，若為null，表示使用系統的暫存目錄
+     */
+    public File getTempDirectory() {
+        return tempDirectory;
+    }
+
+    /**
+     * 取得上一次排序時寫入暫存檔的次數。
+     *
+     * @return 傳回寫入暫存檔的次數
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * 排序。
+     *
+     * @param source 傳入資料來源
+     * @param sink 傳入排序結果的輸出
+     * @throws IOException 讀寫失敗
+     */
+    public synchronized void sort(final RecordSource<? extends T> source, final RecordSink<? super T> sink) throws IOException {
+        spillCount = 0;
+        final long chunkLimit = Math.max(1, memoryLimit / parallelism);
+        final List<File> runs = new ArrayList<>();
+        final List<Future<File>> pendingRuns = new ArrayList<>();
+        final ExecutorService executorService = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        final Semaphore inFlight = new Semaphore(parallelism);
+        try {
+            ArrayList<T> chunk = new ArrayList<>();
+            long chunkSize = 0;
+            T record;
+            while ((record = source.next()) != null) {
+                chunk.add(record);
+                chunkSize += codec.estimateSize(record);
+                if (chunkSize >= chunkLimit) {
+                    final ArrayList<T> full = chunk;
+                    ++spillCount;
+                    if (executorService == null) {
+                        runs.add(spill(full));
+                    } else {
+                        inFlight.acquireUninterruptibly();
+                        pendingRuns.add(executorService.submit(() -> {
+                            try {
+                                return spill(full);
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    }
+                    chunk = new ArrayList<>();
+                    chunkSize = 0;
+                }
+            }
+            for (final Future<File> pendingRun : pendingRuns) {
+                runs.add(await(pendingRun));
+            }
+            final T[] last;
+            if (runs.isEmpty() && parallelism > 1 && !unique && prefixFunction == null) { //全部都在記憶體中，用指定的平行度進行多執行緒排序
+                final SortScheduler scheduler = new SortScheduler(parallelism, SortScheduler.DEFAULT_MAX_QUEUED_TASKS, SortScheduler.DEFAULT_INLINE_THRESHOLD);
+                try {
+                    last = sortChunk(chunk, scheduler);
+                } finally {
+                    scheduler.shutdown();
+                }
+            } else {
+                last = sortChunk(chunk, null);
+            }
+            if (runs.isEmpty()) {
+                final Output output = new Output(sink);
+                for (final T t : last) {
+                    output.accept(t);
+                }
+            } else {
+                merge(runs, last, sink);
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+            for (final Future<File> pendingRun : pendingRuns) {
+                if (pendingRun.isDone() && !pendingRun.isCancelled()) {
+                    try {
+                        pendingRun.get().delete();
+                    } catch (final InterruptedException | ExecutionException ex) {
+
+                    }
+                }
+            }
+            for (final File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    /**
+     * 用MagicSort排序一個區塊。只輸出相同資料中的第一筆時，使用穩定的自然合併排序法，讓相同的資料維持輸入的順序。
+     *
+     * @param chunk 傳入要排序的區塊
+     * @param scheduler 傳入多執行緒的快速排序法使用的排程器，若為null，則使用單執行緒排序
+     * @return 傳回排序好的陣列
+     */
+    @SuppressWarnings("unchecked")
+    private T[] sortChunk(final List<T> chunk, final SortScheduler scheduler) {
+        final T[] array = (T[]) chunk.toArray();
+        final MagicSort<T> ms = new MagicSort<>(array);
+        ms.setComparator(comparator);
+        ms.setPrefixFunction(prefixFunction);
+        if (unique) {
+            ms.setAlgorithm(Algorithm.NATURAL_MERGESORT);
+        } else if (scheduler != null && array.length > 1) {
+            ms.setAlgorithm(Algorithm.QUICKSORT_MULTITHREAD);
+            ms.setScheduler(scheduler);
+        } else {
+            ms.setAlgorithm(Algorithm.QUICKSORT_OPTIMIZED);
+        }
+        ms.sort();
+        return ms.getData();
+    }
+
+    /**
+     * 排序一個區塊並寫入暫存檔。
+     *
+     * @param chunk 傳入要排序的區塊
+     * @return 傳回暫存檔
+     * @throws IOException 寫入失敗
+     */
+    private File spill(final List<T> chunk) throws IOException {
+        final T[] array = sortChunk(chunk, null);
+        chunk.clear();
+        final File file = File.createTempFile("magicsort", ".run", tempDirectory);
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            for (final T t : array) {
+                out.writeBoolean(true);
+                codec.write(out, t);
+            }
+            out.writeBoolean(false);
+        }
+        return file;
+    }
+
+    /**
+     * 等待寫入暫存檔的工作完成。
+     *
+     * @param future 傳入工作
+     * @return 傳回暫存檔
+     * @throws IOException 寫入失敗
+     */
+    private File await(final Future<File> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 合併暫存檔與記憶體中排序好的資料。暫存檔太多時，會先分批合併成較大的暫存檔。
+     *
+     * @param runs 傳入暫存檔
+     * @param last 傳入記憶體中排序好的資料
+     * @param sink 傳入排序結果的輸出
+     * @throws IOException 讀寫失敗
+     */
+    private void merge(final List<File> runs, final T[] last, final RecordSink<? super T> sink) throws IOException {
+        while (runs.size() >= MAX_FAN_IN) {
+            final List<File> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            final File file = File.createTempFile("magicsort", ".run", tempDirectory);
+            file.deleteOnExit();
+            runs.add(0, file); //合併後的暫存檔包含最早讀入的資料，要放在最前面，相同的資料才會維持輸入的順序
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+                mergeRuns(group, null, (final T record) -> {
+                    out.writeBoolean(true);
+                    codec.write(out, record);
+                });
+                out.writeBoolean(false);
+            }
+            for (final File run : group) {
+                run.delete();
+            }
+        }
+        final Output output = new Output(sink);
+        mergeRuns(runs, last, output::accept);
+    }
+
+    /**
+     * 合併多個排序好的資料來源。
+     *
+     * @param files 傳入暫存檔
+     * @param last 傳入記憶體中排序好的資料，可為null
+     * @param sink 傳入合併結果的輸出
+     * @throws IOException 讀寫失敗
+     */
+    private void mergeRuns(final List<File> files, final T[] last, final RecordSink<T> sink) throws IOException {
+        final PriorityQueue<Run> queue = new PriorityQueue<>(files.size() + 1, (r1, r2) -> {
+            final int c = comparator.compare(r1.current, r2.current);
+            return c != 0 ? c : r1.order - r2.order; //讓合併結果與暫存檔的順序一致
+        });
+        final List<Run> opened = new ArrayList<>();
+        try {
+            int order = 0;
+            for (final File file : files) {
+                final Run run = new FileRun(file, order++);
+                opened.add(run);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            if (last != null) {
+                final Run run = new ArrayRun(last, order);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            while (!queue.isEmpty()) {
+                final Run run = queue.poll();
+                sink.accept(run.current);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+        } finally {
+            for (final Run run : opened) {
+                run.close();
+            }
+        }
+    }
+
+    // -----物件類別-----
+    /**
+     * 排序結果的輸出，負責過濾重複的資料。
+     */
+    private final class Output {
+
+        private final RecordSink<? super T> sink;
+        private T previous;
+        private boolean first = true;
+
+        Output(final RecordSink<? super T> sink) {
+            this.sink = sink;
+        }
+
+        void accept(final T record) throws IOException {
+            if (unique) {
+                if (!first && comparator.compare(previous, record) == 0) {
+                    return;
+                }
+                previous = record;
+                first = false;
+            }
+            sink.accept(record);
+        }
+    }
+
+    /**
+     * 合併時使用的排序好的資料來源。
+     */
+    private abstract class Run {
+
+        final int order;
+        T current;
+
+        Run(final int order) {
+            this.order = order;
+        }
+
+        abstract boolean advance() throws IOException;
+
+        void close() throws IOException {
+        }
+    }
+
+    /**
+     * 從暫存檔讀取資料的來源。
+     */
+    private final class FileRun extends Run {
+
+        private final DataInputStream in;
+
+        FileRun(final File file, final int order) throws IOException {
+            super(order);
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (!in.readBoolean()) {
+                current = null;
+                return false;
+            }
+            current = codec.read(in);
+            if (current == null) {
+                throw new EOFException();
+            }
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 從記憶體中的陣列讀取資料的來源。
+     */
+    private final class ArrayRun extends Run {
+
+        private final T[] array;
+        private int index;
+
+        ArrayRun(final T[] array, final int order) {
+            super(order);
+            this.array = array;
+        }
+
+        @Override
+        boolean advance() {
+            if (index < array.length) {
+                current = array[index++];
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.external;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 排序鍵值的編碼器，將多個欄位依序編碼成一個位元組陣列，之後只要用無號的字典順序比較位元組陣列，就可以得到與逐欄比較相同的結果。特色如下：
+ * </p>
+ * <ol>
+ * <li>整數和浮點數會轉成保持順序的固定長度位元組。</li>
+ * <li>字串和自然順序字串的編碼不會是其他編碼的前綴，因此多個欄位可以直接串接。</li>
+ * <li>自然順序字串的編碼與StringWithNumberComparator的比較結果一致(數字的位數在15位以內，且字串中沒有數值相同但前導0數量不同的數字時)。</li>
+ * <li>每個欄位都可以個別設定為遞減順序。</li>
+ * </ol>
+ *
+ * @author Magic Len
+ */
+public final class SortKeyEncoder {
+
+    // -----類別方法-----
+    /**
+     * 用無號的字典順序比較兩個編碼後的鍵值。
+     *
+     * @param key1 鍵值1
+     * @param key2 鍵值2
+     * @return 大於0，表示key1比key2大；等於0，表示key1和key2一樣大；小於0，表示key1比key2小
+     */
+    public static int compare(final byte[] key1, final byte[] key2) {
+        final int l = Math.min(key1.length, key2.length);
+        for (int i = 0; i < l; ++i) {
+            final int b1 = key1[i] & 0xFF, b2 = key2[i] & 0xFF;
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return key1.length - key2.length;
+    }
+
+    /**
+     * 將鍵值的前8個位元組轉成可以直接用有號長整數比較大小的數值，不足8個位元組的部分補0。
+     *
+     * @param key 傳入鍵值
+     * @return 傳回鍵值前綴
+     */
+    public static long prefix(final byte[] key) {
+        long prefix = 0;
+        final int l = Math.min(key.length, 8);
+        for (int i = 0; i < l; ++i) {
+            prefix = (prefix << 8) | (key[i] & 0xFF);
+        }
+        prefix <<= (8 - l) * 8;
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * 判斷字元是否為阿拉伯數字。
+     *
+     * @param c 傳入字元
+     * @return 傳回是否為阿拉伯數字
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // -----物件變數-----
+    private byte[] buffer = new byte[64]; //編碼結果
+    private int length; //編碼結果的長度
+    private int descendingStart = -1; //遞減欄位的開始位置
+
+    // -----物件方法-----
+    /**
+     * 清除目前的編碼結果，以便重新編碼下一個鍵值。
+     *
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder reset() {
+        length = 0;
+        descendingStart = -1;
+        return this;
+    }
+
+    /**
+     * 取得目前的編碼結果。
+     *
+     * @return 傳回編碼後的鍵值
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 開始一個遞減順序的欄位，呼叫endDescending之前寫入的內容會被反轉。
+     *
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder beginDescending() {
+        descendingStart = length;
+        return this;
+    }
+
+    /**
+     * 結束遞減順序的欄位。因為每個欄位的編碼都不會是其他編碼的前綴，所以將每個位元組反轉之後，順序就會剛好相反。
+     *
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder endDescending() {
+        if (descendingStart >= 0) {
+            for (int i = descendingStart; i < length; ++i) {
+                buffer[i] = (byte) ~buffer[i];
+            }
+            descendingStart = -1;
+        }
+        return this;
+    }
+
+    /**
+     * 寫入空值，空值會排在所有非空值之前。
+     *
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeNull() {
+        put(0);
+        return this;
+    }
+
+    /**
+     * 寫入長整數。
+     *
+     * @param value 傳入長整數
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeLong(final long value) {
+        put(1);
+        putLong(value ^ Long.MIN_VALUE);
+        return this;
+    }
+
+    /**
+     * 寫入浮點數，順序與Double.compare一致，所有的NaN會排在最後。
+     *
+     * @param value 傳入浮點數
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeDouble(final double value) {
+        final long bits = Double.doubleToLongBits(value);
+        put(1);
+        putLong((bits ^ ((bits >> 63) & 0x7FFFFFFFFFFFFFFFL)) ^ Long.MIN_VALUE);
+        return this;
+    }
+
+    /**
+     * 寫入時間，以秒數和奈秒數表示。
+     *
+     * @param epochSecond 傳入從1970-01-01T00:00:00Z開始的秒數
+     * @param nano 傳入奈秒數
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeTimestamp(final long epochSecond, final int nano) {
+        put(1);
+        putLong(epochSecond ^ Long.MIN_VALUE);
+        put(nano >>> 24);
+        put(nano >>> 16);
+        put(nano >>> 8);
+        put(nano);
+        return this;
+    }
+
+    /**
+     * 寫入字串，順序與String.compareTo一致。字串會以UTF-16BE編碼，其中的0x00會跳脫成0x00 0xFF，並以0x00 0x00結尾。
+     *
+     * @param value 傳入字串
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeString(final String value) {
+        put(1);
+        final int l = value.length();
+        for (int i = 0; i < l; ++i) {
+            final char c = value.charAt(i);
+            putEscaped(c >>> 8);
+            putEscaped(c);
+        }
+        put(0);
+        put(0);
+        return this;
+    }
+
+    /**
+     * 寫入自然順序的字串，順序與StringWithNumberComparator一致。StringWithNumberComparator在其中一個字串讀取完畢時會比較已讀取的字元數，因此數值相同但前導0數量不同時，結果可能會有差異。連續的數字會被編碼成位數和去除開頭的0之後的數字，全形字(字元值超過255)會排在其他字元之前。
+     *
+     * @param value 傳入字串
+     * @return 傳回編碼器本身
+     */
+    public SortKeyEncoder writeNatural(final String value) {
+        put(1);
+        final int l = value.length();
+        int p = 0;
+        while (p < l) {
+            final char c = value.charAt(p);
+            if (isDigit(c)) {
+                int s = p;
+                while (s < l - 1 && value.charAt(s) == '0' && isDigit(value.charAt(s + 1))) {
+                    ++s; //去除開頭的0
+                }
+                int e = s;
+                while (e < l && isDigit(value.charAt(e))) {
+                    ++e;
+                }
+                final int digits = Math.min(e - s, 0xFFFF);
+                put(2);
+                put('0'); //數字與其他字元比較時，與任何一個數字字元的結果都相同
+                put(digits >>> 8);
+                put(digits);
+                for (int i = 0; i < digits; ++i) {
+                    put(value.charAt(s + i));
+                }
+                p = e;
+            } else {
+                if (c > 255) {
+                    put(1);
+                    put(c >>> 8);
+                    put(c);
+                } else {
+                    put(2);
+                    put(c);
+                }
+                ++p;
+            }
+        }
+        put(0);
+        putLong(l); //數值都相同時，比較字串長度
+        return this;
+    }
+
+    /**
+     * 寫入一個位元組。
+     *
+     * @param b 傳入位元組
+     */
+    private void put(final int b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, length * 2);
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    /**
+     * 寫入一個位元組，0x00會跳脫成0x00 0xFF。
+     *
+     * @param b 傳入位元組
+     */
+    private void putEscaped(final int b) {
+        put(b);
+        if ((b & 0xFF) == 0) {
+            put(0xFF);
+        }
+    }
+
+    /**
+     * 以大端序寫入長整數。
+     *
+     * @param value 傳入長整數
+     */
+    private void putLong(final long value) {
+        for (int i = 56; i >= 0; i -= 8) {
+            put((int) (value >>> i));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 計數排序其中一個階段的JFR事件。計數排序分為統計每個數值出現次數的histogram階段，和將元素放到正確位置的scatter階段。
+ *
+ * @author Magic Len
+ */
+@Name("org.magiclen.magicsort.CountingSort")
+@Label("Counting Sort Phase")
+@Category("MagicSort")
+@Description("The histogram or scatter phase of a counting sort")
+@Enabled(false)
+@StackTrace(false)
+public final class CountingSortEvent extends Event {
+
+    // -----類別常數-----
+    /**
+     * 統計每個數值出現次數的階段。
+     */
+    public static final String HISTOGRAM = "histogram";
+    /**
+     * 將元素放到正確位置的階段。
+     */
+    public static final String SCATTER = "scatter";
+
+    // -----類別方法-----
+    /**
+     * 建立事件並開始計時。
+     *
+     * @return 傳回事件
+     */
+    public static CountingSortEvent start() {
+        final CountingSortEvent event = new CountingSortEvent();
+        event.begin();
+        return event;
+    }
+
+    // -----物件變數-----
+    @Label("Phase")
+    public String phase; //階段
+
+    @Label("Length")
+    public int length; //陣列長度
+
+    @Label("Range")
+    public long range; //數值範圍的大小
+
+    // -----物件方法-----
+    /**
+     * 結束計時，若事件有被啟用，則記錄事件。
+     *
+     * @param phase 傳入階段
+     * @param length 傳入陣列長度
+     * @param range 傳入數值範圍的大小
+     */
+    public void finish(final String phase, final int length, final long range) {
+        if (shouldCommit()) {
+            this.phase = phase;
+            this.length = length;
+            this.range = range;
+            commit();
+        }
+    }
+}
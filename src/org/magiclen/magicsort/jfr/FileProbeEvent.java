@@ -0,0 +1,57 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 比較器為了取得檔案資訊而存取檔案系統的JFR事件。
+ *
+ * @author Magic Len
+ */
+@Name("org.magiclen.magicsort.FileProbe")
+@Label("File Probe")
+@Category({"MagicSort", "Comparator"})
+@Description("File system access made by a file comparator")
+@Enabled(false)
+@StackTrace(false)
+public final class FileProbeEvent extends Event {
+
+    // -----類別常數-----
+    /**
+     * 判斷是否為目錄。
+     */
+    public static final String DIRECTORY = "directory";
+    /**
+     * 讀取檔案開頭的內容來判斷內容類型。
+     */
+    public static final String CONTENT_TYPE = "contentType";
+
+    // -----物件變數-----
+    @Label("Probe")
+    public String probe; //存取的種類
+
+    @Label("Path")
+    public String path; //檔案路徑
+}
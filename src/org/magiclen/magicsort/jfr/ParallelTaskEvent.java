@@ -0,0 +1,50 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 多執行緒排序中，一個工作在執行緒池中執行的JFR事件。
+ *
+ * @author Magic Len
+ */
+@Name("org.magiclen.magicsort.ParallelTask")
+@Label("Parallel Sort Task")
+@Category("MagicSort")
+@Description("A partition task executed by a worker thread of a parallel sort")
+@Enabled(false)
+@StackTrace(false)
+public final class ParallelTaskEvent extends Event {
+
+    // -----物件變數-----
+    @Label("Start")
+    public int start; //區段的起點位置
+
+    @Label("End")
+    public int end; //區段的終點位置
+
+    @Label("Depth")
+    public int depth; //分割的遞迴深度
+}
@@ -0,0 +1,53 @@
+/*
+ *
+ * Copyright 2015-2017 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.magicsort.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次完整排序的JFR事件，從開始排序到排序完成(不包含回呼)。
+ *
+ * @author Magic Len
+ */
+@Name("org.magiclen.magicsort.Sort")
+@Label("Sort")
+@Category("MagicSort")
+@Description("A complete sort from start to finish")
+@Enabled(false)
+@StackTrace(false)
+public final class SortEvent extends Event {
+
+    // -----物件變數-----
+    @Label("Sorter")
+    public String sorter; //排序類別的名稱
+
+    @Label("Algorithm")
+    public String algorithm; //排序演算法
+
+    @Label("Length")
+    public int length; //排序的長度
+
+    @Label("Comparator Class")
+    public Class<?> comparatorClass; //比較器的類別
+}